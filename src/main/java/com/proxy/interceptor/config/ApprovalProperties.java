@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties(prefix = "approval")
 @Getter
@@ -12,4 +14,14 @@ import org.springframework.stereotype.Component;
 public class ApprovalProperties {
     private boolean peerEnabled;
     private int minVotes;
-}
\ No newline at end of file
+
+    // Pending queries nobody resolves within the timeout get the expiry action (0 = wait forever)
+    private Duration timeout = Duration.ofMinutes(15);
+    private ExpiryAction expiryAction = ExpiryAction.REJECT;
+    private Duration expiryTick = Duration.ofSeconds(1);
+
+    public enum ExpiryAction {
+        REJECT,
+        APPROVE
+    }
+}
@@ -0,0 +1,48 @@
+package com.proxy.interceptor.config;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+@ConfigurationProperties(prefix = "cluster")
+@Getter
+@Setter
+public class ClusterProperties {
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final String generatedNodeId = defaultNodeId();
+
+    // Identifies this node in ownership records and Redis routing; must be unique per running node
+    private String nodeId = generatedNodeId;
+
+    // How long a forwarded approve/reject/vote waits for the owning node to answer
+    private Duration requestTimeout = Duration.ofSeconds(5);
+
+    // Threads that run requests forwarded by other nodes and finish forwarded ones, off the Redis listener
+    private int requestThreads = 2;
+
+    /** True when no node id was configured, so the id changes with every start. */
+    public boolean isNodeIdGenerated() {
+        return generatedNodeId.equals(nodeId);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        // Several nodes may share a host, so the host name alone is not enough
+        return host + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x100000, 0x1000000));
+    }
+}
@@ -0,0 +1,36 @@
+package com.proxy.interceptor.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Side-channel connection to the proxied database used to EXPLAIN blocked statements.
+ * Use a role that can read the schema but owns nothing: statements are only planned, in
+ * read-only transactions that are always rolled back.
+ */
+@Component
+@ConfigurationProperties(prefix = "explain")
+@Getter
+@Setter
+public class ExplainProperties {
+    private boolean enabled;
+    private String url;
+    private String username;
+    private String password;
+
+    // Connections and worker threads; estimates beyond them queue, and beyond the queue are skipped
+    private int poolSize = 2;
+    private int queueCapacity = 16;
+
+    // Waiting for a pooled connection (HikariCP accepts no less than 250ms)
+    private Duration connectionTimeout = Duration.ofMillis(250);
+    private Duration statementTimeout = Duration.ofMillis(500);
+
+    // Estimates are cached by statement fingerprint
+    private int cacheSize = 1024;
+    private Duration cacheTtl = Duration.ofMinutes(10);
+}
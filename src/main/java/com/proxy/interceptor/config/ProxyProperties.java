@@ -4,7 +4,9 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.List;
 
 @Component
@@ -18,12 +20,111 @@ public class ProxyProperties {
     private boolean blockByDefault;
     private List<String> criticalKeywords;
     private List<String> allowedKeywords;
+    // "<operation> <[schema.]table> <CRITICAL|ALLOWED>", e.g. "DELETE audit.* CRITICAL"
+    private List<String> tableRules = List.of();
+    // "<ip|user|statement> <key|*> [<n>/s] [burst=<n>] [inflight=<n>]", e.g. "user etl 20/s inflight=4"
+    private List<String> rateLimits = List.of();
+    // How long an over-limit query may wait for room before it is refused (0 = refuse at once)
+    private Duration rateLimitMaxDelay = Duration.ZERO;
+    // How often the stored policy version is compared with the one in force, in case an update announcement was missed
+    private Duration policyCheckInterval = Duration.ofSeconds(30);
+    // Bind with SO_REUSEPORT (epoll or io_uring) so a new process can take the port while this one drains
+    private boolean reusePort = false;
+    // Server channels accepting on the listen port, one per boss event loop; more than 1 binds with SO_REUSEPORT (epoll or io_uring)
+    private int acceptors = 1;
+    // Netty transport; a transport not available on this host falls back to AUTO with a warning
+    private Transport transport = Transport.AUTO;
+    // How long shutdown waits for sessions to reach an idle transaction boundary (0 = close at once)
+    private Duration drainTimeout = Duration.ofSeconds(30);
 
     private Ssl ssl = new Ssl();
+    private HeldBuffers heldBuffers = new HeldBuffers();
+    private Admission admission = new Admission();
+    private ConnectionLimits connectionLimits = new ConnectionLimits();
+
+    public enum Transport {
+        // Epoll on Linux, KQueue on macOS/BSD, NIO elsewhere
+        AUTO,
+        // Linux 5.14+ with io_uring enabled; fewer system calls per read and write
+        IO_URING,
+        EPOLL,
+        KQUEUE,
+        NIO
+    }
 
     @Getter
     @Setter
     public static class Ssl {
         private boolean enabled;
+        // TLS engine for both legs; OPENSSL (BoringSSL, netty-tcnative) falls back to JDK when it cannot load
+        private Provider provider = Provider.JDK;
+        // Sessions kept per leg for resumption: tickets issued to clients, sessions cached towards the database
+        private int sessionCacheSize = 10_000;
+        private Duration sessionTimeout = Duration.ofHours(1);
+
+        public enum Provider {
+            JDK,
+            OPENSSL
+        }
+    }
+
+    /**
+     * Budget for client bytes held while a query waits for approval.
+     * Anything over the memory budgets is spilled to disk; over the spill budget the query is refused.
+     */
+    @Getter
+    @Setter
+    public static class HeldBuffers {
+        private DataSize maxMemory = DataSize.ofMegabytes(256);
+        private DataSize maxConnectionMemory = DataSize.ofMegabytes(64);
+        // A single held message larger than this goes straight to disk
+        private DataSize spillThreshold = DataSize.ofMegabytes(16);
+        private DataSize maxSpill = DataSize.ofGigabytes(4);
+        private String spillDirectory = System.getProperty("java.io.tmpdir") + "/interceptor-spill";
+    }
+
+    /**
+     * Backend admission control: queries executing on the target at once, from Query or Parse to
+     * ReadyForQuery. Queries beyond the cap queue per user or client IP and are admitted round-robin.
+     */
+    @Getter
+    @Setter
+    public static class Admission {
+        // 0 = unlimited
+        private int maxExecuting = 0;
+        // Queries waiting at once across all queues; over this they are refused instead of queued
+        private int maxQueued = 1000;
+        private Duration queueTimeout = Duration.ofSeconds(5);
+        private FairBy fairBy = FairBy.USER;
+
+        public enum FairBy {
+            // The startup message's user, or the client IP until it is known
+            USER,
+            CLIENT_IP
+        }
+    }
+
+    /**
+     * Connection caps, enforced when a connection is accepted, and idle reaping. A connection is
+     * idle at ReadyForQuery; one with a query running or waiting for approval never is. 0 = off.
+     */
+    @Getter
+    @Setter
+    public static class ConnectionLimits {
+        private int maxTotal = 0;
+        private int maxPerIp = 0;
+        // Client sends nothing outside a transaction (this also ends idle LISTEN sessions)
+        private Duration clientIdleTimeout = Duration.ZERO;
+        // Client sends nothing inside an open transaction, which holds locks and a snapshot meanwhile
+        private Duration idleInTransactionTimeout = Duration.ZERO;
+        // No traffic either way on the backend connection; sessions still receiving notifications stay
+        private Duration backendIdleTimeout = Duration.ZERO;
+
+        /** How often client idleness is checked: the shorter of the client timeouts, or zero if neither is set. */
+        public Duration idleCheckInterval() {
+            if (clientIdleTimeout.isZero()) return idleInTransactionTimeout;
+            if (idleInTransactionTimeout.isZero()) return clientIdleTimeout;
+            return clientIdleTimeout.compareTo(idleInTransactionTimeout) < 0 ? clientIdleTimeout : idleInTransactionTimeout;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,22 @@
 package com.proxy.interceptor.config;
 
+import com.proxy.interceptor.messaging.ClusterMessenger;
+import com.proxy.interceptor.messaging.EventTransport;
+import com.proxy.interceptor.messaging.QueryEventPublisher;
 import com.proxy.interceptor.messaging.RedisMessageHandler;
+import com.proxy.interceptor.security.TokenVersionCache;
+import com.proxy.interceptor.service.PolicyService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.GenericJacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -40,28 +48,78 @@ public class RedisConfig {
             RedisConnectionFactory connectionFactory,
             MessageListenerAdapter blockedListener,
             MessageListenerAdapter approvalListener,
-            MessageListenerAdapter voteListener
+            MessageListenerAdapter voteListener,
+            MessageListenerAdapter authInvalidationListener,
+            MessageListenerAdapter policyListener,
+            MessageListenerAdapter clusterRequestListener,
+            MessageListenerAdapter clusterReplyListener,
+            ClusterProperties clusterProperties,
+            @Value("${events.transport:PUBSUB}") EventTransport eventTransport
     ) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(blockedListener, new PatternTopic("interceptor:blocked"));
-        container.addMessageListener(approvalListener, new PatternTopic("interceptor:approvals"));
-        container.addMessageListener(voteListener, new PatternTopic("interceptor:votes"));
+        // With the stream transport query events are read by QueryEventStreamConsumer instead
+        if (eventTransport == EventTransport.PUBSUB) {
+            container.addMessageListener(blockedListener, new PatternTopic(QueryEventPublisher.BLOCKED_CHANNEL));
+            container.addMessageListener(approvalListener, new PatternTopic(QueryEventPublisher.APPROVALS_CHANNEL));
+            container.addMessageListener(voteListener, new PatternTopic(QueryEventPublisher.VOTES_CHANNEL));
+        }
+        container.addMessageListener(authInvalidationListener,
+                new PatternTopic(TokenVersionCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(policyListener, new PatternTopic(PolicyService.POLICY_CHANNEL));
+        container.addMessageListener(clusterRequestListener,
+                new ChannelTopic(ClusterMessenger.requestChannel(clusterProperties.getNodeId())));
+        container.addMessageListener(clusterReplyListener,
+                new ChannelTopic(ClusterMessenger.replyChannel(clusterProperties.getNodeId())));
         return container;
     }
 
     @Bean
     public MessageListenerAdapter blockedListener(RedisMessageHandler handler) {
-        return new MessageListenerAdapter(handler, "handleBlockedMessage");
+        return eventListener(handler, "handleBlockedMessage");
     }
 
     @Bean
     public MessageListenerAdapter approvalListener(RedisMessageHandler handler) {
-        return new MessageListenerAdapter(handler, "handleApprovalMessage");
+        return eventListener(handler, "handleApprovalMessage");
     }
 
     @Bean
     public MessageListenerAdapter voteListener(RedisMessageHandler handler) {
-        return new MessageListenerAdapter(handler, "handleVoteMessage");
+        return eventListener(handler, "handleVoteMessage");
+    }
+
+    @Bean
+    public MessageListenerAdapter authInvalidationListener(RedisMessageHandler handler) {
+        return new MessageListenerAdapter(handler, "handleAuthInvalidationMessage");
+    }
+
+    @Bean
+    public MessageListenerAdapter policyListener(RedisMessageHandler handler) {
+        return new MessageListenerAdapter(handler, "handlePolicyMessage");
+    }
+
+    @Bean
+    public MessageListenerAdapter clusterRequestListener(ClusterMessenger messenger) {
+        return clusterListener(messenger, "handleRequest");
+    }
+
+    @Bean
+    public MessageListenerAdapter clusterReplyListener(ClusterMessenger messenger) {
+        return clusterListener(messenger, "handleReply");
+    }
+
+    // Cluster requests and replies are plain JSON objects, without type hints
+    private MessageListenerAdapter clusterListener(ClusterMessenger messenger, String method) {
+        MessageListenerAdapter adapter = new MessageListenerAdapter(messenger, method);
+        adapter.setSerializer(ClusterMessenger.MESSAGE_SERIALIZER);
+        return adapter;
+    }
+
+    // Query events are QueryEventCodec batches, handed to the handler as raw bytes
+    private MessageListenerAdapter eventListener(RedisMessageHandler handler, String method) {
+        MessageListenerAdapter adapter = new MessageListenerAdapter(handler, method);
+        adapter.setSerializer(RedisSerializer.byteArray());
+        return adapter;
     }
 }
@@ -0,0 +1,40 @@
+package com.proxy.interceptor.config;
+
+import com.proxy.interceptor.proxy.ast.TargetCardinality;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamic risk scoring of parsed SELECT/INSERT/UPDATE/DELETE statements. Scores below
+ * {@code allowBelow} pass without approval, scores from {@code criticalAt} need it, and
+ * anything in between is left to the keyword policy.
+ */
+@Component
+@ConfigurationProperties(prefix = "risk")
+@Getter
+@Setter
+public class RiskProperties {
+    private boolean enabled;
+    private int allowBelow = 10;
+    private int criticalAt = 50;
+
+    // Equality on one of these columns pins a statement to a single row
+    private List<String> keyColumns = List.of("id");
+
+    private int depthWeight = 10;
+    private int joinWeight = 5;
+    private int subqueryWeight = 10;
+
+    // Only for INSERT/UPDATE/DELETE: a wide read is not a risk, a wide write is
+    private Map<TargetCardinality, Integer> cardinalityWeights = new EnumMap<>(Map.of(
+            TargetCardinality.SINGLE_ROW, 0,
+            TargetCardinality.BOUNDED, 10,
+            TargetCardinality.FILTERED, 30,
+            TargetCardinality.UNBOUNDED, 100));
+}
@@ -47,7 +47,7 @@ public class SecurityConfig {
                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
                 // Admin-only endpoints
-                .requestMatchers("/api/users/**", "/api/config/**", "/api/audit/**")
+                .requestMatchers("/api/users/**", "/api/config/**", "/api/audit/**", "/api/proxy/**")
                 .hasRole("ADMIN")
                 // Protected endpoints (both ADMIN and PEER)
                 .requestMatchers("/api/blocked/**", "/api/approve", "/api/reject",
@@ -4,12 +4,14 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.ssl.*;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
 import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.InputStream;
 import java.security.KeyStore;
@@ -34,6 +36,9 @@ public class SslContextFactory {
     @Value("${proxy.ssl.server-key-store-password}")
     private String serverKeyStorePassword;
 
+    @Autowired
+    private ProxyProperties proxyProperties;
+
     // TLS client context: proxy authenticates to the database
     private SslContext backendSslContext;
 
@@ -42,13 +47,30 @@ public class SslContextFactory {
 
     @PostConstruct
     public void init() throws Exception {
-        initBackendContext();
-        initFrontendContext();
+        ProxyProperties.Ssl settings = proxyProperties.getSsl();
+        if (settings.getSessionCacheSize() < 1 || settings.getSessionTimeout().toSeconds() < 1) {
+            throw new IllegalArgumentException("proxy.ssl.session-cache-size and session-timeout must be positive");
+        }
+        SslProvider provider = resolveProvider(settings.getProvider());
+        initBackendContext(provider, settings);
+        initFrontendContext(provider, settings);
+    }
+
+    /** The requested provider, or JDK if OpenSSL was requested and netty-tcnative cannot load here. */
+    static SslProvider resolveProvider(ProxyProperties.Ssl.Provider requested) {
+        if (requested == ProxyProperties.Ssl.Provider.OPENSSL) {
+            if (OpenSsl.isAvailable()) {
+                return SslProvider.OPENSSL;
+            }
+            log.warn("OpenSSL TLS provider requested but not available ({}); using the JDK provider",
+                    OpenSsl.unavailabilityCause().getMessage());
+        }
+        return SslProvider.JDK;
     }
 
     // -------------------- Backend (Proxy → PostgreSQL) --------------------
 
-    private void initBackendContext() throws Exception {
+    private void initBackendContext(SslProvider provider, ProxyProperties.Ssl settings) throws Exception {
         KeyStore trustStore = KeyStore.getInstance("PKCS12");
         try (InputStream is = trustStoreResource.getInputStream()) {
             trustStore.load(is, trustStorePassword.toCharArray());
@@ -58,20 +80,29 @@ public class SslContextFactory {
                 TrustManagerFactory.getDefaultAlgorithm());
         tmf.init(trustStore);
 
-        this.backendSslContext = SslContextBuilder.forClient()
-                .sslProvider(SslProvider.JDK)
+        this.backendSslContext = buildBackendContext(provider, tmf, settings);
+
+        log.info("Backend SSL context initialized ({}, TLSv1.3, TLS_AES_256_GCM_SHA384)", provider);
+    }
+
+    static SslContext buildBackendContext(SslProvider provider, TrustManagerFactory tmf,
+                                          ProxyProperties.Ssl settings) throws SSLException {
+        // Sessions are cached by database host and port, which newBackendHandler passes to the engine,
+        // so a new backend connection resumes instead of repeating the full handshake
+        return SslContextBuilder.forClient()
+                .sslProvider(provider)
                 .trustManager(tmf)
                 .protocols("TLSv1.3")
                 .ciphers(Collections.singletonList("TLS_AES_256_GCM_SHA384"),
                         SupportedCipherSuiteFilter.INSTANCE)
+                .sessionCacheSize(settings.getSessionCacheSize())
+                .sessionTimeout(settings.getSessionTimeout().toSeconds())
                 .build();
-
-        log.info("Backend SSL context initialized (TLSv1.3, TLS_AES_256_GCM_SHA384)");
     }
 
     // -------------------- Frontend (Client → Proxy) --------------------
 
-    private void initFrontendContext() throws Exception {
+    private void initFrontendContext(SslProvider provider, ProxyProperties.Ssl settings) throws Exception {
         KeyStore keyStore = KeyStore.getInstance("PKCS12");
         try (InputStream is = serverKeyStoreResource.getInputStream()) {
             keyStore.load(is, serverKeyStorePassword.toCharArray());
@@ -81,14 +112,27 @@ public class SslContextFactory {
                 KeyManagerFactory.getDefaultAlgorithm());
         kmf.init(keyStore, serverKeyStorePassword.toCharArray());
 
-        this.frontendSslContext = SslContextBuilder.forServer(kmf)
-                .sslProvider(SslProvider.JDK)
+        this.frontendSslContext = buildFrontendContext(provider, kmf, settings);
+
+        log.info("Frontend SSL context initialized ({}, TLSv1.3, TLS_AES_256_GCM_SHA384)", provider);
+    }
+
+    static SslContext buildFrontendContext(SslProvider provider, KeyManagerFactory kmf,
+                                           ProxyProperties.Ssl settings) throws SSLException {
+        SslContext context = SslContextBuilder.forServer(kmf)
+                .sslProvider(provider)
                 .protocols("TLSv1.3")
                 .ciphers(Collections.singletonList("TLS_AES_256_GCM_SHA384"),
                         SupportedCipherSuiteFilter.INSTANCE)
+                .sessionCacheSize(settings.getSessionCacheSize())
+                .sessionTimeout(settings.getSessionTimeout().toSeconds())
                 .build();
-
-        log.info("Frontend SSL context initialized (TLSv1.3, TLS_AES_256_GCM_SHA384)");
+        // The JDK issues TLS 1.3 session tickets by default; Netty's OpenSSL server only once it
+        // has ticket keys. Without explicit keys BoringSSL generates its own, valid for this process.
+        if (context.sessionContext() instanceof OpenSslSessionContext openSslSessions) {
+            openSslSessions.setTicketKeys();
+        }
+        return context;
     }
 
     // -------------------- Handler factories --------------------
@@ -0,0 +1,22 @@
+package com.proxy.interceptor.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "websocket")
+@Getter
+@Setter
+public class WebSocketProperties {
+    // Events per topic raised within this window go out as one batched frame (0 = no batching)
+    private Duration batchWindow = Duration.ofMillis(100);
+    private int maxBatchSize = 500;
+
+    // Per-session limits: a browser that falls behind is disconnected instead of stalling the broker
+    private int sendBufferSizeLimit = 512 * 1024;
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+}
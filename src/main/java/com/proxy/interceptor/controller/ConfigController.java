@@ -1,9 +1,11 @@
 package com.proxy.interceptor.controller;
 
-import com.proxy.interceptor.config.ApprovalProperties;
 import com.proxy.interceptor.config.ProxyProperties;
 import com.proxy.interceptor.dto.ApiResponse;
+import com.proxy.interceptor.dto.PolicyUpdate;
+import com.proxy.interceptor.proxy.CompiledPolicy;
 import com.proxy.interceptor.service.AuditService;
+import com.proxy.interceptor.service.PolicyService;
 import com.proxy.interceptor.util.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +13,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,37 +25,93 @@ public class ConfigController {
 
     private final AuditService auditService;
     private final ProxyProperties proxyProperties;
-    private final ApprovalProperties approvalProperties;
+    private final PolicyService policyService;
 
     @GetMapping
     public ResponseEntity<ApiResponse<Map<String, Object>>> getConfig() {
+        CompiledPolicy policy = policyService.current();
         Map<String, Object> config = new HashMap<>();
         config.put("proxy_port", proxyProperties.getListenPort());
         config.put("target_host", proxyProperties.getTargetHost());
         config.put("target_port", proxyProperties.getTargetPort());
-        config.put("block_by_default", proxyProperties.isBlockByDefault());
-        config.put("critical_keywords", String.join(", ", proxyProperties.getCriticalKeywords()));
-        config.put("allowed_keywords", String.join(", ", proxyProperties.getAllowedKeywords()));
-        config.put("peer_approval_enabled", approvalProperties.isPeerEnabled());
-        config.put("peer_approval_min_votes", approvalProperties.getMinVotes());
+        config.put("block_by_default", policy.blockByDefault());
+        config.put("critical_keywords", String.join(", ", policy.criticalKeywords()));
+        config.put("allowed_keywords", String.join(", ", policy.allowedKeywords()));
+        config.put("table_rules", String.join(", ", policy.tableRules()));
+        config.put("rate_limits", String.join(", ", policy.rateLimits()));
+        config.put("peer_approval_enabled", policy.peerApprovalEnabled());
+        config.put("peer_approval_min_votes", policy.minVotes());
+        config.put("policy_version", policy.version());
         return ResponseEntity.ok(ApiResponse.ok(config));
     }
 
+    /**
+     * Updates the policy keys of the config (keywords, table rules, rate limits, block-by-default, peer approval).
+     * Applied on every node without a restart; listener ports and targets are not live settings.
+     */
     @PutMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<?>> updateConfig(
             @RequestBody Map<String, Object> newConfig,
             HttpServletRequest request
     ) {
-        // Note: Not implemented. After review, we can use Spring Cloud Config for dynamic configuration.
-        // For now, we just audit the attempt.
         String username = (String) request.getAttribute("username");
-        auditService.log(username, "config_update_attempted",
-            "Configuration update requested (requires restart)", RequestUtils.getClientIp(request));
+        PolicyUpdate changes = new PolicyUpdate(
+                keywords(newConfig.get("critical_keywords")),
+                keywords(newConfig.get("allowed_keywords")),
+                keywords(newConfig.get("table_rules")),
+                keywords(newConfig.get("rate_limits")),
+                flag(newConfig.get("block_by_default")),
+                flag(newConfig.get("peer_approval_enabled")),
+                number(newConfig.get("peer_approval_min_votes"))
+        );
+
+        CompiledPolicy policy = policyService.update(changes, username);
+        auditService.log(username, "config_updated",
+            "Policy updated to version " + policy.version() + ": " + changes, RequestUtils.getClientIp(request));
 
         return ResponseEntity.ok(ApiResponse.ok(Map.of(
             "ok", true,
-            "message", "Configuration saved.  Restart required to apply changes."
+            "message", "Configuration applied.",
+            "policy_version", policy.version()
         )));
     }
-}
\ No newline at end of file
+
+    // Accepts "A, B" as returned by getConfig, or a JSON list
+    private static List<String> keywords(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        return CompiledPolicy.split(value.toString());
+    }
+
+    private static Boolean flag(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        String text = value.toString().trim();
+        if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Not a boolean: " + text);
+        }
+        return Boolean.parseBoolean(text);
+    }
+
+    // 3, 3.0 or "3"; 2.7 and numbers past int range are refused rather than truncated
+    private static Integer number(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString().trim();
+        try {
+            return new BigDecimal(text).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not an integer: " + text);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.proxy.interceptor.controller;
 
 import com.proxy.interceptor.dto.ApiResponse;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -28,4 +29,9 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.badRequest().body(ApiResponse.error(message));
     }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<?>> handleConflict(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(409).body(ApiResponse.error("Changed concurrently, reload and try again"));
+    }
 }
\ No newline at end of file
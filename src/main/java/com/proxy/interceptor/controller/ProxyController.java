@@ -0,0 +1,53 @@
+package com.proxy.interceptor.controller;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.dto.ApiResponse;
+import com.proxy.interceptor.proxy.ProxyServer;
+import com.proxy.interceptor.service.AuditService;
+import com.proxy.interceptor.util.RequestUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/proxy")
+@RequiredArgsConstructor
+public class ProxyController {
+
+    private final AuditService auditService;
+    private final ProxyProperties proxyProperties;
+    private final ProxyServer proxyServer;
+
+    @GetMapping("/drain")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getDrainStatus() {
+        return ResponseEntity.ok(ApiResponse.ok(proxyServer.drainStatus()));
+    }
+
+    /**
+     * Stops the listener and closes sessions as they finish, ahead of a restart. There is no way
+     * back short of restarting the process; a second call only reports progress.
+     */
+    @PostMapping("/drain")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> drain(
+            @RequestParam(name = "timeout_seconds", required = false) Long timeoutSeconds,
+            HttpServletRequest request
+    ) {
+        if (timeoutSeconds != null && timeoutSeconds < 0) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("timeout_seconds must not be negative"));
+        }
+        Duration timeout = timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : proxyProperties.getDrainTimeout();
+        String username = (String) request.getAttribute("username");
+        if (proxyServer.drain(timeout)) {
+            auditService.log(username, "proxy_drain_started",
+                    "Draining proxy connections, deadline in " + timeout, RequestUtils.getClientIp(request));
+        }
+        return ResponseEntity.ok(ApiResponse.ok(proxyServer.drainStatus()));
+    }
+}
@@ -2,8 +2,11 @@ package com.proxy.interceptor.controller;
 
 import com.proxy.interceptor.dto.ApiResponse;
 import com.proxy.interceptor.dto.ApprovalRequest;
+import com.proxy.interceptor.dto.PendingQueryChanges;
+import com.proxy.interceptor.dto.PendingQueryItem;
 import com.proxy.interceptor.dto.VoteRequest;
 import com.proxy.interceptor.model.BlockedQuery;
+import com.proxy.interceptor.service.ApprovalRouter;
 import com.proxy.interceptor.service.AuditService;
 import com.proxy.interceptor.service.BlockedQueryService;
 import com.proxy.interceptor.service.ReplayProtectionService;
@@ -11,11 +14,14 @@ import com.proxy.interceptor.util.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -23,12 +29,39 @@ import java.util.Map;
 public class QueryController {
 
     private final BlockedQueryService blockedQueryService;
+    private final ApprovalRouter approvalRouter;
     private final AuditService auditService;
     private final ReplayProtectionService replayProtectionService;
 
     @GetMapping("/blocked")
-    public ResponseEntity<ApiResponse<List<BlockedQuery>>> getBlockedQueries() {
-        return ResponseEntity.ok(ApiResponse.ok(blockedQueryService.getPendingQueries()));
+    public ResponseEntity<ApiResponse<List<PendingQueryItem>>> getBlockedQueries(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        PendingQueryChanges snapshot = blockedQueryService.getPendingSnapshot();
+        String etag = etag(snapshot);
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.ok(snapshot.upserted()));
+    }
+
+    /**
+     * Pending-query changes after sequence {@code since} of view {@code epoch}.
+     * Answers 304 when the caller is already up to date.
+     */
+    @GetMapping("/blocked/changes")
+    public ResponseEntity<ApiResponse<PendingQueryChanges>> getBlockedChanges(
+            @RequestParam(required = false) String epoch,
+            @RequestParam(defaultValue = "-1") long since,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        PendingQueryChanges changes = blockedQueryService.getPendingChanges(epoch, since);
+        String etag = etag(changes);
+        boolean upToDate = !changes.resync() && changes.sequence() == since;
+        if (upToDate || etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.ok(changes));
     }
 
     @GetMapping("/blocked/all")
@@ -37,16 +70,17 @@ public class QueryController {
     }
 
     @GetMapping("/blocked/{id}/votes")
-    public ResponseEntity<ApiResponse<?>> getVoteStatus(@PathVariable Long id) {
-        var status = blockedQueryService.getVoteStatus(id);
-        if (status == null) {
-            return ResponseEntity.status(404).body(ApiResponse.error("Query or vote status not found"));
-        }
-        return ResponseEntity.ok(ApiResponse.ok(status));
+    public CompletableFuture<ResponseEntity<ApiResponse<?>>> getVoteStatus(@PathVariable Long id) {
+        return approvalRouter.getVoteStatus(id).thenApply(status -> {
+            if (status == null) {
+                return ResponseEntity.status(404).body(ApiResponse.error("Query or vote status not found"));
+            }
+            return ResponseEntity.ok(ApiResponse.ok(status));
+        });
     }
 
     @PostMapping("/approve")
-    public ResponseEntity<ApiResponse<?>> approveQuery(
+    public CompletableFuture<ResponseEntity<ApiResponse<?>>> approveQuery(
             @Valid @RequestBody ApprovalRequest request,
             HttpServletRequest httpRequest
     ) {
@@ -54,20 +88,19 @@ public class QueryController {
         String clientIp = RequestUtils.getClientIp(httpRequest);
 
         ResponseEntity<ApiResponse<?>> replayError = validateReplay(request, "approve", username, clientIp);
-        if (replayError != null) return replayError;
+        if (replayError != null) return CompletableFuture.completedFuture(replayError);
 
-        boolean ok = blockedQueryService.approveQuery(request.id(), username);
-
-        if (ok) {
-            auditService.log(username, "query_approved",
-                    "Query #" + request.id() + " approved", clientIp);
-        }
-
-        return ResponseEntity.ok(ApiResponse.ok(Map.of("success", ok)));
+        return approvalRouter.approveQuery(request.id(), username).thenApply(ok -> {
+            if (ok) {
+                auditService.log(username, "query_approved",
+                        "Query #" + request.id() + " approved", clientIp);
+            }
+            return ResponseEntity.ok(ApiResponse.ok(Map.of("success", ok)));
+        });
     }
 
     @PostMapping("/reject")
-    public ResponseEntity<ApiResponse<?>> rejectQuery(
+    public CompletableFuture<ResponseEntity<ApiResponse<?>>> rejectQuery(
             @Valid @RequestBody ApprovalRequest request,
             HttpServletRequest httpRequest
     ) {
@@ -75,20 +108,19 @@ public class QueryController {
         String clientIp = RequestUtils.getClientIp(httpRequest);
 
         ResponseEntity<ApiResponse<?>> replayError = validateReplay(request, "reject", username, clientIp);
-        if (replayError != null) return replayError;
-
-        boolean ok = blockedQueryService.rejectQuery(request.id(), username);
-
-        if (ok) {
-            auditService.log(username, "query_rejected",
-                    "Query #" + request.id() + " rejected", clientIp);
-        }
+        if (replayError != null) return CompletableFuture.completedFuture(replayError);
 
-        return ResponseEntity.ok(ApiResponse.ok(Map.of("success", ok)));
+        return approvalRouter.rejectQuery(request.id(), username).thenApply(ok -> {
+            if (ok) {
+                auditService.log(username, "query_rejected",
+                        "Query #" + request.id() + " rejected", clientIp);
+            }
+            return ResponseEntity.ok(ApiResponse.ok(Map.of("success", ok)));
+        });
     }
 
     @PostMapping("/vote")
-    public ResponseEntity<ApiResponse<?>> vote(
+    public CompletableFuture<ResponseEntity<ApiResponse<?>>> vote(
             @Valid @RequestBody VoteRequest request,
             HttpServletRequest httpRequest
     ) {
@@ -96,18 +128,22 @@ public class QueryController {
         String clientIp = RequestUtils.getClientIp(httpRequest);
 
         ResponseEntity<ApiResponse<?>> replayError = validateVoteReplay(request, username, clientIp);
-        if (replayError != null) return replayError;
+        if (replayError != null) return CompletableFuture.completedFuture(replayError);
 
-        Map<String, Object> result = blockedQueryService.addVote(request.id(), username, request.vote());
+        return approvalRouter.addVote(request.id(), username, request.vote()).thenApply(result -> {
+            if (Boolean.TRUE.equals(result.get("duplicate"))) {
+                return ResponseEntity.status(403).body(ApiResponse.error((String) result.get("error")));
+            }
 
-        if (Boolean.TRUE.equals(result.get("duplicate"))) {
-            return ResponseEntity.status(403).body(ApiResponse.error((String) result.get("error")));
-        }
+            auditService.log(username, "query_vote",
+                String.format("Vote %s on query #%d", request.vote(), request.id()), clientIp);
 
-        auditService.log(username, "query_vote",
-            String.format("Vote %s on query #%d", request.vote(), request.id()), clientIp);
+            return ResponseEntity.ok(ApiResponse.ok(result));
+        });
+    }
 
-        return ResponseEntity.ok(ApiResponse.ok(result));
+    private static String etag(PendingQueryChanges view) {
+        return "\"" + view.epoch() + "-" + view.sequence() + "\"";
     }
 
     /** Helper Methods for Replay Protection Deduplication */
@@ -0,0 +1,10 @@
+package com.proxy.interceptor.dto;
+
+/**
+ * Planner estimate for a blocked statement, from EXPLAIN without ANALYZE.
+ *
+ * @param estimatedRows rows the statement reads or, for a write, modifies
+ * @param estimatedCost total cost of the plan, in planner units
+ */
+public record ImpactEstimate(long estimatedRows, double estimatedCost) {
+}
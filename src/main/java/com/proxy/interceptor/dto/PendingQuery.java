@@ -1,16 +1,19 @@
 package com.proxy.interceptor.dto;
 
+import com.proxy.interceptor.proxy.HeldMessage;
+import com.proxy.interceptor.service.VoteTally;
 import io.netty.buffer.ByteBuf;
 
-import java.util.Set;
+import java.time.Instant;
 import java.util.function.Consumer;
 
 public record PendingQuery(
-        Long id,
-        String connId,
-        ByteBuf originalMessage,
+        long id,
+        long connectionId,
+        Instant createdAt,
+        HeldMessage originalMessage,
         Consumer<ByteBuf> forwardCallback,
         Consumer<String> rejectCallback,
-        Set<String> approvals,
-        Set<String> rejections
+        boolean requiresPeerApproval,
+        VoteTally votes
 ) {}
@@ -0,0 +1,15 @@
+package com.proxy.interceptor.dto;
+
+import java.util.List;
+
+/**
+ * Changes to the pending-query view after a client's last known sequence.
+ * When {@code resync} is set, {@code upserted} is the full view and replaces the client's copy.
+ */
+public record PendingQueryChanges(
+        String epoch,
+        long sequence,
+        boolean resync,
+        List<PendingQueryItem> upserted,
+        List<Long> removed
+) {}
@@ -0,0 +1,49 @@
+package com.proxy.interceptor.dto;
+
+import com.proxy.interceptor.model.BlockedQuery;
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+
+import java.time.Instant;
+
+public record PendingQueryItem(
+        long id,
+        String connId,
+        QueryType queryType,
+        String queryPreview,
+        Status status,
+        Instant createdAt,
+        boolean requiresPeerApproval,
+        int approvalCount,
+        int rejectionCount,
+        String ownerNode,
+        Long estimatedRows,
+        Double estimatedCost
+) {
+    public static PendingQueryItem from(BlockedQuery query) {
+        return new PendingQueryItem(
+                query.getId(),
+                query.getConnId(),
+                query.getQueryType(),
+                query.getQueryPreview(),
+                query.getStatus(),
+                query.getCreatedAt(),
+                query.isRequiresPeerApproval(),
+                query.getApprovalCount(),
+                query.getRejectionCount(),
+                query.getOwnerNode(),
+                query.getEstimatedRows(),
+                query.getEstimatedCost()
+        );
+    }
+
+    public PendingQueryItem withVotes(int approvalCount, int rejectionCount) {
+        return new PendingQueryItem(id, connId, queryType, queryPreview, status, createdAt,
+                requiresPeerApproval, approvalCount, rejectionCount, ownerNode, estimatedRows, estimatedCost);
+    }
+
+    public PendingQueryItem withEstimate(long estimatedRows, double estimatedCost) {
+        return new PendingQueryItem(id, connId, queryType, queryPreview, status, createdAt,
+                requiresPeerApproval, approvalCount, rejectionCount, ownerNode, estimatedRows, estimatedCost);
+    }
+}
@@ -0,0 +1,13 @@
+package com.proxy.interceptor.dto;
+
+import java.util.List;
+
+/** Policy fields to change; null fields keep their current value. */
+public record PolicyUpdate(List<String> criticalKeywords,
+                           List<String> allowedKeywords,
+                           List<String> tableRules,
+                           List<String> rateLimits,
+                           Boolean blockByDefault,
+                           Boolean peerApprovalEnabled,
+                           Integer minVotes) {
+}
@@ -0,0 +1,135 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.config.ClusterProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Request/response between Interceptor nodes over Redis pub/sub.
+ * Every node listens on its own request and reply channels; a request names the node to
+ * reply to and carries an id the reply is matched on. Replies that arrive after the
+ * request timed out are dropped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterMessenger {
+
+    public static final String NODE_CHANNEL_PREFIX = "interceptor:node:";
+
+    // Plain JSON: numbers come back as Integer or Long, lists as ArrayList
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static final RedisSerializer<Map> MESSAGE_SERIALIZER = new JacksonJsonRedisSerializer<>(Map.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ClusterProperties clusterProperties;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Map<String, Object>>> inFlight =
+            new ConcurrentHashMap<>();
+    private volatile BiFunction<String, Map<String, Object>, CompletableFuture<Map<String, Object>>> requestHandler;
+
+    public static String requestChannel(String nodeId) {
+        return NODE_CHANNEL_PREFIX + nodeId + ":requests";
+    }
+
+    public static String replyChannel(String nodeId) {
+        return NODE_CHANNEL_PREFIX + nodeId + ":replies";
+    }
+
+    /**
+     * Answers requests from other nodes: (action, arguments) to result. The reply is sent when
+     * the future completes, so the handler can run the request off the listener thread.
+     */
+    public void setRequestHandler(
+            BiFunction<String, Map<String, Object>, CompletableFuture<Map<String, Object>>> requestHandler) {
+        this.requestHandler = requestHandler;
+    }
+
+    /**
+     * Sends {@code action} to {@code nodeId}. The future completes with the node's result,
+     * or exceptionally with a TimeoutException once the request timeout passes.
+     */
+    public CompletableFuture<Map<String, Object>> request(String nodeId, String action, Map<String, Object> arguments) {
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<Map<String, Object>> reply = new CompletableFuture<>();
+        inFlight.put(requestId, reply);
+        reply.orTimeout(clusterProperties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((result, e) -> inFlight.remove(requestId));
+
+        try {
+            send(requestChannel(nodeId), Map.of(
+                    "requestId", requestId,
+                    "replyTo", clusterProperties.getNodeId(),
+                    "action", action,
+                    "arguments", arguments
+            ));
+            log.debug("Forwarded {} to node {} ({})", action, nodeId, requestId);
+        } catch (Exception e) {
+            reply.completeExceptionally(e);
+        }
+        return reply;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void handleRequest(Map<String, Object> message) {
+        String requestId = (String) message.get("requestId");
+        String replyTo = (String) message.get("replyTo");
+        String action = (String) message.get("action");
+        Map<String, Object> arguments = (Map<String, Object>) message.get("arguments");
+
+        CompletableFuture<Map<String, Object>> result;
+        BiFunction<String, Map<String, Object>, CompletableFuture<Map<String, Object>>> handler = requestHandler;
+        if (handler == null) {
+            result = CompletableFuture.completedFuture(Map.of("success", false, "error", "Node is not ready"));
+        } else {
+            try {
+                result = handler.apply(action, arguments);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+        }
+
+        result.exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Forwarded {} from node {} failed: {}", action, replyTo, cause.getMessage());
+            return Map.of("success", false, "error", "Owner node failed to process the request");
+        }).thenAccept(answer -> {
+            try {
+                send(replyChannel(replyTo), Map.of("requestId", requestId, "result", answer));
+            } catch (Exception e) {
+                log.error("Failed to reply to node {} for {}: {}", replyTo, requestId, e.getMessage());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public void handleReply(Map<String, Object> message) {
+        String requestId = (String) message.get("requestId");
+        CompletableFuture<Map<String, Object>> reply = inFlight.remove(requestId);
+        if (reply == null) {
+            log.debug("Dropping late cluster reply {}", requestId);
+            return;
+        }
+        reply.complete((Map<String, Object>) message.get("result"));
+    }
+
+    private void send(String channel, Map<String, Object> message) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = MESSAGE_SERIALIZER.serialize(message);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+}
@@ -0,0 +1,9 @@
+package com.proxy.interceptor.messaging;
+
+/** How query events travel between nodes ({@code events.transport}). */
+public enum EventTransport {
+    /** Redis pub/sub: lowest latency, but a node that is disconnected misses events. */
+    PUBSUB,
+    /** A Redis stream read through one consumer group per node; missed events are replayed. */
+    STREAMS
+}
@@ -0,0 +1,109 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.model.Vote;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Events exchanged between Interceptor nodes over the interceptor:* Redis channels.
+ * The wire layout of each event is defined by {@link QueryEventCodec}.
+ */
+public sealed interface QueryEvent {
+
+    /** Redis channel the event is published on. */
+    String channel();
+
+    /** JSON-friendly view forwarded to dashboards. */
+    Map<String, Object> toPayload();
+
+    record Blocked(long id,
+                   String connId,
+                   QueryType queryType,
+                   String queryPreview,
+                   Status status,
+                   Instant createdAt,
+                   boolean requiresPeerApproval,
+                   String ownerNode) implements QueryEvent {
+        @Override
+        public String channel() {
+            return QueryEventPublisher.BLOCKED_CHANNEL;
+        }
+
+        @Override
+        public Map<String, Object> toPayload() {
+            return Map.of(
+                    "id", id,
+                    "connId", connId,
+                    "queryType", queryType.name(),
+                    "queryPreview", queryPreview,
+                    "status", status.name(),
+                    "createdAt", createdAt.toString(),
+                    "requiresPeerApproval", requiresPeerApproval,
+                    "ownerNode", ownerNode
+            );
+        }
+    }
+
+    /** EXPLAIN estimate for a pending query; follows its {@link Blocked} event on the same channel. */
+    record Estimated(long id,
+                     long estimatedRows,
+                     double estimatedCost) implements QueryEvent {
+        @Override
+        public String channel() {
+            return QueryEventPublisher.BLOCKED_CHANNEL;
+        }
+
+        @Override
+        public Map<String, Object> toPayload() {
+            return Map.of(
+                    "kind", "estimate",
+                    "id", id,
+                    "estimatedRows", estimatedRows,
+                    "estimatedCost", estimatedCost
+            );
+        }
+    }
+
+    record Resolved(long id,
+                    Status status,
+                    String resolvedBy) implements QueryEvent {
+        @Override
+        public String channel() {
+            return QueryEventPublisher.APPROVALS_CHANNEL;
+        }
+
+        @Override
+        public Map<String, Object> toPayload() {
+            return Map.of(
+                    "id", id,
+                    "status", status.name(),
+                    "resolvedBy", resolvedBy
+            );
+        }
+    }
+
+    record VoteCast(long queryId,
+                    String voter,
+                    Vote vote,
+                    int approvalCount,
+                    int rejectionCount) implements QueryEvent {
+        @Override
+        public String channel() {
+            return QueryEventPublisher.VOTES_CHANNEL;
+        }
+
+        @Override
+        public Map<String, Object> toPayload() {
+            return Map.of(
+                    "queryId", queryId,
+                    "voter", voter,
+                    "vote", vote.name(),
+                    "approvalCount", approvalCount,
+                    "rejectionCount", rejectionCount
+            );
+        }
+    }
+}
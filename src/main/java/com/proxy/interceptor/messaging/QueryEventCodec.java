@@ -0,0 +1,202 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.model.Vote;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact, versioned binary format for {@link QueryEvent} batches.
+ * <pre>
+ * Batch    := version(1 byte) count(varint) Event*
+ * Event    := type(1 byte) fields
+ * BLOCKED  := id(varlong) connId(str) queryType(1 byte) queryPreview(str) status(1 byte)
+ *             createdAt(varlong epoch millis) requiresPeerApproval(1 byte)   [version 2+]
+ *             ownerNode(str)                                                [version 3+]
+ * RESOLVED := id(varlong) status(1 byte) resolvedBy(str)
+ * ESTIMATE := id(varlong) estimatedRows(varlong) estimatedCost(8 byte double)   [version 4+]
+ * VOTE     := queryId(varlong) voter(str) vote(1 byte)
+ *             approvalCount(varint) rejectionCount(varint)                    [version 2+]
+ * str      := length(varint) UTF-8 bytes
+ * </pre>
+ * Older batches are still decoded; the fields they lack default to the epoch, false, 0 and
+ * an empty owner node.
+ * Enum codes are the index into the tables below; tables are append-only so older
+ * nodes can still read events from newer ones.
+ */
+public final class QueryEventCodec {
+
+    public static final byte VERSION = 4;
+    private static final byte MIN_VERSION = 1;
+
+    private static final byte TYPE_BLOCKED = 1;
+    private static final byte TYPE_RESOLVED = 2;
+    private static final byte TYPE_VOTE = 3;
+    private static final byte TYPE_ESTIMATE = 4;
+
+    private static final QueryType[] QUERY_TYPES = {QueryType.SIMPLE, QueryType.EXTENDED};
+    private static final Status[] STATUSES = {Status.PENDING, Status.APPROVED, Status.REJECTED, Status.EXPIRED};
+    private static final Vote[] VOTES = {Vote.APPROVE, Vote.REJECT};
+
+    private QueryEventCodec() {}
+
+    public static byte[] encode(List<? extends QueryEvent> events) {
+        ByteBuf buf = Unpooled.buffer(16 + events.size() * 64);
+        try {
+            buf.writeByte(VERSION);
+            writeVarLong(buf, events.size());
+            for (QueryEvent event : events) {
+                writeEvent(buf, event);
+            }
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload is malformed or uses an unknown version
+     */
+    public static List<QueryEvent> decode(byte[] payload) {
+        ByteBuf buf = Unpooled.wrappedBuffer(payload);
+        try {
+            byte version = buf.readByte();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported event format version " + version);
+            }
+            int count = (int) readVarLong(buf);
+            List<QueryEvent> events = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(buf, version));
+            }
+            return events;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated event payload", e);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void writeEvent(ByteBuf buf, QueryEvent event) {
+        switch (event) {
+            case QueryEvent.Blocked blocked -> {
+                buf.writeByte(TYPE_BLOCKED);
+                writeVarLong(buf, blocked.id());
+                writeString(buf, blocked.connId());
+                buf.writeByte(code(QUERY_TYPES, blocked.queryType()));
+                writeString(buf, blocked.queryPreview());
+                buf.writeByte(code(STATUSES, blocked.status()));
+                writeVarLong(buf, blocked.createdAt().toEpochMilli());
+                buf.writeBoolean(blocked.requiresPeerApproval());
+                writeString(buf, blocked.ownerNode());
+            }
+            case QueryEvent.Estimated estimated -> {
+                buf.writeByte(TYPE_ESTIMATE);
+                writeVarLong(buf, estimated.id());
+                writeVarLong(buf, estimated.estimatedRows());
+                buf.writeDouble(estimated.estimatedCost());
+            }
+            case QueryEvent.Resolved resolved -> {
+                buf.writeByte(TYPE_RESOLVED);
+                writeVarLong(buf, resolved.id());
+                buf.writeByte(code(STATUSES, resolved.status()));
+                writeString(buf, resolved.resolvedBy());
+            }
+            case QueryEvent.VoteCast vote -> {
+                buf.writeByte(TYPE_VOTE);
+                writeVarLong(buf, vote.queryId());
+                writeString(buf, vote.voter());
+                buf.writeByte(code(VOTES, vote.vote()));
+                writeVarLong(buf, vote.approvalCount());
+                writeVarLong(buf, vote.rejectionCount());
+            }
+        }
+    }
+
+    private static QueryEvent readEvent(ByteBuf buf, byte version) {
+        byte type = buf.readByte();
+        boolean v2 = version >= 2;
+        boolean v3 = version >= 3;
+        return switch (type) {
+            case TYPE_BLOCKED -> new QueryEvent.Blocked(
+                    readVarLong(buf),
+                    readString(buf),
+                    lookup(QUERY_TYPES, buf.readByte()),
+                    readString(buf),
+                    lookup(STATUSES, buf.readByte()),
+                    v2 ? Instant.ofEpochMilli(readVarLong(buf)) : Instant.EPOCH,
+                    v2 && buf.readBoolean(),
+                    v3 ? readString(buf) : "");
+            case TYPE_ESTIMATE -> new QueryEvent.Estimated(
+                    readVarLong(buf),
+                    readVarLong(buf),
+                    buf.readDouble());
+            case TYPE_RESOLVED -> new QueryEvent.Resolved(
+                    readVarLong(buf),
+                    lookup(STATUSES, buf.readByte()),
+                    readString(buf));
+            case TYPE_VOTE -> new QueryEvent.VoteCast(
+                    readVarLong(buf),
+                    readString(buf),
+                    lookup(VOTES, buf.readByte()),
+                    v2 ? (int) readVarLong(buf) : 0,
+                    v2 ? (int) readVarLong(buf) : 0);
+            default -> throw new IllegalArgumentException("Unknown event type " + type);
+        };
+    }
+
+    private static void writeString(ByteBuf buf, String value) {
+        String s = value != null ? value : "";
+        writeVarLong(buf, ByteBufUtil.utf8Bytes(s));
+        ByteBufUtil.writeUtf8(buf, s);
+    }
+
+    private static String readString(ByteBuf buf) {
+        int length = (int) readVarLong(buf);
+        if (length > buf.readableBytes()) {
+            throw new IllegalArgumentException("String length exceeds payload");
+        }
+        return buf.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    private static void writeVarLong(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf buf) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static <E> byte code(E[] table, E value) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == value) return (byte) i;
+        }
+        throw new IllegalArgumentException("No wire code for " + value);
+    }
+
+    private static <E> E lookup(E[] table, byte code) {
+        if (code < 0 || code >= table.length) {
+            throw new IllegalArgumentException("Unknown wire code " + code);
+        }
+        return table[code];
+    }
+}
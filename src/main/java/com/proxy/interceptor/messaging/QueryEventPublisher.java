@@ -1,43 +1,177 @@
 package com.proxy.interceptor.messaging;
 
 import com.proxy.interceptor.model.BlockedQuery;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.model.Vote;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Publishes query events to the other Interceptor nodes.
+ * Events raised within the coalescing window are sent as one {@link QueryEventCodec} batch per channel.
+ * With the {@link EventTransport#STREAMS} transport each batch is appended to {@link #EVENT_STREAM}
+ * instead of published, tagged with the channel it would have gone to.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class QueryEventPublisher {
 
+    public static final String BLOCKED_CHANNEL = "interceptor:blocked";
+    public static final String APPROVALS_CHANNEL = "interceptor:approvals";
+    public static final String VOTES_CHANNEL = "interceptor:votes";
+
+    public static final String EVENT_STREAM = "interceptor:events";
+    public static final String STREAM_CHANNEL_FIELD = "channel";
+    public static final String STREAM_PAYLOAD_FIELD = "payload";
+
+    // Flush order: a query's blocked event always goes out before its votes and its resolution
+    private static final List<String> CHANNEL_ORDER = List.of(BLOCKED_CHANNEL, VOTES_CHANNEL, APPROVALS_CHANNEL);
+
     private final RedisTemplate<String, Object> redisTemplate;
 
+    @Value("${events.coalesce-window:5ms}")
+    private Duration coalesceWindow;
+
+    @Value("${events.max-batch-size:256}")
+    private int maxBatchSize;
+
+    @Value("${events.transport:PUBSUB}")
+    private EventTransport transport;
+
+    @Value("${events.stream.max-length:100000}")
+    private long streamMaxLength;
+
+    private final ConcurrentLinkedQueue<QueryEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "query-event-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
     public void publishBlocked(BlockedQuery query) {
-        redisTemplate.convertAndSend("interceptor:blocked", Map.of(
-                "id", query.getId(),
-                "connId", query.getConnId(),
-                "queryType", query.getQueryType().name(),
-                "queryPreview", query.getQueryPreview(),
-                "status", query.getStatus().name()
+        publish(new QueryEvent.Blocked(
+                query.getId(),
+                query.getConnId(),
+                query.getQueryType(),
+                query.getQueryPreview(),
+                query.getStatus(),
+                query.getCreatedAt(),
+                query.isRequiresPeerApproval(),
+                query.getOwnerNode()
         ));
     }
 
+    public void publishEstimate(long queryId, long estimatedRows, double estimatedCost) {
+        publish(new QueryEvent.Estimated(queryId, estimatedRows, estimatedCost));
+    }
+
     public void publishApproval(BlockedQuery query, String action, String resolvedBy) {
-        redisTemplate.convertAndSend("interceptor:approvals", Map.of(
-                "id", query.getId(),
-                "status", action,
-                "resolvedBy", resolvedBy
-        ));
+        publishResolved(query.getId(), Status.valueOf(action), resolvedBy);
     }
 
-    public void publishVote(Long queryId, String username, String vote) {
-        redisTemplate.convertAndSend("interceptor:votes", Map.of(
-                "queryId", queryId,
-                "voter", username,
-                "vote", vote
+    public void publishResolved(long queryId, Status status, String resolvedBy) {
+        publish(new QueryEvent.Resolved(queryId, status, resolvedBy));
+    }
+
+    public void publishVote(Long queryId, String username, String vote, int approvalCount, int rejectionCount) {
+        publish(new QueryEvent.VoteCast(
+                queryId,
+                username,
+                Vote.valueOf(vote.toUpperCase()),
+                approvalCount,
+                rejectionCount
         ));
     }
-}
\ No newline at end of file
+
+    private void publish(QueryEvent event) {
+        if (coalesceWindow.isZero()) {
+            send(event.channel(), List.of(event));
+            return;
+        }
+
+        pendingEvents.add(event);
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flush, coalesceWindow.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush() {
+        // Reset first: events queued from here on schedule their own flush
+        flushScheduled.set(false);
+
+        Map<String, List<QueryEvent>> byChannel = new LinkedHashMap<>();
+        CHANNEL_ORDER.forEach(channel -> byChannel.put(channel, new ArrayList<>()));
+
+        QueryEvent event;
+        while ((event = pendingEvents.poll()) != null) {
+            byChannel.get(event.channel()).add(event);
+        }
+
+        byChannel.forEach((channel, events) -> {
+            for (int from = 0; from < events.size(); from += maxBatchSize) {
+                send(channel, events.subList(from, Math.min(events.size(), from + maxBatchSize)));
+            }
+        });
+    }
+
+    private void send(String channel, List<QueryEvent> events) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = QueryEventCodec.encode(events);
+        try {
+            if (transport == EventTransport.STREAMS) {
+                append(channelBytes, payload);
+            } else {
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.publish(channelBytes, payload));
+            }
+            log.debug("Published {} event(s) to {} ({} bytes)", events.size(), channel, payload.length);
+        } catch (Exception e) {
+            log.error("Failed to publish {} event(s) to {}: {}", events.size(), channel, e.getMessage());
+        }
+    }
+
+    private void append(byte[] channel, byte[] payload) {
+        byte[] stream = EVENT_STREAM.getBytes(StandardCharsets.UTF_8);
+        Map<byte[], byte[]> fields = Map.of(
+                STREAM_CHANNEL_FIELD.getBytes(StandardCharsets.UTF_8), channel,
+                STREAM_PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8), payload);
+        // Approximate trimming lets Redis drop whole macro nodes, which is much cheaper than an exact MAXLEN
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(streamMaxLength)
+                .approximateTrimming(true);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(fields).withStreamKey(stream), options));
+    }
+}
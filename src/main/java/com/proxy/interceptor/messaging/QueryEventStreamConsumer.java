@@ -0,0 +1,244 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.config.ClusterProperties;
+import com.proxy.interceptor.service.MetricsService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads query events from {@link QueryEventPublisher#EVENT_STREAM} when the stream transport
+ * is selected. Each node reads through its own consumer group, so every node sees every
+ * event, and the group remembers how far the node got: after a Redis blip reading resumes
+ * where it stopped. Entries are acknowledged once handled; entries that were delivered but
+ * never acknowledged are replayed first whenever the consumer (re)connects.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryEventStreamConsumer {
+
+    private static final byte[] STREAM = QueryEventPublisher.EVENT_STREAM.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CHANNEL_FIELD = QueryEventPublisher.STREAM_CHANNEL_FIELD.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD_FIELD = QueryEventPublisher.STREAM_PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8);
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+    private static final long PENDING_REFRESH_MILLIS = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageHandler redisMessageHandler;
+    private final ClusterProperties clusterProperties;
+    private final MetricsService metricsService;
+
+    @Value("${events.transport:PUBSUB}")
+    private EventTransport transport;
+
+    @Value("${events.stream.batch-size:256}")
+    private int batchSize;
+
+    @Value("${events.stream.block:2s}")
+    private Duration blockTimeout;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile long pending;
+    private volatile long lagMillis;
+    private volatile String lastDeliveredId = "";
+    private long pendingRefreshedAt;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (transport != EventTransport.STREAMS) {
+            return;
+        }
+        metricsService.registerGauges("eventStream", () -> {
+            Map<String, Object> gauges = new LinkedHashMap<>();
+            gauges.put("group", group());
+            gauges.put("delivered", delivered.get());
+            gauges.put("acknowledged", acknowledged.get());
+            gauges.put("replayed", replayed.get());
+            gauges.put("pending", pending);
+            gauges.put("lagMillis", lagMillis);
+            gauges.put("lastDeliveredId", lastDeliveredId);
+            gauges.put("reconnects", reconnects.get());
+            return gauges;
+        });
+
+        running = true;
+        worker = new Thread(this::run, "query-event-stream");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Reading query events from stream {} as group {}", QueryEventPublisher.EVENT_STREAM, group());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(blockTimeout.plusSeconds(1).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // A generated node id is never reused, so its group could only pile up in Redis
+        if (clusterProperties.isNodeIdGenerated()) {
+            try {
+                redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                        connection.streamCommands().xGroupDestroy(STREAM, group()));
+            } catch (RuntimeException e) {
+                log.debug("Could not remove consumer group {}: {}", group(), e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        boolean recovering = true;
+        while (running) {
+            try {
+                if (recovering) {
+                    createGroup();
+                    replayUnacknowledged();
+                    recovering = false;
+                }
+                handle(read(ReadOffset.lastConsumed(), true));
+            } catch (RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                reconnects.incrementAndGet();
+                recovering = true;
+                log.warn("Reading event stream failed, retrying in {}: {}", RETRY_BACKOFF, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF.toMillis());
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void createGroup() {
+        try {
+            // Starts at the end of the stream: a new node seeds its state from the database
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(STREAM, group(), ReadOffset.latest(), true));
+            log.info("Created consumer group {}", group());
+        } catch (RuntimeException e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            // The group outlived the disconnect, and with it our position in the stream
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /** Handles entries this consumer was given before a disconnect but never acknowledged. */
+    private void replayUnacknowledged() {
+        List<ByteRecord> records;
+        while (!(records = read(ReadOffset.from("0"), false)).isEmpty()) {
+            replayed.addAndGet(records.size());
+            handle(records);
+        }
+    }
+
+    private List<ByteRecord> read(ReadOffset offset, boolean block) {
+        StreamReadOptions options = block
+                ? StreamReadOptions.empty().count(batchSize).block(blockTimeout)
+                : StreamReadOptions.empty().count(batchSize);
+        Consumer consumer = Consumer.from(group(), clusterProperties.getNodeId());
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xReadGroup(consumer, options, StreamOffset.create(STREAM, offset)));
+        return records != null ? records : List.of();
+    }
+
+    private void handle(List<ByteRecord> records) {
+        if (records.isEmpty()) {
+            lagMillis = 0;
+            refreshPending();
+            return;
+        }
+
+        List<RecordId> ids = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            byte[] channel = field(record, CHANNEL_FIELD);
+            byte[] payload = field(record, PAYLOAD_FIELD);
+            // Entries trimmed away while still pending come back without fields; they are just acknowledged
+            if (channel != null && payload != null) {
+                try {
+                    redisMessageHandler.handleStreamBatch(new String(channel, StandardCharsets.UTF_8), payload);
+                } catch (RuntimeException e) {
+                    // One bad entry must not hold up the group
+                    log.error("Failed to handle stream entry {}: {}", record.getId(), e.getMessage());
+                }
+            }
+            ids.add(record.getId());
+        }
+
+        redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.streamCommands().xAck(STREAM, group(), ids.toArray(RecordId[]::new)));
+
+        delivered.addAndGet(records.size());
+        acknowledged.addAndGet(ids.size());
+        lagMillis = Math.max(0, System.currentTimeMillis() - records.getFirst().getId().getTimestamp());
+        lastDeliveredId = records.getLast().getId().getValue();
+        refreshPending();
+    }
+
+    private void refreshPending() {
+        long now = System.currentTimeMillis();
+        if (now - pendingRefreshedAt < PENDING_REFRESH_MILLIS) {
+            return;
+        }
+        pendingRefreshedAt = now;
+        PendingMessagesSummary summary = redisTemplate.execute((RedisCallback<PendingMessagesSummary>) connection ->
+                connection.streamCommands().xPending(STREAM, group()));
+        pending = summary != null ? summary.getTotalPendingMessages() : 0;
+    }
+
+    private String group() {
+        return "interceptor:" + clusterProperties.getNodeId();
+    }
+
+    private static byte[] field(ByteRecord record, byte[] name) {
+        if (record.getValue() == null) {
+            return null;
+        }
+        for (Map.Entry<byte[], byte[]> entry : record.getValue().entrySet()) {
+            if (Arrays.equals(entry.getKey(), name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
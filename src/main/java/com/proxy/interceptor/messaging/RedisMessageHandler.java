@@ -1,29 +1,84 @@
 package com.proxy.interceptor.messaging;
 
+import com.proxy.interceptor.security.TokenVersionCache;
+import com.proxy.interceptor.service.BlockedQueryService;
+import com.proxy.interceptor.service.PolicyService;
 import com.proxy.interceptor.service.WebSocketNotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class RedisMessageHandler {
 
     private final WebSocketNotificationService webSocketNotificationService;
+    private final TokenVersionCache tokenVersionCache;
+    private final BlockedQueryService blockedQueryService;
+    private final PolicyService policyService;
+
+    public void handleBlockedMessage(byte[] message) {
+        for (QueryEvent event : decode(message)) {
+            if (event instanceof QueryEvent.Estimated) {
+                webSocketNotificationService.broadcastEstimate(applyToPendingView(event));
+            } else {
+                webSocketNotificationService.broadcastBlockedQuery(applyToPendingView(event));
+            }
+        }
+    }
+
+    public void handleApprovalMessage(byte[] message) {
+        for (QueryEvent event : decode(message)) {
+            webSocketNotificationService.broadcastApproval(applyToPendingView(event));
+        }
+    }
+
+    public void handleVoteMessage(byte[] message) {
+        for (QueryEvent event : decode(message)) {
+            webSocketNotificationService.broadcastVote(applyToPendingView(event));
+        }
+    }
+
+    /** Entry point for the stream transport, which carries the pub/sub channel with each batch. */
+    public void handleStreamBatch(String channel, byte[] message) {
+        switch (channel) {
+            case QueryEventPublisher.BLOCKED_CHANNEL -> handleBlockedMessage(message);
+            case QueryEventPublisher.APPROVALS_CHANNEL -> handleApprovalMessage(message);
+            case QueryEventPublisher.VOTES_CHANNEL -> handleVoteMessage(message);
+            default -> log.warn("Dropping stream batch for unknown channel {}", channel);
+        }
+    }
+
+    public void handleAuthInvalidationMessage(String username) {
+        log.debug("Redis auth invalidation message: {}", username);
+        tokenVersionCache.evict(username);
+    }
 
-    public void handleBlockedMessage(String message) {
-        log.debug("Redis blocked message: {}", message);
-        webSocketNotificationService.broadcastBlockedQuery(message);
+    public void handlePolicyMessage(String version) {
+        log.debug("Redis policy announcement: version {}", version);
+        policyService.onPolicyChanged(version);
     }
 
-    public void handleApprovalMessage(String message) {
-        log.debug("Redis approval message: {}", message);
-        webSocketNotificationService.broadcastApproval(message);
+    /** Dashboard payload for the event, tagged with the pending-view sequence it produced. */
+    private Map<String, Object> applyToPendingView(QueryEvent event) {
+        Map<String, Object> payload = new LinkedHashMap<>(event.toPayload());
+        payload.put("seq", blockedQueryService.applyEvent(event));
+        return payload;
     }
 
-    public void handleVoteMessage(String message) {
-        log.debug("Redis vote message: {}", message);
-        webSocketNotificationService.broadcastVote(message);
+    private List<QueryEvent> decode(byte[] message) {
+        try {
+            List<QueryEvent> events = QueryEventCodec.decode(message);
+            log.debug("Redis event batch: {} event(s), {} bytes", events.size(), message.length);
+            return events;
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping undecodable Redis event batch ({} bytes): {}", message.length, e.getMessage());
+            return List.of();
+        }
     }
 }
@@ -26,6 +26,9 @@ public class BlockedQuery {
     @Column(nullable = false)
     private String connId;
 
+    // Cluster node whose proxy holds the client connection
+    private String ownerNode;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private QueryType queryType;
@@ -54,6 +57,16 @@ public class BlockedQuery {
     @Builder.Default
     private boolean requiresPeerApproval = false;
 
+    // Planner estimate from EXPLAIN, filled in shortly after the query is blocked if available
+    private Long estimatedRows;
+
+    private Double estimatedCost;
+
+    // Version of the in-memory vote tally the counts above were taken from
+    @Column(nullable = false, columnDefinition = "bigint not null default 0")
+    @Builder.Default
+    private long voteVersion = 0;
+
     // Nonce for replay attack protection (Phase 2)
     @Column(unique = true)
     private String nonce;
@@ -0,0 +1,72 @@
+package com.proxy.interceptor.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The classification and approval policy every node enforces. The table holds a single row;
+ * its version grows with every change and is what nodes compare when told to reload.
+ */
+@Entity
+@Table(name = "proxy_policy")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProxyPolicy {
+
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    // Comma-separated, as in proxy.critical-keywords
+    @Column(nullable = false, length = 4000)
+    private String criticalKeywords;
+
+    @Column(nullable = false, length = 4000)
+    private String allowedKeywords;
+
+    // Comma-separated, as in proxy.table-rules; null in rows stored before table rules existed
+    @Column(length = 4000)
+    private String tableRules;
+
+    // Comma-separated, as in proxy.rate-limits; null in rows stored before rate limits existed
+    @Column(length = 4000)
+    private String rateLimits;
+
+    private boolean blockByDefault;
+
+    private boolean peerApprovalEnabled;
+
+    private int minVotes;
+
+    @Version
+    private Long version;
+
+    private Instant updatedAt;
+
+    private String updatedBy;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        ProxyPolicy that = (ProxyPolicy) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
@@ -0,0 +1,286 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Caps the queries executing on the backend at once, from the Query or Parse that starts one
+ * to the ReadyForQuery that ends it. Queries beyond the cap wait in one queue per user (or
+ * client IP) and are admitted round-robin across those queues, so one busy client cannot
+ * starve the rest; a query that waits past its deadline is refused.
+ * <p>
+ * While there is room and nobody is waiting, admission is a single compare-and-set. The
+ * queues are only touched, under a lock, when the backend is saturated.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdmissionController {
+
+    // Upper bounds of the queue wait histogram buckets; the last bucket is unbounded
+    private static final Duration[] WAIT_BOUNDS = {
+            Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(5)
+    };
+
+    private final ProxyProperties proxyProperties;
+    private final MetricsService metricsService;
+
+    private final AtomicInteger executing = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admittedAtOnce = new AtomicLong();
+    private final AtomicLong admittedFromQueue = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong queueFull = new AtomicLong();
+    private final AtomicLongArray waitBuckets = new AtomicLongArray(WAIT_BOUNDS.length + 1);
+
+    // Guards the queues and the ring of keys that have queued tickets, in turn order
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Ticket>> queues = new HashMap<>();
+    private final ArrayDeque<String> turns = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        metricsService.registerGauges("admission", () -> {
+            Map<String, Object> gauges = new LinkedHashMap<>();
+            gauges.put("maxExecuting", proxyProperties.getAdmission().getMaxExecuting());
+            gauges.put("executing", executing.get());
+            gauges.put("queued", waiting.get());
+            gauges.put("queuedByKey", queueDepths());
+            gauges.put("admittedAtOnce", admittedAtOnce.get());
+            gauges.put("admittedFromQueue", admittedFromQueue.get());
+            gauges.put("expired", expired.get());
+            gauges.put("cancelled", cancelled.get());
+            gauges.put("queueFull", queueFull.get());
+            gauges.put("queueWait", waitHistogram());
+            return gauges;
+        });
+    }
+
+    public boolean isEnabled() {
+        return proxyProperties.getAdmission().getMaxExecuting() > 0;
+    }
+
+    public ProxyProperties.Admission.FairBy fairBy() {
+        return proxyProperties.getAdmission().getFairBy();
+    }
+
+    /**
+     * Takes an execution slot if one is free and no query is waiting for one. A taken slot
+     * must be given back with {@link #release()}. Always true when admission control is off.
+     */
+    public boolean tryAcquire() {
+        if (!isEnabled()) {
+            return true;
+        }
+        // Queued queries go first; a newcomer does not overtake them
+        if (waiting.get() > 0) {
+            return false;
+        }
+        if (tryIncrement()) {
+            admittedAtOnce.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /** Gives back a slot taken by {@link #tryAcquire()} or handed to a ticket, and admits the next waiting query. */
+    public void release() {
+        executing.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Queues a query of {@code key} for a slot. {@code onDecision} runs on {@code loop} with
+     * true once the query holds a slot (to be given back with {@link #release()}), or with false
+     * if its deadline passed or the ticket was cancelled first.
+     *
+     * @return the ticket, or null if the queue is full and the query should be refused now
+     */
+    public Ticket enqueue(String key, ScheduledExecutorService loop, Consumer<Boolean> onDecision) {
+        ProxyProperties.Admission settings = proxyProperties.getAdmission();
+        if (waiting.incrementAndGet() > settings.getMaxQueued()) {
+            waiting.decrementAndGet();
+            queueFull.incrementAndGet();
+            return null;
+        }
+        Ticket ticket = new Ticket(key, loop, onDecision);
+        lock.lock();
+        try {
+            ArrayDeque<Ticket> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                turns.add(key);
+            }
+            queue.add(ticket);
+        } finally {
+            lock.unlock();
+        }
+        loop.schedule(() -> {
+            if (ticket.abandon()) {
+                expired.incrementAndGet();
+            }
+        }, settings.getQueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        // A slot may have been released between the failed tryAcquire and the enqueue
+        drain();
+        return ticket;
+    }
+
+    private boolean tryIncrement() {
+        int max = proxyProperties.getAdmission().getMaxExecuting();
+        while (true) {
+            int current = executing.get();
+            if (current >= max) {
+                return false;
+            }
+            if (executing.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Hands free slots to waiting tickets, one key's turn at a time. */
+    private void drain() {
+        while (waiting.get() > 0 && tryIncrement()) {
+            Ticket next = nextTicket();
+            if (next == null) {
+                executing.decrementAndGet();
+                return;
+            }
+            next.admit();
+        }
+    }
+
+    /** Next ticket that is still waiting, taken from the key whose turn it is; null if there is none. */
+    private Ticket nextTicket() {
+        lock.lock();
+        try {
+            String key;
+            while ((key = turns.poll()) != null) {
+                ArrayDeque<Ticket> queue = queues.get(key);
+                Ticket ticket = queue.poll();
+                if (queue.isEmpty()) {
+                    queues.remove(key);
+                } else {
+                    turns.add(key);
+                }
+                if (ticket != null && ticket.claim()) {
+                    return ticket;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Ticket ticket) {
+        lock.lock();
+        try {
+            ArrayDeque<Ticket> queue = queues.get(ticket.key);
+            if (queue != null && queue.remove(ticket) && queue.isEmpty()) {
+                queues.remove(ticket.key);
+                turns.remove(ticket.key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        int bucket = 0;
+        while (bucket < WAIT_BOUNDS.length && nanos > WAIT_BOUNDS[bucket].toNanos()) {
+            bucket++;
+        }
+        waitBuckets.incrementAndGet(bucket);
+    }
+
+    private Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        lock.lock();
+        try {
+            queues.forEach((key, queue) -> depths.put(key, queue.size()));
+        } finally {
+            lock.unlock();
+        }
+        return depths;
+    }
+
+    private Map<String, Long> waitHistogram() {
+        // Cumulative counts per bucket, keyed by upper bound, as for the pending-age histogram
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        long cumulative = 0;
+        for (int i = 0; i < waitBuckets.length(); i++) {
+            cumulative += waitBuckets.get(i);
+            histogram.put("le " + (i < WAIT_BOUNDS.length ? WAIT_BOUNDS[i].toString() : "+Inf"), cumulative);
+        }
+        return histogram;
+    }
+
+    /** A query waiting for a slot. Exactly one of admit, expiry and cancel decides it. */
+    public final class Ticket {
+
+        private static final int WAITING = 0;
+        private static final int DECIDED = 1;
+
+        private final String key;
+        private final Executor loop;
+        private final Consumer<Boolean> onDecision;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Ticket(String key, Executor loop, Consumer<Boolean> onDecision) {
+            this.key = key;
+            this.loop = loop;
+            this.onDecision = onDecision;
+        }
+
+        /** Gives up the place in the queue, e.g. because the client disconnected. */
+        public void cancel() {
+            if (abandon()) {
+                cancelled.incrementAndGet();
+            }
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(WAITING, DECIDED);
+        }
+
+        private void admit() {
+            waiting.decrementAndGet();
+            admittedFromQueue.incrementAndGet();
+            recordWait(System.nanoTime() - enqueuedAt);
+            loop.execute(() -> onDecision.accept(true));
+        }
+
+        private boolean abandon() {
+            if (!claim()) {
+                return false;
+            }
+            waiting.decrementAndGet();
+            remove(this);
+            loop.execute(() -> onDecision.accept(false));
+            return true;
+        }
+    }
+}
@@ -1,29 +1,68 @@
 package com.proxy.interceptor.proxy;
 
+import com.proxy.interceptor.config.ProxyProperties;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 public class ClientHandler extends ChannelInboundHandlerAdapter {
 
-    private final String connId;
+    private static final int SSL_REQUEST_CODE = 80877103;
+    private static final int GSSENC_REQUEST_CODE = 80877104;
+    private static final String HELD_BUDGET_EXCEEDED = "Query is too large to hold for approval";
+    // configuration_limit_exceeded
+    private static final String RATE_LIMITED_STATE = "53400";
+    // insufficient_resources
+    private static final String BACKEND_BUSY_STATE = "53000";
+    // admin_shutdown: the session is closed, and the client may reconnect and retry
+    private static final String SHUTTING_DOWN = "terminating connection because the proxy is shutting down";
+    private static final String RECONNECT = "Reconnect and retry the transaction.";
+    private static final String HELD_FOR_APPROVAL = "statement is waiting for approval";
+    // How often a delayed query over an in-flight limit looks for a free slot
+    private static final long IN_FLIGHT_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final long connectionId;
+    private final String connId; // "conn-N", for logs
     private final ConnectionState state;
     private final ProxyContext ctx;
     private volatile boolean backendReady;
     private Channel clientChannel;
 
-    public ClientHandler(String connId,
+    // While a query waits for rate limit room or for admission, reads stop and messages already read queue behind it
+    private boolean paused;
+    private final ArrayDeque<ByteBuf> deferred = new ArrayDeque<>();
+    private boolean rateDelayed;
+    private long delayDeadline;
+    private AdmissionController.Ticket queued;
+    // A refused Parse: the rest of its batch is dropped up to the Sync, which gets the ReadyForQuery
+    private boolean discardUntilSync;
+    // SQL of the client's prepared statements by name, so a re-execution is limited like its Parse was
+    private final Map<String, String> preparedStatements = new HashMap<>();
+    // SQL of the last Bind, for an Execute that arrives without one
+    private String boundSql = "";
+    // The extended batch up to the next Sync already holds a permit, taken at its Parse or first Bind/Execute
+    private boolean batchAdmitted;
+
+    public ClientHandler(long connectionId,
                          ConnectionState state,
                          ProxyContext ctx,
                          Channel clientChannel) {
-        this.connId = connId;
+        this.connectionId = connectionId;
+        this.connId = ConnectionState.label(connectionId);
         this.state = state;
         this.ctx = ctx;
         this.clientChannel = clientChannel;
@@ -60,8 +99,14 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
                             ));
                         }
 
+                        Duration backendIdle = ctx.connectionLimits().getBackendIdleTimeout();
+                        if (!backendIdle.isZero()) {
+                            ch.pipeline().addLast(new IdleStateHandler(0, 0, backendIdle.toNanos(), TimeUnit.NANOSECONDS));
+                        }
+
                         // Add the standard server handler
-                        ch.pipeline().addLast(new ServerHandler(connId, clientChannel, ctx.metricsService()));
+                        ch.pipeline().addLast(new ServerHandler(connId, clientChannel, ctx.metricsService(), state,
+                                () -> onBackendIdle(nettyCtx)));
                     }
                 });
 
@@ -81,6 +126,7 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext nettyCtx, Object msg) {
         ByteBuf buf = (ByteBuf) msg;
+        state.setLastActivity(System.nanoTime());
 
         try {
             // -------------------- Frontend TLS Negotiation (TLS A) --------------------
@@ -90,15 +136,22 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
                 int length = buf.getInt(readerIndex);
                 int code = buf.getInt(readerIndex + 4);
 
+                // GSSENCRequest: length=8, code=80877104. GSS encryption is not supported; 'N' makes the
+                // client go on with an SSLRequest or in plaintext. Never forwarded: the backend's bare 'N'
+                // has no message header and would throw off ServerHandler's ReadyForQuery tracking
+                if (length == 8 && code == GSSENC_REQUEST_CODE) {
+                    log.debug("{}: Received GSSENCRequest from client, responding 'N'", connId);
+                    nettyCtx.writeAndFlush(ctx.protocolHandler().sslDeclined());
+                    return;
+                }
+
                 // SSLRequest: length=8, code=80877103
-                if (length == 8 && code == 80877103) {
+                if (length == 8 && code == SSL_REQUEST_CODE) {
                     if (ctx.sslContextFactory() != null) {
                         log.debug("{}: Received SSLRequest from client, responding 'S' (frontend TLS enabled)", connId);
 
                         // 1. Respond with 'S' — we accept SSL
-                        ByteBuf response = nettyCtx.alloc().buffer(1);
-                        response.writeByte('S');
-                        nettyCtx.writeAndFlush(response).addListener((ChannelFutureListener) writeFuture -> {
+                        nettyCtx.writeAndFlush(ctx.protocolHandler().sslAccepted()).addListener((ChannelFutureListener) writeFuture -> {
                             if (writeFuture.isSuccess()) {
                                 // 2. Install SslHandler at the front of the pipeline (TLS A)
                                 SslHandler sslHandler = ctx.sslContextFactory().newFrontendHandler(nettyCtx.alloc());
@@ -123,9 +176,7 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
                     } else {
                         // SSL not configured — reject SSL negotiation
                         log.debug("{}: Received SSLRequest from client, responding 'N' (SSL not configured)", connId);
-                        ByteBuf response = nettyCtx.alloc().buffer(1);
-                        response.writeByte('N');
-                        nettyCtx.writeAndFlush(response);
+                        nettyCtx.writeAndFlush(ctx.protocolHandler().sslDeclined());
                     }
 
                     state.setSslNegotiated(true);
@@ -133,6 +184,11 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
                 }
             }
 
+            if (paused) {
+                deferred.add(buf.retain());
+                return;
+            }
+
             // Wait for server connection to be established
             if (state.getServerChannel() == null || !state.getServerChannel().isActive() || !backendReady) {
                 log.debug("{}: Server not connected yet, buffering message", connId);
@@ -154,11 +210,44 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
 
         byte messageType = buf.getByte(buf.readerIndex());
 
+        // While draining, a session at a transaction boundary takes no new work; the client reconnects elsewhere
+        if (ctx.draining().get() && !state.isBusy() && !state.isInTransaction() && messageType != 'X') {
+            reap(nettyCtx, "drained", "57P01", SHUTTING_DOWN, RECONNECT);
+            return;
+        }
+
+        // Anything but the startup message and Terminate is answered by a ReadyForQuery in the end
+        if (messageType != 0 && messageType != 'X') {
+            state.setBusy(true);
+        }
+
+        if (discardUntilSync) {
+            if (ctx.protocolHandler().endsWithSync(buf)) {
+                discardUntilSync = false;
+                batchAdmitted = false;
+                if (nettyCtx.channel().isActive()) {
+                    nettyCtx.writeAndFlush(ctx.protocolHandler().createReadyForQuery());
+                }
+                state.setBusy(false);
+            }
+            return;
+        }
+
+        // The StartupMessage has no type byte; its length's high byte is 0
+        if (messageType == 0 && state.getUser() == null) {
+            ctx.protocolHandler().parseStartupMessage(buf).ifPresent(parameters -> {
+                state.setUser(parameters.get("user"));
+                state.setDatabase(parameters.get("database"));
+                log.debug("{}: Startup as user {} on database {}", connId, state.getUser(), state.getDatabase());
+            });
+        }
+
         switch (messageType) {
             case 'Q' -> handleSimpleQuery(nettyCtx, buf);
-            case 'P' -> handleParseMessage(buf);
+            case 'P' -> handleParseMessage(nettyCtx, buf);
             case 'S' -> handleSyncMessage(nettyCtx, buf);
-            case 'B', 'D', 'E' -> handleExtendedProtocolMessage(buf);
+            case 'B', 'D', 'E' -> handleExtendedProtocolMessage(nettyCtx, buf);
+            case 'C' -> handleCloseMessage(buf);
             default -> forwardToServer(buf.retain());
         }
     }
@@ -168,79 +257,327 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
         var simpleQuery = ctx.protocolHandler().parseSimpleQuery(buf.duplicate());
         if (simpleQuery.isPresent()) {
             String sql = simpleQuery.get();
+            RateLimiter.Permit permit = admit(nettyCtx, buf, sql);
+            if (permit == null) {
+                return;
+            }
             ctx.metricsService().trackQuery("SIMPLE");
 
             if (ctx.sqlClassifier().shouldBlock(sql)) {
+                // Held queries are not in flight at the backend
+                permit.release();
                 log.info("{}: 🚫BLOCKED Simple Query: {}", connId, truncate(sql));
                 ctx.metricsService().trackBlocked();
 
+                HeldMessage held = ctx.heldMessageStore().hold(connectionId, buf.retainedDuplicate(), nettyCtx.alloc());
+                if (held == null) {
+                    log.warn("{}: Blocked query exceeds the held-bytes budget, refusing it", connId);
+                    sendErrorToClient(nettyCtx, HELD_BUDGET_EXCEEDED);
+                    return;
+                }
+
                 ctx.blockedQueryService().addBlockedQuery(
-                        connId,
+                        connectionId,
                         "SIMPLE",
                         sql,
-                        buf.retainedDuplicate(),
-                        this::forwardToServer,
+                        held,
+                        approved -> runApproved(nettyCtx, sql, approved),
                         error -> sendErrorToClient(nettyCtx, error)
                 );
+                noticeHeld(nettyCtx);
                 return;
             }
+            execute(nettyCtx, buf, permit);
+            return;
         }
         forwardToServer(buf.retain());
     }
 
     /** Extended Query */
-    private void handleParseMessage(ByteBuf buf) {
+    private void handleParseMessage(ChannelHandlerContext nettyCtx, ByteBuf buf) {
         var extendedQuery = ctx.protocolHandler().parseExtendedQuery(buf.duplicate());
         if (extendedQuery.isPresent()) {
             String sql = extendedQuery.get();
+            ctx.protocolHandler().parseStatementName(buf).ifPresent(name -> preparedStatements.put(name, sql));
+            RateLimiter.Permit permit = admit(nettyCtx, buf, sql);
+            if (permit == null) {
+                return;
+            }
 
             if (ctx.sqlClassifier().shouldBlock(sql)) {
+                permit.release();
                 log.debug("{}: Starting blocked extended batch", connId);
                 state.setInExtendedBatch(true);
                 state.setBatchQuery(new StringBuilder(sql));
-                state.getBatchBuffers().add(buf.retainedDuplicate());
+                state.setHeldBatch(ctx.heldMessageStore().open(connectionId));
+                state.getHeldBatch().add(buf.retainedDuplicate());
                 return;
             }
+            batchAdmitted = !ctx.protocolHandler().endsWithSync(buf);
+            execute(nettyCtx, buf, permit);
+            return;
         }
         forwardToServer(buf.retain());
     }
 
-    private void handleExtendedProtocolMessage(ByteBuf buf) {
+    private void handleExtendedProtocolMessage(ChannelHandlerContext nettyCtx, ByteBuf buf) {
         if (state.isInExtendedBatch()) {
-            state.getBatchBuffers().add(buf.retainedDuplicate());
-        } else {
+            // Over budget the batch drops its bytes; the refusal is reported at Sync
+            state.getHeldBatch().add(buf.retainedDuplicate());
+            return;
+        }
+        byte messageType = buf.getByte(buf.readerIndex());
+        if (messageType == 'B') {
+            boundSql = ctx.protocolHandler().parseStatementName(buf)
+                    .map(name -> preparedStatements.getOrDefault(name, ""))
+                    .orElse("");
+        }
+        if (batchAdmitted || messageType == 'D') {
             forwardToServer(buf.retain());
+            return;
+        }
+        // A prepared statement run again without a Parse: it is admitted here, and gives back its permit and
+        // execution slot at the ReadyForQuery
+        RateLimiter.Permit permit = admit(nettyCtx, buf, boundSql);
+        if (permit == null) {
+            return;
         }
+        batchAdmitted = !ctx.protocolHandler().endsWithSync(buf);
+        execute(nettyCtx, buf, permit);
+    }
+
+    private void handleCloseMessage(ByteBuf buf) {
+        ctx.protocolHandler().parseStatementName(buf).ifPresent(preparedStatements::remove);
+        forwardToServer(buf.retain());
     }
 
     private void handleSyncMessage(ChannelHandlerContext nettyCtx, ByteBuf buf) {
+        batchAdmitted = false;
         if (!state.isInExtendedBatch()) {
             forwardToServer(buf.retain());
             return;
         }
 
-        state.getBatchBuffers().add(buf.retainedDuplicate());
+        HeldMessageStore.Batch batch = state.getHeldBatch();
+        batch.add(buf.retainedDuplicate());
         String sql = state.getBatchQuery().toString();
 
         log.info("{}: 🚫BLOCKED Extended Query: {}", connId, truncate(sql));
         ctx.metricsService().trackQuery("EXTENDED");
         ctx.metricsService().trackBlocked();
 
-        ByteBuf combinedBuf = nettyCtx.alloc().compositeBuffer()
-                .addComponents(true, state.getBatchBuffers().toArray(new ByteBuf[0]));
-
         state.setInExtendedBatch(false);
         state.setBatchQuery(new StringBuilder());
-        state.getBatchBuffers().clear();
+        state.setHeldBatch(null);
+
+        if (batch.isRefused()) {
+            log.warn("{}: Blocked batch exceeds the held-bytes budget, refusing it", connId);
+            sendErrorToClient(nettyCtx, HELD_BUDGET_EXCEEDED);
+            return;
+        }
 
         ctx.blockedQueryService().addBlockedQuery(
-                connId,
+                connectionId,
                 "EXTENDED",
                 sql,
-                combinedBuf,
-                this::forwardToServer,
+                batch.finish(nettyCtx.alloc()),
+                approved -> runApproved(nettyCtx, sql, approved),
                 error -> sendErrorToClient(nettyCtx, error)
         );
+        noticeHeld(nettyCtx);
+    }
+
+    /** Tells the client why its statement has not been answered yet; psql and most drivers show or log notices. */
+    private void noticeHeld(ChannelHandlerContext nettyCtx) {
+        if (nettyCtx.channel().isActive()) {
+            nettyCtx.writeAndFlush(ctx.protocolHandler().createNoticeResponse(nettyCtx.alloc(),
+                    WireProtocolHandler.Severity.NOTICE, "00000", HELD_FOR_APPROVAL, null,
+                    "The statement runs once approved; a rejection is returned as an error."));
+        }
+    }
+
+    /**
+     * Sends a held query once it is approved (by votes or on expiry), on the connection's event
+     * loop and under the same rate limits and admission control as any other query: its permit
+     * was given back when it was held. Takes ownership of {@code message}.
+     */
+    private void runApproved(ChannelHandlerContext nettyCtx, String sql, ByteBuf message) {
+        if (!nettyCtx.channel().eventLoop().inEventLoop()) {
+            nettyCtx.channel().eventLoop().execute(() -> runApproved(nettyCtx, sql, message));
+            return;
+        }
+        try {
+            if (!nettyCtx.channel().isActive()) {
+                return;
+            }
+            RateLimiter.Permit permit = admit(nettyCtx, message, sql, retry -> runApproved(nettyCtx, sql, retry.retain()));
+            if (permit != null) {
+                execute(nettyCtx, message, permit);
+            }
+        } finally {
+            message.release();
+        }
+    }
+
+    /** Rate limiting and admission */
+
+    /**
+     * Admits a query under the rate limits. Returns its permit, or null if the query was
+     * refused with an ErrorResponse or, when delays are allowed, set aside to be processed
+     * again once there is room.
+     */
+    private RateLimiter.Permit admit(ChannelHandlerContext nettyCtx, ByteBuf buf, String sql) {
+        return admit(nettyCtx, buf, sql, retry -> processClientMessage(nettyCtx, retry));
+    }
+
+    /**
+     * As {@link #admit(ChannelHandlerContext, ByteBuf, String)}; a delayed query is handed to {@code retry}
+     * later, which must retain it to keep it.
+     */
+    private RateLimiter.Permit admit(ChannelHandlerContext nettyCtx, ByteBuf buf, String sql, Consumer<ByteBuf> retry) {
+        RateLimiter.Admission admission = ctx.rateLimiter().admit(state.getClientIp(), state.getUser(), sql);
+        if (admission.admitted()) {
+            rateDelayed = false;
+            return admission.permit();
+        }
+
+        long now = System.nanoTime();
+        long maxDelay = ctx.rateLimiter().maxDelayNanos();
+        if (!rateDelayed && maxDelay > 0) {
+            rateDelayed = true;
+            delayDeadline = now + maxDelay;
+            ctx.rateLimiter().trackDelayed();
+        }
+        if (maxDelay > 0 && delayDeadline - now > 0) {
+            long wait = admission.retryAfterNanos() > 0 ? admission.retryAfterNanos() : IN_FLIGHT_POLL_NANOS;
+            delay(nettyCtx, buf, Math.min(wait, delayDeadline - now), retry);
+            return null;
+        }
+
+        rateDelayed = false;
+        log.info("{}: Query over the {} limit, refusing it", connId, admission.limitedBy());
+        String hint = admission.retryAfterNanos() > 0
+                ? "Retry in " + TimeUnit.NANOSECONDS.toMillis(admission.retryAfterNanos() + 999_999) + " ms."
+                : "Retry once a query of yours has finished.";
+        refuse(nettyCtx, buf, RATE_LIMITED_STATE, "Rate limit exceeded for " + admission.limitedBy(), hint);
+        return null;
+    }
+
+    private void delay(ChannelHandlerContext nettyCtx, ByteBuf buf, long nanos, Consumer<ByteBuf> retry) {
+        pause(nettyCtx);
+        ByteBuf retained = buf.retain();
+        nettyCtx.channel().eventLoop().schedule(() -> {
+            if (!nettyCtx.channel().isActive()) {
+                retained.release();
+                return;
+            }
+            paused = false;
+            try {
+                retry.accept(retained);
+            } finally {
+                retained.release();
+            }
+            resume(nettyCtx);
+        }, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends an admitted query to the backend once admission control gives it an execution
+     * slot, queueing it (with reads paused) while the backend is saturated.
+     */
+    private void execute(ChannelHandlerContext nettyCtx, ByteBuf buf, RateLimiter.Permit permit) {
+        AdmissionController admission = ctx.admissionController();
+        if (admission.tryAcquire()) {
+            send(buf.retain(), permit);
+            return;
+        }
+
+        ByteBuf retained = buf.retain();
+        queued = admission.enqueue(fairKey(), nettyCtx.channel().eventLoop(), admitted -> {
+            queued = null;
+            if (!nettyCtx.channel().isActive()) {
+                if (admitted) {
+                    admission.release();
+                }
+                permit.release();
+                retained.release();
+                return;
+            }
+            if (admitted) {
+                send(retained, permit);
+            } else {
+                refuseBusy(nettyCtx, retained, permit, "Backend busy: query waited too long to be admitted");
+            }
+            paused = false;
+            resume(nettyCtx);
+        });
+        if (queued == null) {
+            refuseBusy(nettyCtx, retained, permit, "Backend busy: admission queue is full");
+            return;
+        }
+        log.debug("{}: Backend saturated, query queued for admission", connId);
+        pause(nettyCtx);
+    }
+
+    private void send(ByteBuf buf, RateLimiter.Permit permit) {
+        if (permit.holdsSlots()) {
+            state.holdUntilReady(permit::release);
+        }
+        if (ctx.admissionController().isEnabled()) {
+            state.holdUntilReady(ctx.admissionController()::release);
+        }
+        forwardToServer(buf);
+    }
+
+    private void refuseBusy(ChannelHandlerContext nettyCtx, ByteBuf buf, RateLimiter.Permit permit, String message) {
+        log.info("{}: {}", connId, message);
+        permit.release();
+        refuse(nettyCtx, buf, BACKEND_BUSY_STATE, message, null);
+        buf.release();
+    }
+
+    /**
+     * Answers a refused query with an ErrorResponse. As the server would, an extended-protocol
+     * message (Parse, Bind, Execute) whose Sync is still to come gets its ReadyForQuery at that
+     * Sync, and the messages in between are dropped.
+     */
+    private void refuse(ChannelHandlerContext nettyCtx, ByteBuf buf, String sqlState, String message, String hint) {
+        if (buf.getByte(buf.readerIndex()) != 'Q' && !ctx.protocolHandler().endsWithSync(buf)) {
+            discardUntilSync = true;
+            if (nettyCtx.channel().isActive()) {
+                nettyCtx.writeAndFlush(ctx.protocolHandler().createErrorResponse(
+                        nettyCtx.alloc(), WireProtocolHandler.Severity.ERROR, sqlState, message, null, hint));
+            }
+            return;
+        }
+        sendErrorToClient(nettyCtx, sqlState, message, hint);
+    }
+
+    private String fairKey() {
+        if (ctx.admissionController().fairBy() == ProxyProperties.Admission.FairBy.USER && state.getUser() != null) {
+            return state.getUser();
+        }
+        return state.getClientIp();
+    }
+
+    private void pause(ChannelHandlerContext nettyCtx) {
+        paused = true;
+        nettyCtx.channel().config().setAutoRead(false);
+    }
+
+    /** Replays what arrived while paused, in order, and reads on unless one of those messages pauses again. */
+    private void resume(ChannelHandlerContext nettyCtx) {
+        while (!paused && !deferred.isEmpty()) {
+            ByteBuf next = deferred.poll();
+            try {
+                processClientMessage(nettyCtx, next);
+            } finally {
+                next.release();
+            }
+        }
+        if (!paused) {
+            nettyCtx.channel().config().setAutoRead(true);
+        }
     }
 
     /** Forwarding helpers */
@@ -270,22 +607,87 @@ public class ClientHandler extends ChannelInboundHandlerAdapter {
     }
 
     private void sendErrorToClient(ChannelHandlerContext nettyCtx, String message) {
+        sendErrorToClient(nettyCtx, "20000", message, null);
+    }
+
+    private void sendErrorToClient(ChannelHandlerContext nettyCtx, String sqlState, String message, String hint) {
         if (!nettyCtx.channel().isActive()) return;
 
-        ByteBuf error = ctx.protocolHandler().createErrorResponse(message);
+        ByteBuf error = ctx.protocolHandler().createErrorResponse(
+                nettyCtx.alloc(), WireProtocolHandler.Severity.ERROR, sqlState, message, null, hint);
         ByteBuf ready = ctx.protocolHandler().createReadyForQuery();
         nettyCtx.write(error);
         nettyCtx.writeAndFlush(ready);
+        state.setBusy(false);
+    }
+
+    /** Idle reaping and draining */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext nettyCtx, Object evt) {
+        if (evt instanceof ProxyServer.DrainEvent drain) {
+            if (drain == ProxyServer.DrainEvent.FORCE || (!state.isBusy() && !state.isInTransaction() && !paused)) {
+                reap(nettyCtx, "drained", "57P01", SHUTTING_DOWN, RECONNECT);
+            }
+            return;
+        }
+        if (!(evt instanceof IdleStateEvent)) {
+            nettyCtx.fireUserEventTriggered(evt);
+            return;
+        }
+        // The client has sent nothing for an idle check interval
+        if (state.isBusy() || paused) {
+            return;
+        }
+        boolean inTransaction = state.isInTransaction();
+        Duration timeout = inTransaction
+                ? ctx.connectionLimits().getIdleInTransactionTimeout()
+                : ctx.connectionLimits().getClientIdleTimeout();
+        if (timeout.isZero() || System.nanoTime() - state.getLastActivity() < timeout.toNanos()) {
+            return;
+        }
+        if (inTransaction) {
+            reap(nettyCtx, "idleInTransaction", "25P03", "terminating connection due to idle-in-transaction timeout");
+        } else {
+            reap(nettyCtx, "clientIdle", "57P05", "terminating connection due to idle-session timeout");
+        }
+    }
+
+    private void onBackendIdle(ChannelHandlerContext nettyCtx) {
+        if (!state.isBusy()) {
+            reap(nettyCtx, "backendIdle", "57P05", "terminating connection due to idle backend connection");
+        }
+    }
+
+    /** Closes the connection with a FATAL error; channelInactive releases its buffers and the backend connection. */
+    private void reap(ChannelHandlerContext nettyCtx, String reason, String sqlState, String message) {
+        reap(nettyCtx, reason, sqlState, message, null);
+    }
+
+    private void reap(ChannelHandlerContext nettyCtx, String reason, String sqlState, String message, String hint) {
+        if (!nettyCtx.channel().isActive()) return;
+
+        log.info("{}: Closing connection: {}", connId, message);
+        ctx.metricsService().trackReaped(reason);
+        nettyCtx.writeAndFlush(ctx.protocolHandler().createErrorResponse(
+                        nettyCtx.alloc(), WireProtocolHandler.Severity.FATAL, sqlState, message, null, hint))
+                .addListener(ChannelFutureListener.CLOSE);
     }
 
     /** Cleanup */
     @Override
     public void channelInactive(ChannelHandlerContext nettyCtx) {
         log.info("{}: Client disconnected", connId);
-        ctx.connections().remove(connId);
+        ctx.connections().remove(connectionId);
         ctx.metricsService().trackDisconnection();
-        ctx.blockedQueryService().cleanupConnection(connId);
+        ctx.blockedQueryService().cleanupConnection(connectionId);
         state.resetBatch();
+        state.releaseInFlight();
+        if (queued != null) {
+            queued.cancel();
+        }
+        ctx.heldMessageStore().connectionClosed(connectionId);
+        deferred.forEach(ByteBuf::release);
+        deferred.clear();
 
         if (state.getServerChannel() != null) {
             state.getServerChannel().close();
@@ -0,0 +1,184 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.proxy.ast.TableReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, ready-to-match form of the proxy policy. Keywords are trimmed, upper-cased and
+ * de-duplicated once here rather than on every classified statement, and a whole snapshot is
+ * swapped in at once, so a statement is never classified against half of an update.
+ * AST operation types are looked up in an {@link OperationTable}; the fallback path scans
+ * the raw text once with a {@link KeywordAutomaton}. Table rules are indexed in a
+ * {@link TableRuleIndex} and take precedence over keywords for statements that parse.
+ * Rate and concurrency limits travel with the policy as {@link RateLimitRules}.
+ */
+public final class CompiledPolicy {
+
+    private final long version;
+    private final List<String> criticalKeywords;
+    private final List<String> allowedKeywords;
+    private final OperationTable operations;
+    private final KeywordAutomaton automaton;
+    private final TableRuleIndex tableRules;
+    private final RateLimitRules rateLimits;
+    private final boolean blockByDefault;
+    private final boolean peerApprovalEnabled;
+    private final int minVotes;
+
+    private CompiledPolicy(long version,
+                           List<String> criticalKeywords,
+                           List<String> allowedKeywords,
+                           TableRuleIndex tableRules,
+                           RateLimitRules rateLimits,
+                           boolean blockByDefault,
+                           boolean peerApprovalEnabled,
+                           int minVotes) {
+        this.version = version;
+        this.criticalKeywords = criticalKeywords;
+        this.allowedKeywords = allowedKeywords;
+        this.operations = OperationTable.build(operationMap(criticalKeywords, allowedKeywords));
+        List<String> all = new ArrayList<>(criticalKeywords);
+        all.addAll(allowedKeywords);
+        this.automaton = new KeywordAutomaton(all, criticalKeywords.size());
+        this.tableRules = tableRules;
+        this.rateLimits = rateLimits;
+        this.blockByDefault = blockByDefault;
+        this.peerApprovalEnabled = peerApprovalEnabled;
+        this.minVotes = minVotes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code minVotes} is below 1 or a table or rate limit rule is malformed
+     */
+    public static CompiledPolicy compile(long version,
+                                         Collection<String> criticalKeywords,
+                                         Collection<String> allowedKeywords,
+                                         Collection<String> tableRules,
+                                         Collection<String> rateLimits,
+                                         boolean blockByDefault,
+                                         boolean peerApprovalEnabled,
+                                         int minVotes) {
+        if (minVotes < 1) {
+            throw new IllegalArgumentException("minVotes must be at least 1");
+        }
+        return new CompiledPolicy(version, normalize(criticalKeywords), normalize(allowedKeywords),
+                TableRuleIndex.build(tableRules), RateLimitRules.build(rateLimits),
+                blockByDefault, peerApprovalEnabled, minVotes);
+    }
+
+    /** Splits a comma-separated keyword or rule list, as stored and as configured. */
+    public static List<String> split(String keywords) {
+        List<String> result = new ArrayList<>();
+        if (keywords != null) {
+            for (String keyword : keywords.split(",")) {
+                if (!keyword.isBlank()) {
+                    result.add(keyword.trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> normalize(Collection<String> keywords) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                if (keyword != null && !keyword.isBlank()) {
+                    normalized.add(keyword.trim().toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return List.copyOf(normalized);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /** Upper-cased, in configured order. */
+    public List<String> criticalKeywords() {
+        return criticalKeywords;
+    }
+
+    /** Upper-cased, in configured order. */
+    public List<String> allowedKeywords() {
+        return allowedKeywords;
+    }
+
+    /** Table rules as configured, in order. */
+    public List<String> tableRules() {
+        return tableRules.definitions();
+    }
+
+    /**
+     * Classification the table rules give a parsed statement, or null if they do not decide it:
+     * CRITICAL if any named table is critical for the operation, ALLOWED only if every one is allowed.
+     */
+    public Classification classifyTables(String operation, List<TableReference> tables) {
+        return tableRules.classify(operation, tables);
+    }
+
+    public boolean hasTableRules() {
+        return !tableRules.isEmpty();
+    }
+
+    /** Rate limit rules as configured, in order. */
+    public List<String> rateLimits() {
+        return rateLimits.definitions();
+    }
+
+    RateLimitRules rateLimitRules() {
+        return rateLimits;
+    }
+
+    /**
+     * Classification the policy gives an operation type, or null if it names it in neither list.
+     *
+     * @param operation upper-case statement type from the AST pass
+     */
+    public Classification classifyOperation(String operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Keyword that decides the classification of unparsable {@code sql}: a critical keyword
+     * if any occurs, else an allowed one, else null. Matching ignores case. The keyword's
+     * classification is {@link #classifyOperation} of it.
+     */
+    public String matchKeyword(CharSequence sql) {
+        int match = automaton.match(sql);
+        return match == KeywordAutomaton.NO_MATCH ? null : automaton.keyword(match);
+    }
+
+    public boolean blockByDefault() {
+        return blockByDefault;
+    }
+
+    public boolean peerApprovalEnabled() {
+        return peerApprovalEnabled;
+    }
+
+    public int minVotes() {
+        return minVotes;
+    }
+
+    // Critical wins for a keyword in both lists, as it is checked first
+    private static Map<String, Classification> operationMap(List<String> critical, List<String> allowed) {
+        Map<String, Classification> map = new HashMap<>();
+        allowed.forEach(keyword -> map.put(keyword, Classification.ALLOWED));
+        critical.forEach(keyword -> map.put(keyword, Classification.CRITICAL));
+        return map;
+    }
+
+    public Classification defaultClassification() {
+        return blockByDefault ? Classification.CRITICAL : Classification.ALLOWED;
+    }
+}
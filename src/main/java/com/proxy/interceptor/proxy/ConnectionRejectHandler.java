@@ -0,0 +1,61 @@
+package com.proxy.interceptor.proxy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sole handler of a connection over the connection limits. No backend connection is opened:
+ * an SSLRequest or GSSENCRequest is declined with 'N' so the client goes on in plaintext, and
+ * its startup message is answered with a FATAL too_many_connections error before closing.
+ */
+@Slf4j
+class ConnectionRejectHandler extends ChannelInboundHandlerAdapter {
+
+    private static final int SSL_REQUEST_CODE = 80877103;
+    private static final int GSSENC_REQUEST_CODE = 80877104;
+    // A client that sends nothing is not waited for longer than this
+    private static final long STARTUP_WAIT_SECONDS = 10;
+
+    private final WireProtocolHandler protocolHandler;
+    private final String message;
+
+    ConnectionRejectHandler(WireProtocolHandler protocolHandler, String message) {
+        this.protocolHandler = protocolHandler;
+        this.message = message;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        ctx.executor().schedule(() -> ctx.close(), STARTUP_WAIT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ByteBuf buf = (ByteBuf) msg;
+        try {
+            if (buf.readableBytes() == 8) {
+                int code = buf.getInt(buf.readerIndex() + 4);
+                if (code == SSL_REQUEST_CODE || code == GSSENC_REQUEST_CODE) {
+                    ctx.writeAndFlush(protocolHandler.sslDeclined());
+                    return;
+                }
+            }
+            // 53300 too_many_connections
+            ctx.writeAndFlush(protocolHandler.createFatalResponse(ctx.alloc(), "53300", message))
+                    .addListener(ChannelFutureListener.CLOSE);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("Rejected connection error: {}", cause.getMessage());
+        ctx.close();
+    }
+}
@@ -1,38 +1,80 @@
 package com.proxy.interceptor.proxy;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
 
 @Getter
 @Setter
 public class ConnectionState {
 
-    private final String connId;
+    private final long connId;
     private volatile String clientIp = "UNKNOWN";
+    // From the startup message; null until the client has sent it
+    private volatile String user;
+    private volatile String database;
+    // Whether the client has sent something the backend has not yet answered with ReadyForQuery
+    private volatile boolean busy;
+    // From the last ReadyForQuery: 'I' idle, 'T' in a transaction block, 'E' in a failed one
+    private volatile char transactionStatus = 'I';
+    // System.nanoTime of the last client message or ReadyForQuery
+    private volatile long lastActivity = System.nanoTime();
+    private volatile Channel clientChannel;
     private volatile Channel serverChannel;
     private volatile boolean inExtendedBatch = false;
     private volatile boolean sslNegotiated = false;
     private volatile boolean frontendSslDone = false;
     private StringBuilder batchQuery = new StringBuilder();
-    private final List<ByteBuf> batchBuffers = new ArrayList<>();
+    // Messages of the blocked extended batch being collected, accounted by HeldMessageStore
+    private HeldMessageStore.Batch heldBatch;
+    // Slots (rate limiter, admission) held by queries sent to the backend and not yet answered; used only on the event loop
+    private final ArrayDeque<Runnable> inFlightReleases = new ArrayDeque<>();
 
-    public ConnectionState(String connId) {
+    public ConnectionState(long connId) {
         this.connId = connId;
     }
 
+    /** "conn-N" form used in logs and stored with blocked queries. */
+    public static String label(long connId) {
+        return "conn-" + connId;
+    }
+
+    /** Runs {@code release} when the backend next reports ReadyForQuery, or when the connection closes. */
+    public void holdUntilReady(Runnable release) {
+        inFlightReleases.add(release);
+    }
+
+    /** Called on each ReadyForQuery, from the backend or one the proxy answers with itself. */
+    public void readyForQuery(char status) {
+        releaseInFlight();
+        transactionStatus = status;
+        busy = false;
+        lastActivity = System.nanoTime();
+    }
+
+    public boolean isInTransaction() {
+        return transactionStatus != 'I';
+    }
+
+    /**
+     * Clients wait for ReadyForQuery before the next query, so everything sent so far has been
+     * answered; a pipelining client is counted until its first answer only.
+     */
+    public void releaseInFlight() {
+        Runnable release;
+        while ((release = inFlightReleases.poll()) != null) {
+            release.run();
+        }
+    }
+
     public void resetBatch() {
         inExtendedBatch = false;
         batchQuery.setLength(0);
-        for (ByteBuf buf : batchBuffers) {
-            if (buf.refCnt() > 0) {
-                buf.release();
-            }
+        if (heldBatch != null) {
+            heldBatch.discard();
+            heldBatch = null;
         }
-        batchBuffers.clear();
     }
 }
\ No newline at end of file
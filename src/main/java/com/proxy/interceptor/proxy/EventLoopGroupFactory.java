@@ -1,5 +1,7 @@
 package com.proxy.interceptor.proxy;
 
+import com.proxy.interceptor.config.ProxyProperties;
+import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.IoHandlerFactory;
 import io.netty.channel.MultiThreadIoEventLoopGroup;
 import io.netty.channel.ServerChannel;
@@ -15,8 +17,14 @@ import io.netty.channel.nio.NioIoHandler;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -24,58 +32,74 @@ import org.springframework.stereotype.Component;
 public class EventLoopGroupFactory {
 
     private final IoHandlerFactory ioHandlerFactory;
+    // The transport in use, never AUTO
+    @Getter
+    private final ProxyProperties.Transport transport;
     @Getter
     private final Class<? extends ServerChannel> serverChannelClass;
     @Getter
     private final Class<? extends SocketChannel> socketChannelClass;
 
     public EventLoopGroupFactory() {
+        this(ProxyProperties.Transport.AUTO);
+    }
+
+    @Autowired
+    public EventLoopGroupFactory(ProxyProperties proxyProperties) {
+        this(proxyProperties.getTransport());
+    }
+
+    public EventLoopGroupFactory(ProxyProperties.Transport requested) {
+        ProxyProperties.Transport selected = requested;
+        if (requested != ProxyProperties.Transport.AUTO && !isAvailable(requested)) {
+            log.warn("{} transport requested but not available here; choosing automatically", requested);
+            selected = ProxyProperties.Transport.AUTO;
+        }
         // Try to use the best available transport
-        IoHandlerFactory factory = null;
-        Class<? extends ServerChannel> serverClass = null;
-        Class<? extends SocketChannel> socketClass = null;
-
-        // Epoll (Linux)
-        if (isEpollAvailable()) {
-            try {
-                factory = EpollIoHandler.newFactory();
-                serverClass = EpollServerSocketChannel.class;
-                socketClass = EpollSocketChannel.class;
-                log.info("Using Epoll transport (Linux optimized)");
-            } catch (Exception e) {
-                log.debug("Epoll not available: {}", e.getMessage());
-            }
+        if (selected == ProxyProperties.Transport.AUTO) {
+            selected = isEpollAvailable() ? ProxyProperties.Transport.EPOLL
+                    : isKQueueAvailable() ? ProxyProperties.Transport.KQUEUE
+                    : ProxyProperties.Transport.NIO;
         }
 
-        // KQueue (macOS/BSD)
-        if (factory == null && isKQueueAvailable()) {
-            try {
-                factory = KQueueIoHandler.newFactory();
-                serverClass = KQueueServerSocketChannel.class;
-                socketClass = KQueueSocketChannel.class;
+        switch (selected) {
+            case IO_URING -> {
+                this.ioHandlerFactory = IoUringIoHandler.newFactory();
+                this.serverChannelClass = IoUringServerSocketChannel.class;
+                this.socketChannelClass = IoUringSocketChannel.class;
+                log.info("Using io_uring transport (Linux optimized)");
+            }
+            case EPOLL -> {
+                this.ioHandlerFactory = EpollIoHandler.newFactory();
+                this.serverChannelClass = EpollServerSocketChannel.class;
+                this.socketChannelClass = EpollSocketChannel.class;
+                log.info("Using Epoll transport (Linux optimized)");
+            }
+            case KQUEUE -> {
+                this.ioHandlerFactory = KQueueIoHandler.newFactory();
+                this.serverChannelClass = KQueueServerSocketChannel.class;
+                this.socketChannelClass = KQueueSocketChannel.class;
                 log.info("Using KQueue transport (macOS optimized)");
-            } catch (Exception e) {
-                log.debug("KQueue not available: {}", e.getMessage());
+            }
+            default -> {
+                this.ioHandlerFactory = NioIoHandler.newFactory();
+                this.serverChannelClass = NioServerSocketChannel.class;
+                this.socketChannelClass = NioSocketChannel.class;
+                log.info("Using NIO transport (cross-platform)");
             }
         }
-
-        // Fallback to NIO
-        if (factory == null) {
-            factory = NioIoHandler.newFactory();
-            serverClass = NioServerSocketChannel.class;
-            socketClass = NioSocketChannel.class;
-            log.info("Using NIO transport (cross-platform)");
-        }
-
-        this.ioHandlerFactory = factory;
-        this.serverChannelClass = serverClass;
-        this.socketChannelClass = socketClass;
+        this.transport = selected;
     }
 
     public MultiThreadIoEventLoopGroup createBossGroup() {
         return new MultiThreadIoEventLoopGroup(1, ioHandlerFactory);
     }
 
+    /** Boss group for {@code acceptors} server channels, each registered on a loop of its own. */
+    public MultiThreadIoEventLoopGroup createBossGroup(int acceptors) {
+        return new MultiThreadIoEventLoopGroup(acceptors, ioHandlerFactory);
+    }
+
     public MultiThreadIoEventLoopGroup createWorkerGroup() {
         return new MultiThreadIoEventLoopGroup(ioHandlerFactory);
     }
@@ -84,6 +108,40 @@ public class EventLoopGroupFactory {
         return new MultiThreadIoEventLoopGroup(threads, ioHandlerFactory);
     }
 
+    /**
+     * Sets SO_REUSEPORT on {@code bootstrap} so several processes can bind the same port and the
+     * kernel spreads new connections over them. Returns false without it on transports other than
+     * epoll and io_uring.
+     */
+    public boolean enableReusePort(ServerBootstrap bootstrap) {
+        if (!supportsReusePort()) {
+            return false;
+        }
+        bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+        return true;
+    }
+
+    public boolean supportsReusePort() {
+        return transport == ProxyProperties.Transport.EPOLL || transport == ProxyProperties.Transport.IO_URING;
+    }
+
+    private boolean isAvailable(ProxyProperties.Transport transport) {
+        return switch (transport) {
+            case IO_URING -> isIoUringAvailable();
+            case EPOLL -> isEpollAvailable();
+            case KQUEUE -> isKQueueAvailable();
+            default -> true;
+        };
+    }
+
+    private boolean isIoUringAvailable() {
+        try {
+            return IoUring.isAvailable();
+        } catch (NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
     private boolean isEpollAvailable() {
         try {
             return Epoll.isAvailable();
@@ -0,0 +1,27 @@
+package com.proxy.interceptor.proxy;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Client bytes held while a query waits for approval, either in memory or spilled to disk.
+ * Only the first call to {@link #retrieve()} or {@link #release()} takes effect. A later
+ * {@code release()} is a no-op, so cleanup paths may call it unconditionally; a later
+ * {@code retrieve()} throws, as the bytes were already forwarded or dropped.
+ */
+public interface HeldMessage {
+
+    long size();
+
+    boolean spilled();
+
+    /**
+     * Hands the bytes over for forwarding; the caller owns the returned buffer.
+     * Spilled messages come back as a read-only memory mapping of the spill file.
+     *
+     * @throws IllegalStateException if the message was already retrieved or released
+     */
+    ByteBuf retrieve();
+
+    /** Drops the bytes without forwarding them. */
+    void release();
+}
@@ -0,0 +1,404 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.MetricsService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for the client bytes held while queries wait for approval.
+ * Held bytes stay in memory while they fit the global and per-connection budgets and the
+ * spill threshold; past that a batch moves to a file under the spill directory and is
+ * memory-mapped back when it is forwarded. Past the spill budget the batch is refused.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HeldMessageStore {
+
+    private static final String SPILL_SUFFIX = ".spill";
+    // FileChannel.map is limited to 2 GB per mapping
+    private static final long MAX_MAPPING = 1L << 30;
+
+    private final ProxyProperties proxyProperties;
+    private final MetricsService metricsService;
+
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong spillFiles = new AtomicLong();
+    private final AtomicLong spillsTotal = new AtomicLong();
+    private final AtomicLong spilledBytesTotal = new AtomicLong();
+    private final AtomicLong refusedTotal = new AtomicLong();
+    private final ConcurrentHashMap<Long, AtomicLong> connectionBytes = new ConcurrentHashMap<>();
+
+    private Path spillDirectory;
+
+    @PostConstruct
+    public void init() throws IOException {
+        spillDirectory = Path.of(proxyProperties.getHeldBuffers().getSpillDirectory());
+        Files.createDirectories(spillDirectory);
+
+        // Spill files never outlive the process that wrote them
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        metricsService.registerGauges("heldBuffers", () -> Map.of(
+                "memoryBytes", memoryBytes.get(),
+                "spilledBytes", spilledBytes.get(),
+                "spillFiles", spillFiles.get(),
+                "spillsTotal", spillsTotal.get(),
+                "spilledBytesTotal", spilledBytesTotal.get(),
+                "refusedTotal", refusedTotal.get()
+        ));
+    }
+
+    public Batch open(long connId) {
+        return new Batch(connectionBytes.computeIfAbsent(connId, id -> new AtomicLong()));
+    }
+
+    /** Holds a single message; returns null if it does not fit any budget (the message is released). */
+    public HeldMessage hold(long connId, ByteBuf message, ByteBufAllocator alloc) {
+        Batch batch = open(connId);
+        return batch.add(message) ? batch.finish(alloc) : null;
+    }
+
+    /** Forgets the connection's counter; messages it still holds keep their own reference. */
+    public void connectionClosed(long connId) {
+        connectionBytes.remove(connId);
+    }
+
+    /**
+     * Messages of one blocked query as they arrive. Not thread-safe: a batch belongs to
+     * the channel that fills it.
+     */
+    public final class Batch {
+
+        private final AtomicLong connectionCounter;
+        private final List<ByteBuf> buffers = new ArrayList<>();
+        private long size;
+        private long memoryReserved;
+        private long spillReserved;
+        private Path spillPath;
+        private FileChannel spillChannel;
+        private boolean refused;
+
+        private Batch(AtomicLong connectionCounter) {
+            this.connectionCounter = connectionCounter;
+        }
+
+        /**
+         * Takes ownership of {@code buf}. Returns false once the batch is over every budget;
+         * the batch is then refused, its bytes dropped, and later messages are released on arrival.
+         */
+        public boolean add(ByteBuf buf) {
+            if (refused) {
+                buf.release();
+                return false;
+            }
+
+            int length = buf.readableBytes();
+            try {
+                if (spillChannel == null && !reserveMemory(length)) {
+                    startSpill();
+                    if (refused) {
+                        buf.release();
+                        return false;
+                    }
+                }
+                if (spillChannel != null) {
+                    if (!reserveSpill(length)) {
+                        buf.release();
+                        refuse();
+                        return false;
+                    }
+                    writeToSpill(buf);
+                    buf.release();
+                } else {
+                    buffers.add(buf);
+                }
+                size += length;
+                return true;
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Failed to spill held bytes to {}: {}", spillPath, e.getMessage());
+                buf.release();
+                refuse();
+                return false;
+            }
+        }
+
+        public boolean isRefused() {
+            return refused;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /** Seals the batch; its bytes now belong to the returned message. */
+        public HeldMessage finish(ByteBufAllocator alloc) {
+            if (spillChannel != null) {
+                try {
+                    spillChannel.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close spill file {}: {}", spillPath, e.getMessage());
+                }
+                return new SpilledMessage(spillPath, size, spillReserved);
+            }
+
+            ByteBuf message;
+            if (buffers.size() == 1) {
+                message = buffers.getFirst();
+            } else {
+                CompositeByteBuf composite = alloc.compositeBuffer(Math.max(2, buffers.size()));
+                composite.addComponents(true, buffers);
+                message = composite;
+            }
+            buffers.clear();
+            return new InMemoryMessage(message, memoryReserved, connectionCounter);
+        }
+
+        /** Drops everything held so far. */
+        public void discard() {
+            buffers.forEach(ByteBuf::release);
+            buffers.clear();
+            unreserveMemory(memoryReserved, connectionCounter);
+            memoryReserved = 0;
+            closeSpill();
+        }
+
+        private boolean reserveMemory(int length) {
+            ProxyProperties.HeldBuffers limits = proxyProperties.getHeldBuffers();
+            if (size + length > limits.getSpillThreshold().toBytes()
+                    || connectionCounter.get() + length > limits.getMaxConnectionMemory().toBytes()) {
+                return false;
+            }
+            long max = limits.getMaxMemory().toBytes();
+            long current;
+            do {
+                current = memoryBytes.get();
+                if (current + length > max) {
+                    return false;
+                }
+            } while (!memoryBytes.compareAndSet(current, current + length));
+            connectionCounter.addAndGet(length);
+            memoryReserved += length;
+            return true;
+        }
+
+        private boolean reserveSpill(long length) {
+            long max = proxyProperties.getHeldBuffers().getMaxSpill().toBytes();
+            long current;
+            do {
+                current = spilledBytes.get();
+                if (current + length > max) {
+                    return false;
+                }
+            } while (!spilledBytes.compareAndSet(current, current + length));
+            spillReserved += length;
+            return true;
+        }
+
+        private void startSpill() throws IOException {
+            spillPath = Files.createTempFile(spillDirectory, "held-", SPILL_SUFFIX);
+            try {
+                spillChannel = FileChannel.open(spillPath, StandardOpenOption.WRITE);
+            } catch (IOException | RuntimeException e) {
+                // Not counted as a spill file yet, so closeSpill would not remove it
+                try {
+                    Files.deleteIfExists(spillPath);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            spillFiles.incrementAndGet();
+            spillsTotal.incrementAndGet();
+
+            // Move what was held in memory so far into the file
+            List<ByteBuf> held = new ArrayList<>(buffers);
+            buffers.clear();
+            unreserveMemory(memoryReserved, connectionCounter);
+            memoryReserved = 0;
+            try {
+                for (ByteBuf buf : held) {
+                    if (!reserveSpill(buf.readableBytes())) {
+                        refuse();
+                        return;
+                    }
+                    writeToSpill(buf);
+                }
+            } finally {
+                held.forEach(ByteBuf::release);
+            }
+            log.debug("Spilled held batch to {} ({} bytes so far)", spillPath, spillReserved);
+        }
+
+        private void writeToSpill(ByteBuf buf) throws IOException {
+            int index = buf.readerIndex();
+            int length = buf.readableBytes();
+            int written = 0;
+            while (written < length) {
+                written += buf.getBytes(index + written, spillChannel, length - written);
+            }
+            spilledBytesTotal.addAndGet(length);
+        }
+
+        private void refuse() {
+            refused = true;
+            refusedTotal.incrementAndGet();
+            discard();
+        }
+
+        private void closeSpill() {
+            if (spillChannel == null) {
+                return;
+            }
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close spill file {}: {}", spillPath, e.getMessage());
+            }
+            deleteSpill(spillPath, spillReserved);
+            spillChannel = null;
+            spillReserved = 0;
+        }
+    }
+
+    private void unreserveMemory(long length, AtomicLong connectionCounter) {
+        if (length > 0) {
+            memoryBytes.addAndGet(-length);
+            connectionCounter.addAndGet(-length);
+        }
+    }
+
+    private void deleteSpill(Path path, long reserved) {
+        spilledBytes.addAndGet(-reserved);
+        spillFiles.decrementAndGet();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete spill file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private final class InMemoryMessage implements HeldMessage {
+
+        private final ByteBuf message;
+        private final long size;
+        private final long reserved;
+        private final AtomicLong connectionCounter;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private InMemoryMessage(ByteBuf message, long reserved, AtomicLong connectionCounter) {
+            this.message = message;
+            this.size = message.readableBytes();
+            this.reserved = reserved;
+            this.connectionCounter = connectionCounter;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public boolean spilled() {
+            return false;
+        }
+
+        @Override
+        public ByteBuf retrieve() {
+            if (!done.compareAndSet(false, true)) {
+                throw new IllegalStateException("Held message already consumed");
+            }
+            unreserveMemory(reserved, connectionCounter);
+            return message;
+        }
+
+        @Override
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                unreserveMemory(reserved, connectionCounter);
+                message.release();
+            }
+        }
+    }
+
+    private final class SpilledMessage implements HeldMessage {
+
+        private final Path path;
+        private final long size;
+        private final long reserved;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private SpilledMessage(Path path, long size, long reserved) {
+            this.path = path;
+            this.size = size;
+            this.reserved = reserved;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public boolean spilled() {
+            return true;
+        }
+
+        @Override
+        public ByteBuf retrieve() {
+            if (!done.compareAndSet(false, true)) {
+                throw new IllegalStateException("Held message already consumed");
+            }
+            // The mapping stays valid after the file is unlinked; the pages go when the buffer is collected
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (size <= MAX_MAPPING) {
+                    return Unpooled.wrappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                }
+                CompositeByteBuf composite = Unpooled.compositeBuffer((int) (size / MAX_MAPPING) + 1);
+                for (long offset = 0; offset < size; offset += MAX_MAPPING) {
+                    long length = Math.min(MAX_MAPPING, size - offset);
+                    composite.addComponent(true,
+                            Unpooled.wrappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, offset, length)));
+                }
+                return composite;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map spill file " + path, e);
+            } finally {
+                deleteSpill(path, reserved);
+            }
+        }
+
+        @Override
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                deleteSpill(path, reserved);
+            }
+        }
+    }
+}
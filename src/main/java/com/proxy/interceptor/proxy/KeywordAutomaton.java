@@ -0,0 +1,174 @@
+package com.proxy.interceptor.proxy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over the policy keywords, used when a statement cannot be parsed.
+ * It finds every keyword in a single pass over the original text, matching case-insensitively
+ * without building an upper-case copy, and stops at the first critical keyword.
+ * <p>
+ * The goto and failure functions are folded into one dense transition table over a
+ * compressed alphabet: each distinct keyword character is a class, everything else is
+ * class 0. Every state also carries the strongest keyword ending there or on its failure chain.
+ */
+final class KeywordAutomaton {
+
+    /** Result when no keyword occurs in the text. */
+    static final int NO_MATCH = -1;
+
+    private static final int ASCII = 128;
+
+    private final List<String> keywords;
+    private final boolean[] critical;
+    private final byte[] asciiClass = new byte[ASCII];
+    private final char[] wideChars;  // non-ASCII keyword characters, sorted
+    private final byte[] wideClass;
+    private final int classes;
+    private final int[] transitions; // state * classes + class
+    private final int[] output;      // keyword index per state, NO_MATCH if none
+
+    /**
+     * @param keywords upper-case keywords; the first {@code criticalCount} are critical
+     */
+    KeywordAutomaton(List<String> keywords, int criticalCount) {
+        this.keywords = List.copyOf(keywords);
+        this.critical = new boolean[keywords.size()];
+        Arrays.fill(critical, 0, criticalCount, true);
+
+        // Alphabet: one class per distinct keyword character
+        StringBuilder wide = new StringBuilder();
+        int next = 1;
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c < ASCII) {
+                    if (asciiClass[c] == 0) {
+                        asciiClass[c] = (byte) next++;
+                    }
+                } else if (wide.indexOf(String.valueOf(c)) < 0) {
+                    wide.append(c);
+                }
+            }
+        }
+        char[] sortedWide = wide.toString().toCharArray();
+        Arrays.sort(sortedWide);
+        this.wideChars = sortedWide;
+        this.wideClass = new byte[sortedWide.length];
+        for (int i = 0; i < sortedWide.length; i++) {
+            wideClass[i] = (byte) next++;
+        }
+        if (next > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many distinct keyword characters");
+        }
+        this.classes = next;
+
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        trie.add(new int[classes]);
+        ends.add(NO_MATCH);
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int cls = classOf(keyword.charAt(i));
+                if (trie.get(state)[cls] == 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(new int[classes]);
+                    ends.add(NO_MATCH);
+                }
+                state = trie.get(state)[cls];
+            }
+            ends.set(state, stronger(ends.get(state), k));
+        }
+
+        // Breadth-first: resolve failure links into the table and inherit outputs along them
+        int states = trie.size();
+        this.transitions = new int[states * classes];
+        this.output = new int[states];
+        int[] failure = new int[states];
+        for (int s = 0; s < states; s++) {
+            output[s] = ends.get(s);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classes; c++) {
+            int child = trie.getFirst()[c];
+            transitions[c] = child;
+            if (child != 0) {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] = stronger(output[state], output[failure[state]]);
+            for (int c = 0; c < classes; c++) {
+                int child = trie.get(state)[c];
+                if (child != 0) {
+                    failure[child] = transitions[failure[state] * classes + c];
+                    transitions[state * classes + c] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * classes + c] = transitions[failure[state] * classes + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Index of the first critical keyword occurring in {@code text}, else of the earliest
+     * configured allowed keyword occurring in it, else {@link #NO_MATCH}. Classifies the same
+     * as checking every critical keyword with {@code contains} on the upper-cased text, then
+     * every allowed one.
+     */
+    int match(CharSequence text) {
+        int state = 0;
+        int allowed = NO_MATCH;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            state = transitions[state * classes + classOf(text.charAt(i))];
+            int found = output[state];
+            if (found != NO_MATCH) {
+                if (critical[found]) {
+                    return found;
+                }
+                if (allowed == NO_MATCH || found < allowed) {
+                    allowed = found;
+                }
+            }
+        }
+        return allowed;
+    }
+
+    String keyword(int index) {
+        return keywords.get(index);
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII) {
+            // Keywords are upper case; fold a-z without a method call
+            return asciiClass[c >= 'a' && c <= 'z' ? c - 32 : c];
+        }
+        char upper = Character.toUpperCase(c);
+        if (upper < ASCII) {
+            return asciiClass[upper];
+        }
+        int at = Arrays.binarySearch(wideChars, upper);
+        return at >= 0 ? wideClass[at] : 0;
+    }
+
+    /** Critical beats allowed; within a kind the earlier keyword wins, as in configured order. */
+    private int stronger(int a, int b) {
+        if (a == NO_MATCH) return b;
+        if (b == NO_MATCH) return a;
+        if (critical[a] != critical[b]) {
+            return critical[a] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+}
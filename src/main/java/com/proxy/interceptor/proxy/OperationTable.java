@@ -0,0 +1,101 @@
+package com.proxy.interceptor.proxy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Perfect-hash table from upper-case statement types (SELECT, DROP, ...) to their
+ * classification. A multiplier is searched at build time so that no two keys share a slot;
+ * a lookup is then one hash, one multiply and a single string comparison.
+ * <p>
+ * Keys with equal {@link String#hashCode()} land in the same slot under every multiplier, and
+ * a policy may name such keywords (e.g. "AO" and "B0"). Those tables, and any for which no
+ * multiplier is found within {@link #MAX_EXTRA_BITS} doublings, are backed by a HashMap instead.
+ */
+final class OperationTable {
+
+    private static final int MAX_SEED_ATTEMPTS = 10_000;
+    // Doublings of the table beyond twice the key count before giving up on a perfect hash
+    private static final int MAX_EXTRA_BITS = 4;
+
+    private final String[] keys;
+    private final Classification[] values;
+    private final int seed;
+    private final int shift;
+    // Set instead of the arrays when no perfect hash exists for the keys
+    private final Map<String, Classification> fallback;
+
+    private OperationTable(String[] keys, Classification[] values, int seed, int shift) {
+        this.keys = keys;
+        this.values = values;
+        this.seed = seed;
+        this.shift = shift;
+        this.fallback = null;
+    }
+
+    private OperationTable(Map<String, Classification> fallback) {
+        this.keys = null;
+        this.values = null;
+        this.seed = 0;
+        this.shift = 0;
+        this.fallback = fallback;
+    }
+
+    static OperationTable build(Map<String, Classification> entries) {
+        // At least twice as many slots as keys, and never fewer than two (a shift of 32 is a no-op)
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, entries.size() * 2 - 1));
+        if (hasEqualHashes(entries)) {
+            return new OperationTable(new HashMap<>(entries));
+        }
+        for (int maxBits = bits + MAX_EXTRA_BITS; bits <= maxBits; bits++) {
+            for (int attempt = 0, seed = 0x9E3779B1; attempt < MAX_SEED_ATTEMPTS; attempt++, seed += 0x6A09E666) {
+                OperationTable table = tryBuild(entries, seed | 1, bits);
+                if (table != null) {
+                    return table;
+                }
+            }
+            // No collision-free multiplier at this size; try a sparser table
+        }
+        return new OperationTable(new HashMap<>(entries));
+    }
+
+    private static boolean hasEqualHashes(Map<String, Classification> entries) {
+        Set<Integer> hashes = new HashSet<>();
+        for (String key : entries.keySet()) {
+            if (!hashes.add(key.hashCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static OperationTable tryBuild(Map<String, Classification> entries, int seed, int bits) {
+        int shift = 32 - bits;
+        String[] keys = new String[1 << bits];
+        Classification[] values = new Classification[1 << bits];
+        for (Map.Entry<String, Classification> entry : entries.entrySet()) {
+            int slot = slot(entry.getKey().hashCode(), seed, shift);
+            if (keys[slot] != null) {
+                return null;
+            }
+            keys[slot] = entry.getKey();
+            values[slot] = entry.getValue();
+        }
+        return new OperationTable(keys, values, seed, shift);
+    }
+
+    /** Classification of the operation, or null if the policy does not mention it. */
+    Classification get(String operation) {
+        if (fallback != null) {
+            return fallback.get(operation);
+        }
+        int slot = slot(operation.hashCode(), seed, shift);
+        return operation.equals(keys[slot]) ? values[slot] : null;
+    }
+
+    private static int slot(int hash, int seed, int shift) {
+        return (hash * seed) >>> shift;
+    }
+}
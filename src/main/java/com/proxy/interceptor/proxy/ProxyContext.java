@@ -1,10 +1,12 @@
 package com.proxy.interceptor.proxy;
 
+import com.proxy.interceptor.config.ProxyProperties;
 import com.proxy.interceptor.config.SslContextFactory;
 import com.proxy.interceptor.service.BlockedQueryService;
 import com.proxy.interceptor.service.MetricsService;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Groups all shared dependencies needed by proxy channel handlers.
@@ -14,10 +16,15 @@ public record ProxyContext(
         String targetHost,
         int targetPort,
         SqlClassifier sqlClassifier,
+        RateLimiter rateLimiter,
+        AdmissionController admissionController,
         WireProtocolHandler protocolHandler,
         BlockedQueryService blockedQueryService,
         MetricsService metricsService,
+        HeldMessageStore heldMessageStore,
         EventLoopGroupFactory eventLoopGroupFactory,
         SslContextFactory sslContextFactory,
-        ConcurrentHashMap<String, ConnectionState> connections
+        ProxyProperties.ConnectionLimits connectionLimits,
+        ConcurrentHashMap<Long, ConnectionState> connections,
+        AtomicBoolean draining
 ) {}
\ No newline at end of file
@@ -9,6 +9,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
 import jakarta.annotation.Nullable;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -16,41 +17,77 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 @Slf4j
 public class ProxyServer {
 
+    private static final long DRAIN_CHECK_MILLIS = 250;
+
     private final ProxyProperties proxyProperties;
     private final SqlClassifier sqlClassifier;
+    private final RateLimiter rateLimiter;
+    private final AdmissionController admissionController;
     private final WireProtocolHandler protocolHandler;
     private final BlockedQueryService blockedQueryService;
     private final MetricsService metricsService;
+    private final HeldMessageStore heldMessageStore;
     private final EventLoopGroupFactory eventLoopGroupFactory;
     private final SslContextFactory sslContextFactory;
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
+
+    private final ConcurrentHashMap<Long, ConnectionState> connections = new ConcurrentHashMap<>();
+    private final AtomicLong connectionCounter = new AtomicLong(0);
+
+    // Accepted connections, in total and per client IP, counted until their channel closes
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> openPerIp = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedTotal = new AtomicLong();
+    private final AtomicLong rejectedPerIp = new AtomicLong();
 
-    private final ConcurrentHashMap<String, ConnectionState> connections = new ConcurrentHashMap<>();
-    private final AtomicInteger connectionCounter = new AtomicInteger(0);
+    // Set once a drain starts; read by every ClientHandler through the ProxyContext
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private final AtomicLong drainClosed = new AtomicLong();
+    private volatile Instant drainStartedAt;
+    private volatile Instant drainDeadline;
+    private ScheduledFuture<?> drainTask;
 
     public ProxyServer(ProxyProperties proxyProperties,
                        SqlClassifier sqlClassifier,
+                       RateLimiter rateLimiter,
+                       AdmissionController admissionController,
                        WireProtocolHandler protocolHandler,
                        BlockedQueryService blockedQueryService,
                        MetricsService metricsService,
+                       HeldMessageStore heldMessageStore,
                        EventLoopGroupFactory eventLoopGroupFactory,
                        @Autowired(required = false) @Nullable SslContextFactory sslContextFactory
     ) {
         this.proxyProperties = proxyProperties;
         this.sqlClassifier = sqlClassifier;
+        this.rateLimiter = rateLimiter;
+        this.admissionController = admissionController;
         this.protocolHandler = protocolHandler;
         this.blockedQueryService = blockedQueryService;
         this.metricsService = metricsService;
+        this.heldMessageStore = heldMessageStore;
         this.eventLoopGroupFactory = eventLoopGroupFactory;
         this.sslContextFactory = sslContextFactory;
     }
@@ -58,7 +95,8 @@ public class ProxyServer {
     @PostConstruct
     public void start() throws InterruptedException {
 
-        bossGroup = eventLoopGroupFactory.createBossGroup();
+        int acceptors = acceptorCount();
+        bossGroup = eventLoopGroupFactory.createBossGroup(acceptors);
         workerGroup = eventLoopGroupFactory.createWorkerGroup();
 
         // Build the shared context once
@@ -66,13 +104,20 @@ public class ProxyServer {
                 proxyProperties.getTargetHost(),
                 proxyProperties.getTargetPort(),
                 sqlClassifier,
+                rateLimiter,
+                admissionController,
                 protocolHandler,
                 blockedQueryService,
                 metricsService,
+                heldMessageStore,
                 eventLoopGroupFactory,
                 sslContextFactory,
-                connections
+                proxyProperties.getConnectionLimits(),
+                connections,
+                draining
         );
+        Duration idleCheck = proxyProperties.getConnectionLimits().idleCheckInterval();
+        metricsService.registerGauges("connections", this::connectionGauges);
 
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossGroup, workerGroup)
@@ -80,23 +125,181 @@ public class ProxyServer {
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
-                        String connId = "conn-" + connectionCounter.incrementAndGet();
+                        String rejection = admitConnection(ch);
+                        if (rejection != null) {
+                            ch.pipeline().addLast(new ConnectionRejectHandler(protocolHandler, rejection));
+                            return;
+                        }
+
+                        long connId = connectionCounter.incrementAndGet();
                         ConnectionState state = new ConnectionState(connId);
+                        state.setClientChannel(ch);
                         connections.put(connId, state);
+                        ch.closeFuture().addListener(future -> {
+                            if (draining.get()) drainClosed.incrementAndGet();
+                        });
                         metricsService.trackConnection();
 
+                        // Ticks while the client sends nothing; ClientHandler decides whether that is too long
+                        if (!idleCheck.isZero()) {
+                            ch.pipeline().addLast(new IdleStateHandler(idleCheck.toNanos(), 0, 0, TimeUnit.NANOSECONDS));
+                        }
                         ch.pipeline().addLast(new ClientHandler(connId, state, ctx, ch));
                     }
                 });
 
-        serverChannel = b.bind(proxyProperties.getListenPort()).sync().channel();
-        log.info("PostgreSQL Proxy listening on {}", proxyProperties.getListenPort());
+        if ((proxyProperties.isReusePort() || acceptors > 1) && !eventLoopGroupFactory.enableReusePort(b)) {
+            log.warn("proxy.reuse-port needs the epoll or io_uring transport; binding without SO_REUSEPORT");
+        }
+
+        // Each bind registers its server channel on the next boss loop; the kernel spreads accepts over them
+        for (int i = 0; i < acceptors; i++) {
+            serverChannels.add(b.bind(proxyProperties.getListenPort()).sync().channel());
+        }
+        log.info("PostgreSQL Proxy listening on {} ({} acceptor(s))", proxyProperties.getListenPort(), acceptors);
+    }
+
+    private int acceptorCount() {
+        int acceptors = proxyProperties.getAcceptors();
+        if (acceptors < 1) {
+            throw new IllegalArgumentException("proxy.acceptors must be at least 1");
+        }
+        if (acceptors > 1 && !eventLoopGroupFactory.supportsReusePort()) {
+            log.warn("proxy.acceptors needs the epoll or io_uring transport for SO_REUSEPORT; accepting on a single channel");
+            return 1;
+        }
+        return acceptors;
+    }
+
+    /**
+     * Starts draining; false if a drain is already under way. The listener closes at once, so
+     * new connections go to whichever process shares the port (see {@code proxy.reuse-port}) or
+     * are refused. Each open connection is closed, with a retryable FATAL error, as soon as it is
+     * idle outside a transaction; whatever is still open at the deadline is closed regardless.
+     */
+    public synchronized boolean drain(Duration timeout) {
+        if (drainStartedAt != null) {
+            return false;
+        }
+        drainStartedAt = Instant.now();
+        drainDeadline = drainStartedAt.plus(timeout);
+        draining.set(true);
+        serverChannels.forEach(Channel::close);
+        log.info("Draining {} connection(s), deadline {}", connections.size(), drainDeadline);
+        drainTask = bossGroup.scheduleAtFixedRate(this::drainTick, DRAIN_CHECK_MILLIS, DRAIN_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /** Progress of the drain; only {@code draining=false} before one has started. */
+    public Map<String, Object> drainStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("draining", draining.get());
+        if (drainStartedAt != null) {
+            status.put("startedAt", drainStartedAt);
+            status.put("deadline", drainDeadline);
+            status.put("remaining", connections.size());
+            status.put("byState", connectionsByState());
+            status.put("closed", drainClosed.get());
+            status.put("complete", drained.getCount() == 0);
+        }
+        return status;
     }
 
+    private void drainTick() {
+        if (connections.isEmpty()) {
+            drainTask.cancel(false);
+            drained.countDown();
+            log.info("Drain complete: {} connection(s) closed", drainClosed.get());
+            return;
+        }
+        DrainEvent event = Instant.now().isBefore(drainDeadline) ? DrainEvent.CHECK : DrainEvent.FORCE;
+        for (ConnectionState state : connections.values()) {
+            Channel ch = state.getClientChannel();
+            if (ch != null) {
+                // Runs on the connection's own event loop
+                ch.pipeline().fireUserEventTriggered(event);
+            }
+        }
+    }
+
+    /**
+     * Counts an accepted connection against the limits, or returns why it is refused. A counted
+     * connection is uncounted when its channel closes.
+     */
+    private String admitConnection(SocketChannel ch) {
+        ProxyProperties.ConnectionLimits limits = proxyProperties.getConnectionLimits();
+        String ip = ch.remoteAddress() != null ? ch.remoteAddress().getAddress().getHostAddress() : "UNKNOWN";
+
+        if (openConnections.incrementAndGet() > limits.getMaxTotal() && limits.getMaxTotal() > 0) {
+            openConnections.decrementAndGet();
+            rejectedTotal.incrementAndGet();
+            log.warn("Refusing connection from {}: {} connections open", ip, limits.getMaxTotal());
+            return "sorry, too many clients already";
+        }
+        int perIp = openPerIp.merge(ip, 1, Integer::sum);
+        if (perIp > limits.getMaxPerIp() && limits.getMaxPerIp() > 0) {
+            openPerIp.computeIfPresent(ip, (k, n) -> n > 1 ? n - 1 : null);
+            openConnections.decrementAndGet();
+            rejectedPerIp.incrementAndGet();
+            log.warn("Refusing connection from {}: {} connections open from that address", ip, limits.getMaxPerIp());
+            return "too many connections from this address";
+        }
+        ch.closeFuture().addListener(future -> {
+            openPerIp.computeIfPresent(ip, (k, n) -> n > 1 ? n - 1 : null);
+            openConnections.decrementAndGet();
+        });
+        return null;
+    }
+
+    private Map<String, Object> connectionGauges() {
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        gauges.put("open", openConnections.get());
+        gauges.put("clientIps", openPerIp.size());
+        gauges.put("byState", connectionsByState());
+        gauges.put("rejectedTotal", rejectedTotal.get());
+        gauges.put("rejectedPerIp", rejectedPerIp.get());
+        return gauges;
+    }
+
+    private Map<String, Integer> connectionsByState() {
+        // By protocol state, as pg_stat_activity would show the backend
+        Map<String, Integer> byState = new LinkedHashMap<>();
+        for (String name : List.of("startup", "active", "idle", "idleInTransaction")) {
+            byState.put(name, 0);
+        }
+        for (ConnectionState state : connections.values()) {
+            String name = state.getUser() == null ? "startup"
+                    : state.isBusy() ? "active"
+                    : state.isInTransaction() ? "idleInTransaction"
+                    : "idle";
+            byState.merge(name, 1, Integer::sum);
+        }
+        return byState;
+    }
+
+    /**
+     * Drains for up to {@code proxy.drain-timeout} before the event loops shut down. The HTTP API
+     * is already stopped by now, so queries held for approval wait out the deadline; start the
+     * drain through the API first to keep approvals possible while it runs.
+     */
     @PreDestroy
-    public void stop() {
-        if (serverChannel != null) serverChannel.close();
+    public void stop() throws InterruptedException {
+        Duration timeout = proxyProperties.getDrainTimeout();
+        if (!timeout.isZero() && bossGroup != null) {
+            drain(timeout);
+            // Past the deadline, the forced close still needs a tick and the close handshakes
+            Duration left = Duration.between(Instant.now(), drainDeadline).plusSeconds(1);
+            if (!drained.await(Math.max(left.toMillis(), 0), TimeUnit.MILLISECONDS)) {
+                log.warn("{} connection(s) still open after draining", connections.size());
+            }
+        }
+        serverChannels.forEach(Channel::close);
         if (workerGroup != null) workerGroup.shutdownGracefully();
         if (bossGroup != null) bossGroup.shutdownGracefully();
     }
+
+    /** Fired at every client pipeline while draining: close if idle, or close regardless once past the deadline. */
+    enum DrainEvent {
+        CHECK, FORCE
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.proxy.interceptor.proxy;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rate and concurrency limits, e.g. {@code ip * 100/s burst=200}, {@code user etl 20/s inflight=4}
+ * or {@code statement DELETE 5/s}: a scope, a key (or {@code *}) and at least one limit.
+ * <p>
+ * A {@code *} rule gives every client IP, user or statement class of its scope a limit of its
+ * own; a rule for an exact key replaces it for that key. Statement classes are the leading
+ * keyword of the SQL, upper-cased.
+ */
+final class RateLimitRules {
+
+    static final String ANY = "*";
+
+    enum Scope {
+        IP, USER, STATEMENT
+    }
+
+    /**
+     * @param intervalNanos time one query's worth of rate takes to refill, 0 without a rate limit
+     * @param burst         queries that may be sent at once after a quiet spell
+     * @param maxInFlight   queries sent and not yet answered with ReadyForQuery, 0 without a limit
+     */
+    record Limit(long intervalNanos, int burst, int maxInFlight) {
+        boolean limitsRate() {
+            return intervalNanos > 0;
+        }
+
+        boolean limitsInFlight() {
+            return maxInFlight > 0;
+        }
+    }
+
+    private final Map<Scope, Map<String, Limit>> limits;
+    private final List<String> definitions;
+
+    private RateLimitRules(Map<Scope, Map<String, Limit>> limits, List<String> definitions) {
+        this.limits = limits;
+        this.definitions = definitions;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rule is malformed or two rules name the same key
+     */
+    static RateLimitRules build(Collection<String> definitions) {
+        Map<Scope, Map<String, Limit>> limits = new EnumMap<>(Scope.class);
+        List<String> normalized = definitions == null ? List.of() : definitions.stream()
+                .filter(definition -> definition != null && !definition.isBlank())
+                .map(String::trim)
+                .toList();
+        for (String definition : normalized) {
+            String[] parts = definition.split("\\s+");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException(
+                        "Rate limit must be '<ip|user|statement> <key|*> [<n>/s] [burst=<n>] [inflight=<n>]': " + definition);
+            }
+            Scope scope = scope(parts[0], definition);
+            String key = scope == Scope.STATEMENT ? parts[1].toUpperCase(Locale.ROOT) : parts[1];
+            Limit limit = limit(parts, definition);
+            if (limits.computeIfAbsent(scope, k -> new HashMap<>()).putIfAbsent(key, limit) != null) {
+                throw new IllegalArgumentException("Duplicate rate limit for " + parts[0] + " " + parts[1]);
+            }
+        }
+        return new RateLimitRules(limits, normalized);
+    }
+
+    /** Rules as configured, in order. */
+    List<String> definitions() {
+        return definitions;
+    }
+
+    boolean isEmpty() {
+        return limits.isEmpty();
+    }
+
+    /** Limit for {@code key} in {@code scope}, or null if it is unlimited. */
+    Limit limit(Scope scope, String key) {
+        Map<String, Limit> byKey = limits.get(scope);
+        if (byKey == null) {
+            return null;
+        }
+        Limit limit = byKey.get(key);
+        return limit != null ? limit : byKey.get(ANY);
+    }
+
+    private static Scope scope(String value, String definition) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "ip" -> Scope.IP;
+            case "user" -> Scope.USER;
+            case "statement" -> Scope.STATEMENT;
+            default -> throw new IllegalArgumentException("Rate limit scope must be ip, user or statement: " + definition);
+        };
+    }
+
+    private static Limit limit(String[] parts, String definition) {
+        double perSecond = 0;
+        int burst = 0;
+        int maxInFlight = 0;
+        try {
+            for (int i = 2; i < parts.length; i++) {
+                String option = parts[i].toLowerCase(Locale.ROOT);
+                if (option.endsWith("/s")) {
+                    perSecond = Double.parseDouble(option.substring(0, option.length() - 2));
+                    if (!(perSecond > 0) || Double.isInfinite(perSecond)) {
+                        throw new IllegalArgumentException("Rate must be positive: " + definition);
+                    }
+                } else if (option.startsWith("burst=")) {
+                    burst = positive(option.substring("burst=".length()), definition);
+                } else if (option.startsWith("inflight=")) {
+                    maxInFlight = positive(option.substring("inflight=".length()), definition);
+                } else {
+                    throw new IllegalArgumentException("Unknown rate limit option '" + parts[i] + "': " + definition);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Rate limit has a malformed number: " + definition);
+        }
+        if (burst > 0 && perSecond == 0) {
+            throw new IllegalArgumentException("Rate limit sets a burst without a rate: " + definition);
+        }
+        // Without an explicit burst a second's worth of queries may arrive at once
+        long interval = perSecond == 0 ? 0 : Math.max(1, Math.round(1_000_000_000 / perSecond));
+        return new Limit(interval, burst > 0 ? burst : Math.max(1, (int) Math.ceil(perSecond)), maxInFlight);
+    }
+
+    private static int positive(String value, String definition) {
+        int n = Integer.parseInt(value);
+        if (n < 1) {
+            throw new IllegalArgumentException("Rate limit burst and inflight must be at least 1: " + definition);
+        }
+        return n;
+    }
+}
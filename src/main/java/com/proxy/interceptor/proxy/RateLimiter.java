@@ -0,0 +1,333 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.MetricsService;
+import com.proxy.interceptor.service.PolicyService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces the policy's {@link RateLimitRules} per client IP, database user and statement
+ * class. Each limited key has a token bucket and an in-flight counter, both single atomics
+ * updated by compare-and-set, so event loops never lock each other out.
+ * <p>
+ * The bucket is kept in virtual time: it stores the instant it will be full again, and a query
+ * fits if taking one interval from it leaves no more than a burst of intervals ahead of now.
+ * Rates, bursts and in-flight limits are read from the current policy on every query, so a
+ * policy update applies to the next query without resetting anyone's bucket.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    private static final Admission UNLIMITED = new Admission(Permit.NONE, null, 0);
+    private static final RateLimitRules.Scope[] SCOPES = RateLimitRules.Scope.values();
+
+    private final PolicyService policyService;
+    private final ProxyProperties proxyProperties;
+    private final MetricsService metricsService;
+
+    private final ConcurrentHashMap<String, KeyState> keys = new ConcurrentHashMap<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong limitedByRate = new AtomicLong();
+    private final AtomicLong limitedByInFlight = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        metricsService.registerGauges("rateLimits", () -> {
+            Map<String, Object> perKey = new TreeMap<>();
+            keys.forEach((key, state) -> perKey.put(key, Map.of(
+                    "inFlight", state.inFlight.get(),
+                    "admitted", state.admitted.get(),
+                    "limited", state.limited.get())));
+            Map<String, Object> gauges = new LinkedHashMap<>();
+            gauges.put("admitted", admitted.get());
+            gauges.put("limitedByRate", limitedByRate.get());
+            gauges.put("limitedByInFlight", limitedByInFlight.get());
+            gauges.put("delayed", delayed.get());
+            gauges.put("keys", perKey);
+            return gauges;
+        });
+    }
+
+    /**
+     * Admits a query from {@code clientIp} as {@code user}, or says which limit refused it.
+     * An admitted query holds its permit until the backend answers it; see {@link Permit}.
+     *
+     * @param user database user from the startup message, or null if not known yet
+     */
+    public Admission admit(String clientIp, String user, String sql) {
+        RateLimitRules rules = policyService.current().rateLimitRules();
+        if (rules.isEmpty()) {
+            return UNLIMITED;
+        }
+        String[] scopeKeys = {clientIp, user, statementClass(sql)};
+        KeyState[] states = new KeyState[SCOPES.length];
+        RateLimitRules.Limit[] limits = new RateLimitRules.Limit[SCOPES.length];
+        int n = 0;
+        for (int i = 0; i < SCOPES.length; i++) {
+            RateLimitRules.Limit limit = scopeKeys[i] == null ? null : rules.limit(SCOPES[i], scopeKeys[i]);
+            if (limit != null) {
+                states[n] = pin(SCOPES[i].name().toLowerCase(Locale.ROOT) + ":" + scopeKeys[i]);
+                limits[n++] = limit;
+            }
+        }
+        if (n == 0) {
+            return UNLIMITED;
+        }
+        try {
+            return admit(states, limits, n);
+        } finally {
+            for (int i = 0; i < n; i++) {
+                states[i].pins.decrementAndGet();
+            }
+        }
+    }
+
+    private Admission admit(KeyState[] states, RateLimitRules.Limit[] limits, int n) {
+        // In-flight slots first: unlike a spent token, a slot can be handed back exactly
+        for (int i = 0; i < n; i++) {
+            if (limits[i].limitsInFlight() && !states[i].enter(limits[i].maxInFlight())) {
+                exit(states, limits, i);
+                states[i].limited.incrementAndGet();
+                limitedByInFlight.incrementAndGet();
+                return new Admission(null, states[i].key, -1);
+            }
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            if (!limits[i].limitsRate()) {
+                continue;
+            }
+            long wait = states[i].take(limits[i], now);
+            if (wait > 0) {
+                for (int j = 0; j < i; j++) {
+                    if (limits[j].limitsRate()) {
+                        states[j].refund(limits[j]);
+                    }
+                }
+                exit(states, limits, n);
+                states[i].limited.incrementAndGet();
+                limitedByRate.incrementAndGet();
+                return new Admission(null, states[i].key, wait);
+            }
+        }
+
+        // The permit gets its own array: the caller unpins every state in this one
+        KeyState[] holding = new KeyState[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            states[i].admitted.incrementAndGet();
+            if (limits[i].limitsInFlight()) {
+                holding[count++] = states[i];
+            }
+        }
+        admitted.incrementAndGet();
+        return count == 0 ? UNLIMITED : new Admission(new Permit(holding, count), null, 0);
+    }
+
+    /** State for {@code key}, pinned so {@link #sweep} leaves it in the map until it is unpinned. */
+    private KeyState pin(String key) {
+        while (true) {
+            KeyState state = keys.computeIfAbsent(key, KeyState::new);
+            if (state.pin()) {
+                return state;
+            }
+            // Retired by the sweep between the lookup and the pin; it is about to leave the map
+            keys.remove(key, state);
+        }
+    }
+
+    /** How long an over-limit query may wait for room before it is refused; 0 refuses at once. */
+    public long maxDelayNanos() {
+        return proxyProperties.getRateLimitMaxDelay().toNanos();
+    }
+
+    /** Counts a query that had to wait for room, however long. */
+    public void trackDelayed() {
+        delayed.incrementAndGet();
+    }
+
+    /**
+     * Drops keys that are idle: bucket full and nothing in flight. Their counters start over when
+     * they return. A key is retired before it is removed, so a query that looked it up at the same
+     * moment takes a fresh state rather than spending tokens on one no longer in the map.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void sweep() {
+        long now = System.nanoTime();
+        keys.forEach((key, state) -> {
+            if (state.retireIfIdle(now)) {
+                keys.remove(key, state);
+            }
+        });
+    }
+
+    private static void exit(KeyState[] states, RateLimitRules.Limit[] limits, int upTo) {
+        for (int i = 0; i < upTo; i++) {
+            if (limits[i].limitsInFlight()) {
+                states[i].inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Leading keyword of {@code sql}, upper-cased, after whitespace, comments and opening
+     * parentheses; null if there is none. A CTE is classed as WITH.
+     */
+    static String statementClass(String sql) {
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+            } else if (sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end + 1;
+            } else if (sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else {
+                break;
+            }
+        }
+        int start = i;
+        while (i < n && Character.isLetter(sql.charAt(i))) i++;
+        return start == i ? null : sql.substring(start, i).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Outcome of {@link #admit}: a permit, or the key whose limit refused the query and how long
+     * until its rate would let it through (-1 for an in-flight limit, which frees up when a
+     * query finishes rather than at a known time).
+     */
+    public record Admission(Permit permit, String limitedBy, long retryAfterNanos) {
+        public boolean admitted() {
+            return permit != null;
+        }
+    }
+
+    /**
+     * In-flight slots an admitted query holds. Released when the backend answers with
+     * ReadyForQuery, when the query is held for approval instead of sent, or when the
+     * connection closes; releasing twice is harmless.
+     */
+    public static final class Permit {
+
+        static final Permit NONE = new Permit(new KeyState[0], 0);
+
+        private final KeyState[] states;
+        private final int count;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(KeyState[] states, int count) {
+            this.states = states;
+            this.count = count;
+        }
+
+        /** Whether the permit holds anything that has to be released. */
+        public boolean holdsSlots() {
+            return count > 0;
+        }
+
+        public void release() {
+            if (count > 0 && released.compareAndSet(false, true)) {
+                for (int i = 0; i < count; i++) {
+                    states[i].inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static final class KeyState {
+
+        static final int RETIRED = -1;
+
+        final String key;
+        // Instant (System.nanoTime) at which the bucket is full again
+        final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+        final AtomicInteger inFlight = new AtomicInteger();
+        // admit() calls using this state right now, or RETIRED once the sweep has dropped it
+        final AtomicInteger pins = new AtomicInteger();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong limited = new AtomicLong();
+
+        KeyState(String key) {
+            this.key = key;
+        }
+
+        boolean pin() {
+            while (true) {
+                int current = pins.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (pins.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Retires the state if nobody is using it: not pinned, nothing in flight and the bucket
+         * full. Only a pinned admit() takes slots or tokens, so once no one can pin it neither
+         * check can go stale.
+         */
+        boolean retireIfIdle(long now) {
+            if (!pins.compareAndSet(0, RETIRED)) {
+                return false;
+            }
+            if (inFlight.get() == 0 && fullAt.get() - now <= 0) {
+                return true;
+            }
+            pins.set(0);
+            return false;
+        }
+
+        boolean enter(int maxInFlight) {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= maxInFlight) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /** Takes one token; returns 0 if it was there, else the nanos until it will be. */
+        long take(RateLimitRules.Limit limit, long now) {
+            long interval = limit.intervalNanos();
+            long capacity = interval * limit.burst();
+            while (true) {
+                long full = fullAt.get();
+                long next = (full - now > 0 ? full : now) + interval;
+                long excess = next - now - capacity;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (fullAt.compareAndSet(full, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void refund(RateLimitRules.Limit limit) {
+            fullAt.addAndGet(-limit.intervalNanos());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.RiskProperties;
+import com.proxy.interceptor.proxy.ast.SqlAnalysisResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Turns the structure the AST pass measured into a risk score and, where the score is clearly
+ * low or clearly high, a classification. Only data statements are scored: a DROP or GRANT is
+ * structurally trivial and must stay with the keyword policy. A read is never allowed on its
+ * score: a flat SELECT scores 0 however it is used (dblink_exec, pg_terminate_backend,
+ * lo_import), so only a high score decides a read and otherwise the keyword policy does.
+ */
+@Component
+@RequiredArgsConstructor
+public class RiskScorer {
+
+    private static final Set<String> SCORED_OPERATIONS = Set.of("SELECT", "INSERT", "UPDATE", "DELETE");
+    private static final Set<String> WRITES = Set.of("INSERT", "UPDATE", "DELETE");
+
+    private final RiskProperties riskProperties;
+
+    public int score(SqlAnalysisResult result) {
+        int score = riskProperties.getDepthWeight() * Math.max(0, result.astDepth() - 1)
+                + riskProperties.getJoinWeight() * result.joinCount()
+                + riskProperties.getSubqueryWeight() * result.subqueryCount();
+        if (WRITES.contains(result.operationType())) {
+            score += riskProperties.getCardinalityWeights().getOrDefault(result.targetCardinality(), 0);
+        }
+        return score;
+    }
+
+    /** Whether the statement is scored at all. */
+    public boolean isScored(SqlAnalysisResult result) {
+        return riskProperties.isEnabled()
+                && result.parseSuccess()
+                && SCORED_OPERATIONS.contains(result.operationType());
+    }
+
+    /**
+     * CRITICAL from the critical threshold, ALLOWED below the allow threshold for writes,
+     * otherwise null (the keyword policy decides).
+     */
+    public Classification classify(SqlAnalysisResult result, int score) {
+        if (score >= riskProperties.getCriticalAt()) {
+            return Classification.CRITICAL;
+        }
+        if (score < riskProperties.getAllowBelow() && WRITES.contains(result.operationType())) {
+            return Classification.ALLOWED;
+        }
+        return null;
+    }
+}
@@ -5,6 +5,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -13,13 +14,26 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
     private final String connId;
     private final Channel clientChannel;
     private final MetricsService metricsService;
+    private final ConnectionState state;
+    private final Runnable onIdle;
+
+    // Backend message framing, kept across reads since a message can span several of them
+    private int headerBytes;       // bytes of the current 5-byte header (type + length) seen so far
+    private byte messageType;
+    private int messageLength;
+    private int bodyRemaining;
+    private boolean statusPending; // next body byte is a ReadyForQuery's transaction status
 
     public ServerHandler(String connId,
                          Channel clientChannel,
-                         MetricsService metricsService) {
+                         MetricsService metricsService,
+                         ConnectionState state,
+                         Runnable onIdle) {
         this.connId = connId;
         this.clientChannel = clientChannel;
         this.metricsService = metricsService;
+        this.state = state;
+        this.onIdle = onIdle;
     }
 
     @Override
@@ -28,6 +42,10 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
         // SCRAM-SHA-256-PLUS channel binding now works correctly on the frontend,
         // so the -PLUS stripping workaround has been removed.
 
+        if (msg instanceof ByteBuf buf) {
+            trackReadyForQuery(buf);
+        }
+
         // Forward server response to client
         if (clientChannel.isActive()) {
             clientChannel.writeAndFlush(msg);
@@ -39,6 +57,48 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /** Walks the message headers in {@code buf}, without reading it, and reports each ReadyForQuery to the connection state. */
+    private void trackReadyForQuery(ByteBuf buf) {
+        int i = buf.readerIndex();
+        int end = buf.writerIndex();
+        while (i < end) {
+            if (bodyRemaining > 0) {
+                if (statusPending) {
+                    statusPending = false;
+                    state.readyForQuery((char) buf.getByte(i));
+                }
+                int skipped = Math.min(bodyRemaining, end - i);
+                i += skipped;
+                bodyRemaining -= skipped;
+                continue;
+            }
+            byte b = buf.getByte(i++);
+            if (headerBytes == 0) {
+                messageType = b;
+            } else {
+                messageLength = (messageLength << 8) | (b & 0xFF);
+            }
+            if (++headerBytes == 5) {
+                bodyRemaining = messageLength - 4;
+                headerBytes = 0;
+                messageLength = 0;
+                if (messageType == 'Z') {
+                    statusPending = true;
+                }
+            }
+        }
+    }
+
+    /** No traffic either way for the backend idle timeout (see the IdleStateHandler installed ahead of this handler). */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        if (evt instanceof IdleStateEvent) {
+            onIdle.run();
+        } else {
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         log.debug("{}: Server connection closed", connId);
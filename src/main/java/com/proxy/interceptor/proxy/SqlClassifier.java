@@ -1,8 +1,9 @@
 package com.proxy.interceptor.proxy;
 
-import com.proxy.interceptor.config.ProxyProperties;
 import com.proxy.interceptor.proxy.ast.SqlAnalysisResult;
 import com.proxy.interceptor.proxy.ast.SqlAnalyzer;
+import com.proxy.interceptor.service.MetricsService;
+import com.proxy.interceptor.service.PolicyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -12,65 +13,76 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class SqlClassifier {
 
-    private final ProxyProperties proxyProperties;
+    private final PolicyService policyService;
     private final SqlAnalyzer sqlAnalyzer;
+    private final MetricsService metricsService;
+    private final RiskScorer riskScorer;
 
     public Classification classify(String sql) {
         if (sql == null || sql.isBlank()) {
             return Classification.ALLOWED;
         }
 
+        // One read of the current snapshot; a policy update mid-statement cannot mix old and new rules
+        CompiledPolicy policy = policyService.current();
+
         // 1. Attempt AST Analysis
         SqlAnalysisResult result = sqlAnalyzer.analyze(sql);
 
         if (result.parseSuccess()) {
             String operation = result.operationType();
 
-            // Check critical keywords based on AST statement type
-            for (String keyword : proxyProperties.getCriticalKeywords()) {
-                if (operation.equalsIgnoreCase(keyword.trim())) {
-                    log.debug("SQL classified as CRITICAL via AST (Operation: {})", keyword);
-                    return Classification.CRITICAL;
+            // Table rules are more specific than statement keywords, so they decide first
+            if (policy.hasTableRules()) {
+                long started = System.nanoTime();
+                Classification byTable = policy.classifyTables(operation, result.tables());
+                metricsService.trackRuleEvaluation(System.nanoTime() - started, byTable != null);
+                if (byTable != null) {
+                    log.debug("SQL classified as {} via table rules (Operation: {}, Tables: {})",
+                            byTable, operation, result.tables());
+                    return byTable;
                 }
             }
 
-            // Check allowed keywords based on AST statement type
-            for (String keyword : proxyProperties.getAllowedKeywords()) {
-                if (operation.equalsIgnoreCase(keyword.trim())) {
-                    log.debug("SQL classified as ALLOWED via AST (Operation: {})", keyword);
-                    return Classification.ALLOWED;
+            // Structural risk: unbounded writes are blocked, keyed single-row ones pass
+            if (riskScorer.isScored(result)) {
+                int score = riskScorer.score(result);
+                Classification byRisk = riskScorer.classify(result, score);
+                if (byRisk != null) {
+                    log.debug("SQL classified as {} via risk score {} (Operation: {}, Depth: {}, Joins: {}, Subqueries: {}, Target: {})",
+                            byRisk, score, operation, result.astDepth(), result.joinCount(),
+                            result.subqueryCount(), result.targetCardinality());
+                    return byRisk;
                 }
             }
+
+            // Critical and allowed keywords by AST statement type, critical first
+            Classification byOperation = policy.classifyOperation(operation);
+            if (byOperation != null) {
+                log.debug("SQL classified as {} via AST (Operation: {})", byOperation, operation);
+                return byOperation;
+            }
         } else {
             // 2. Fallback to naive string matching if AST parsing fails (e.g., PostgreSQL-specific syntax)
-            return fallbackStringMatch(sql);
+            return fallbackStringMatch(sql, policy);
         }
 
         // 3. Default Policy
-        return proxyProperties.isBlockByDefault() ? Classification.CRITICAL : Classification.ALLOWED;
+        return policy.defaultClassification();
     }
 
-    private Classification fallbackStringMatch(String sql) {
-        String upperSql = sql.toUpperCase();
-
-        for (String keyword : proxyProperties.getCriticalKeywords()) {
-            if (upperSql.contains(keyword.toUpperCase().trim())) {
-                log.debug("SQL classified as CRITICAL via fallback matcher (matched: {})", keyword);
-                return Classification.CRITICAL;
-            }
+    private Classification fallbackStringMatch(String sql, CompiledPolicy policy) {
+        // One case-insensitive pass over the original text; any critical keyword beats allowed ones
+        String keyword = policy.matchKeyword(sql);
+        if (keyword == null) {
+            return policy.defaultClassification();
         }
-
-        for (String keyword : proxyProperties.getAllowedKeywords()) {
-            if (upperSql.contains(keyword.toUpperCase().trim())) {
-                log.debug("SQL classified as ALLOWED via fallback matcher (matched: {})", keyword);
-                return Classification.ALLOWED;
-            }
-        }
-
-        return proxyProperties.isBlockByDefault() ? Classification.CRITICAL : Classification.ALLOWED;
+        Classification classification = policy.classifyOperation(keyword);
+        log.debug("SQL classified as {} via fallback matcher (matched: {})", classification, keyword);
+        return classification;
     }
 
     public boolean shouldBlock(String sql) {
         return classify(sql) == Classification.CRITICAL;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.proxy.ast.TableReference;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table-level rules, e.g. {@code DELETE audit.* CRITICAL} or {@code UPDATE sessions ALLOWED}:
+ * an operation (or {@code *}), a table optionally qualified by its schema (either part may be
+ * {@code *}), and the classification. A rule without a schema applies in every schema.
+ * <p>
+ * Rules are indexed table → schema → operation, so a lookup is at most eight hash probes
+ * whatever the number of rules. The most specific rule wins: an exact table beats a wildcard
+ * table, then an exact schema beats a wildcard schema, then an exact operation beats {@code *}.
+ * <p>
+ * A table named without a schema resolves through the session's search_path, which the proxy
+ * cannot see, so it is looked up in {@code public} and in every schema a rule names.
+ */
+final class TableRuleIndex {
+
+    static final String ANY = "*";
+
+    // Schema of PostgreSQL's default search_path
+    static final String DEFAULT_SCHEMA = "public";
+
+    private final Map<String, Map<String, Map<String, Classification>>> rules;
+    // Schemas an unqualified table may be in, as far as the rules can tell apart
+    private final Set<String> schemas;
+    private final List<String> definitions;
+
+    private TableRuleIndex(Map<String, Map<String, Map<String, Classification>>> rules, Set<String> schemas,
+                           List<String> definitions) {
+        this.rules = rules;
+        this.schemas = schemas;
+        this.definitions = definitions;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    static TableRuleIndex build(Collection<String> definitions) {
+        Map<String, Map<String, Map<String, Classification>>> rules = new HashMap<>();
+        Set<String> schemas = new HashSet<>();
+        schemas.add(DEFAULT_SCHEMA);
+        List<String> normalized = definitions == null ? List.of() : definitions.stream()
+                .filter(definition -> definition != null && !definition.isBlank())
+                .map(String::trim)
+                .toList();
+        for (String definition : normalized) {
+            String[] parts = definition.split("\\s+");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException(
+                        "Table rule must be '<operation> <[schema.]table> <CRITICAL|ALLOWED>': " + definition);
+            }
+            String operation = parts[0].toUpperCase(Locale.ROOT);
+            Classification classification = classification(parts[2], definition);
+
+            int dot = unquotedDot(parts[1]);
+            String schema = dot < 0 ? ANY : wildcardOrIdentifier(parts[1].substring(0, dot));
+            String table = wildcardOrIdentifier(dot < 0 ? parts[1] : parts[1].substring(dot + 1));
+            if (table.isEmpty() || schema.isEmpty()) {
+                throw new IllegalArgumentException("Table rule names an empty identifier: " + definition);
+            }
+
+            if (!schema.equals(ANY)) {
+                schemas.add(schema);
+            }
+
+            // Critical wins between two rules for the same target, as with keywords
+            rules.computeIfAbsent(table, k -> new HashMap<>())
+                    .computeIfAbsent(schema, k -> new HashMap<>())
+                    .merge(operation, classification,
+                            (a, b) -> a == Classification.CRITICAL ? a : b);
+        }
+        return new TableRuleIndex(rules, Set.copyOf(schemas), normalized);
+    }
+
+    /** Rules as configured, in order. */
+    List<String> definitions() {
+        return definitions;
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Classification of a statement from the tables it names: CRITICAL if a rule makes any of
+     * them critical, ALLOWED if a rule allows every one of them, otherwise null, leaving the
+     * statement to the keyword policy.
+     */
+    Classification classify(String operation, List<TableReference> tables) {
+        if (rules.isEmpty() || tables.isEmpty()) {
+            return null;
+        }
+        boolean allAllowed = true;
+        for (TableReference table : tables) {
+            Classification classification = table.schema() != null
+                    ? lookup(operation, table.schema(), table.name())
+                    : lookupUnqualified(operation, table.name());
+            if (classification == Classification.CRITICAL) {
+                return classification;
+            }
+            if (classification == null) {
+                allAllowed = false;
+            }
+        }
+        return allAllowed ? Classification.ALLOWED : null;
+    }
+
+    /** Fails closed: critical if any schema makes it critical, allowed only if every schema allows it. */
+    private Classification lookupUnqualified(String operation, String table) {
+        Classification result = Classification.ALLOWED;
+        for (String schema : schemas) {
+            Classification classification = lookup(operation, schema, table);
+            if (classification == Classification.CRITICAL) {
+                return classification;
+            }
+            if (classification == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    private Classification lookup(String operation, String schema, String table) {
+        Classification classification = lookup(rules.get(table), operation, schema);
+        return classification != null ? classification : lookup(rules.get(ANY), operation, schema);
+    }
+
+    private static Classification lookup(Map<String, Map<String, Classification>> bySchema,
+                                         String operation, String schema) {
+        if (bySchema == null) {
+            return null;
+        }
+        Classification classification = lookup(bySchema.get(schema), operation);
+        return classification != null ? classification : lookup(bySchema.get(ANY), operation);
+    }
+
+    private static Classification lookup(Map<String, Classification> byOperation, String operation) {
+        if (byOperation == null) {
+            return null;
+        }
+        Classification classification = byOperation.get(operation);
+        return classification != null ? classification : byOperation.get(ANY);
+    }
+
+    private static Classification classification(String value, String definition) {
+        String upper = value.toUpperCase(Locale.ROOT);
+        if (upper.equals(Classification.CRITICAL.name())) return Classification.CRITICAL;
+        if (upper.equals(Classification.ALLOWED.name())) return Classification.ALLOWED;
+        throw new IllegalArgumentException("Table rule must end in CRITICAL or ALLOWED: " + definition);
+    }
+
+    private static String wildcardOrIdentifier(String identifier) {
+        return identifier.equals(ANY) ? ANY : TableReference.identifier(identifier);
+    }
+
+    private static int unquotedDot(String name) {
+        boolean quoted = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '.' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,17 +1,55 @@
 package com.proxy.interceptor.proxy;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Component
 @Slf4j
 public class WireProtocolHandler {
 
+    private static final int PROTOCOL_VERSION_3 = 196608;
+    private static final byte ERROR_RESPONSE = 'E';
+    private static final byte NOTICE_RESPONSE = 'N';
+
+    // Constant messages, encoded once. Callers get a duplicate: own indices, shared read-only bytes
+    private static final ByteBuf READY_FOR_QUERY_IDLE = constant(6, buf -> buf.writeByte('Z').writeInt(5).writeByte('I'));
+    private static final ByteBuf SSL_ACCEPTED = constant(1, buf -> buf.writeByte('S'));
+    private static final ByteBuf SSL_DECLINED = constant(1, buf -> buf.writeByte('N'));
+
+    /** Severities of ErrorResponse and NoticeResponse, with their S and V fields pre-encoded. */
+    public enum Severity {
+        ERROR(false), FATAL(false), WARNING(true), NOTICE(true), INFO(true);
+
+        private final boolean notice;
+        private final byte[] fields;
+
+        Severity(boolean notice) {
+            this.notice = notice;
+            byte[] name = name().getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer fields = ByteBuffer.allocate(2 * (name.length + 2));
+            fields.put((byte) 'S').put(name).put((byte) 0);
+            fields.put((byte) 'V').put(name).put((byte) 0);
+            this.fields = fields.array();
+        }
+    }
+
+    private static ByteBuf constant(int size, Consumer<ByteBuf> encoder) {
+        ByteBuf buf = Unpooled.directBuffer(size, size);
+        encoder.accept(buf);
+        return Unpooled.unreleasableBuffer(buf.asReadOnly());
+    }
+
     /*
     * Parse a Simple Query(Q) message and extract the SQL.
     * Format: 'Q' (1 byte) + Length (4 bytes) + Query String + null-terminator (1 byte)
@@ -109,55 +147,175 @@ public class WireProtocolHandler {
     }
 
     /*
-    * Create a PostgreSQL ErrorResponse message
+    * Name of the prepared statement a Parse (P) creates, a Bind (B) binds or a Close (C) of a statement closes.
+    * Format: 'P' + Length + Statement Name (C-string) + ...
+    *         'B' + Length + Portal Name (C-string) + Statement Name (C-string) + ...
+    *         'C' + Length + 'S' + Statement Name (C-string)
+    * The unnamed statement is "". Other messages, and a Close of a portal, yield Optional.empty().
+     */
+    public Optional<String> parseStatementName(ByteBuf buf) {
+        if (buf.readableBytes() < 6) {
+            return Optional.empty();
+        }
+        ByteBuf msg = buf.duplicate();
+        try {
+            byte messageType = msg.readByte();
+            int length = msg.readInt();
+            if (length < 5 || msg.readableBytes() < length - 4) {
+                return Optional.empty();
+            }
+            int messageEndIndex = msg.readerIndex() + length - 4;
+            switch (messageType) {
+                case 'P' -> { }
+                case 'B' -> {
+                    if (!skipCString(msg, messageEndIndex)) {
+                        return Optional.empty();
+                    }
+                }
+                case 'C' -> {
+                    if (msg.readByte() != 'S') {
+                        return Optional.empty();
+                    }
+                }
+                default -> {
+                    return Optional.empty();
+                }
+            }
+            return readCStringUtf8(msg, messageEndIndex);
+        } catch (IndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /*
+    * Parse a StartupMessage and return its parameters (user, database, ...).
+    * Format: Length (4 bytes) + Protocol version 3.0 (4 bytes) + (name C-string, value C-string)* + null-terminator
+    * SSLRequest, GSSENCRequest and CancelRequest carry other codes and yield Optional.empty().
+     */
+    public Optional<Map<String, String>> parseStartupMessage(ByteBuf buf) {
+        if (buf.readableBytes() < 8) {
+            return Optional.empty();
+        }
+        int start = buf.readerIndex();
+        int length = buf.getInt(start);
+        if (buf.getInt(start + 4) != PROTOCOL_VERSION_3 || length < 9 || buf.readableBytes() < length) {
+            return Optional.empty();
+        }
+
+        buf.markReaderIndex();
+        try {
+            int messageEndIndex = start + length;
+            buf.readerIndex(start + 8);
+            Map<String, String> parameters = new LinkedHashMap<>();
+            while (buf.readerIndex() < messageEndIndex && buf.getByte(buf.readerIndex()) != 0) {
+                Optional<String> name = readCStringUtf8(buf, messageEndIndex);
+                Optional<String> value = name.isPresent() ? readCStringUtf8(buf, messageEndIndex) : Optional.empty();
+                if (value.isEmpty()) {
+                    return Optional.empty();
+                }
+                parameters.put(name.get(), value.get());
+            }
+            return Optional.of(parameters);
+        } finally {
+            buf.resetReaderIndex();
+        }
+    }
+
+    /*
+    * Create a PostgreSQL ErrorResponse message with the given SQLSTATE
+     */
+    public ByteBuf createErrorResponse(ByteBufAllocator alloc, String sqlState, String message) {
+        return encodeResponse(alloc, ERROR_RESPONSE, Severity.ERROR, sqlState, message, null, null);
+    }
+
+    /*
+    * Create an ErrorResponse with optional Detail and Hint fields (null to leave one out).
+    * Severity is ERROR, or FATAL when the proxy closes the connection right after.
+     */
+    public ByteBuf createErrorResponse(ByteBufAllocator alloc, Severity severity, String sqlState,
+                                       String message, String detail, String hint) {
+        if (severity.notice) {
+            throw new IllegalArgumentException(severity + " is a notice severity, not an error");
+        }
+        return encodeResponse(alloc, ERROR_RESPONSE, severity, sqlState, message, detail, hint);
+    }
+
+    /*
+    * Create a FATAL ErrorResponse, sent just before the proxy closes the connection
+     */
+    public ByteBuf createFatalResponse(ByteBufAllocator alloc, String sqlState, String message) {
+        return encodeResponse(alloc, ERROR_RESPONSE, Severity.FATAL, sqlState, message, null, null);
+    }
+
+    /*
+    * Create a NoticeResponse (WARNING, NOTICE or INFO). Clients accept one at any time,
+    * so it may be sent while a query is outstanding without disturbing the protocol.
      */
-    public ByteBuf createErrorResponse(String message) {
-        // Error fields: S (Severity), V (Severity non-localized), C (Code), M (Message)
-        byte[] severity = "ERROR".getBytes(StandardCharsets.UTF_8);
-        byte[] code = "20000".getBytes(StandardCharsets.UTF_8);
-        byte[] msg = message.getBytes(StandardCharsets.UTF_8);
+    public ByteBuf createNoticeResponse(ByteBufAllocator alloc, Severity severity, String sqlState,
+                                        String message, String detail, String hint) {
+        if (!severity.notice) {
+            throw new IllegalArgumentException(severity + " is an error severity, not a notice");
+        }
+        return encodeResponse(alloc, NOTICE_RESPONSE, severity, sqlState, message, detail, hint);
+    }
 
+    private static ByteBuf encodeResponse(ByteBufAllocator alloc, byte type, Severity severity, String sqlState,
+                                          String message, String detail, String hint) {
+        if (sqlState.length() != 5) {
+            throw new IllegalArgumentException("SQLSTATE must be 5 characters: " + sqlState);
+        }
+        // Fields: S and V (pre-encoded per severity), C (Code), M (Message), D (Detail), H (Hint)
         int length = 4 + // Length field
-                    1 + severity.length + 1 + // 'S' + severity + null
-                    1 + severity.length + 1 + // 'V' + severity + null
-                    1 + code.length + 1 + // 'C' + code + null
-                    1 + msg.length + 1 + // 'M' + message + null
+                    severity.fields.length +
+                    1 + 5 + 1 + // 'C' + code + null
+                    fieldLength(message) +
+                    (detail != null ? fieldLength(detail) : 0) +
+                    (hint != null ? fieldLength(hint) : 0) +
                     1;                      // Null terminator
 
-        ByteBuf buf = Unpooled.buffer(1 + length);
-        buf.writeByte('E'); // ErrorResponse
+        ByteBuf buf = alloc.ioBuffer(1 + length);
+        buf.writeByte(type);
         buf.writeInt(length);
-
-        buf.writeByte('S');
-        buf.writeBytes(severity);
-        buf.writeByte(0);
-
-        buf.writeByte('V');
-        buf.writeBytes(severity);
-        buf.writeByte(0);
+        buf.writeBytes(severity.fields);
 
         buf.writeByte('C');
-        buf.writeBytes(code);
-        buf.writeByte(0);
-
-        buf.writeByte('M');
-        buf.writeBytes(msg);
+        buf.writeCharSequence(sqlState, StandardCharsets.US_ASCII);
         buf.writeByte(0);
 
-        buf.writeByte(0); // End of error fields
+        writeField(buf, 'M', message);
+        if (detail != null) writeField(buf, 'D', detail);
+        if (hint != null) writeField(buf, 'H', hint);
 
+        buf.writeByte(0); // End of fields
         return buf;
     }
 
+    private static int fieldLength(String value) {
+        return 1 + ByteBufUtil.utf8Bytes(value) + 1;
+    }
+
+    private static void writeField(ByteBuf buf, char code, String value) {
+        buf.writeByte(code);
+        ByteBufUtil.writeUtf8(buf, value);
+        buf.writeByte(0);
+    }
+
     /*
-    * Create a ReadyForQuery message to unblock the client.
+    * ReadyForQuery (idle) to unblock the client. Shared and read-only; releasing it is a no-op.
      */
     public ByteBuf createReadyForQuery() {
-        ByteBuf buf = Unpooled.buffer(6);
-        buf.writeByte('Z'); // ReadyForQuery
-        buf.writeInt(5); // Length
-        buf.writeByte('I'); // Transaction status: Idle
-        return buf;
+        return READY_FOR_QUERY_IDLE.duplicate();
+    }
+
+    /*
+    * Single-byte answers to a client's SSLRequest: 'S' to start TLS, 'N' to go on in plaintext.
+     */
+    public ByteBuf sslAccepted() {
+        return SSL_ACCEPTED.duplicate();
+    }
+
+    public ByteBuf sslDeclined() {
+        return SSL_DECLINED.duplicate();
     }
 
     /*
@@ -171,6 +329,15 @@ public class WireProtocolHandler {
         return type == 'S';
     }
 
+    /*
+    * Check if the buffer ends with a Sync message, i.e. completes an extended protocol batch.
+     */
+    public boolean endsWithSync(ByteBuf buf) {
+        if (buf.readableBytes() < 5) return false;
+        int end = buf.writerIndex();
+        return buf.getByte(end - 5) == 'S' && buf.getInt(end - 4) == 4;
+    }
+
     /*
     * Get message type from buffer without consuming
      */
@@ -0,0 +1,271 @@
+package com.proxy.interceptor.proxy.ast;
+
+import net.sf.jsqlparser.expression.BooleanValue;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Values;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walks a parsed statement once and records everything the classifier needs: tables and
+ * columns, query nesting depth, joins, subqueries, and for the statement itself how many rows
+ * it can reach. The base finder tells CTE names and other non-table sources apart; only names
+ * it reports as tables are kept.
+ */
+class AnalysisVisitor extends TablesNamesFinder<Void> {
+
+    private final Set<String> keyColumns;
+
+    private final Map<String, TableReference> visited = new LinkedHashMap<>();
+    private final Set<String> columns = new LinkedHashSet<>();
+    private Set<String> tableNames = Set.of();
+
+    private Statement root;
+    private int depth;
+    private int maxDepth;
+    private int joinCount;
+    private int subqueryCount;
+    // The statement's own target (UPDATE/DELETE) or FROM table; key columns only count on it
+    private Table target;
+    private TargetCardinality cardinality = TargetCardinality.UNBOUNDED;
+
+    /**
+     * @param keyColumns lower-case column names an equality on which selects a single row
+     */
+    AnalysisVisitor(Set<String> keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    SqlAnalysisResult analyze(String operation, Statement statement) {
+        root = statement;
+        try {
+            tableNames = getTables(statement);
+        } catch (UnsupportedOperationException e) {
+            // Statements the finder does not cover (CREATE INDEX, ...) carry no references
+            visited.clear();
+            columns.clear();
+        }
+        List<TableReference> tables = visited.entrySet().stream()
+                .filter(entry -> tableNames.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+        return new SqlAnalysisResult(operation, true, null, Math.max(1, maxDepth), joinCount, subqueryCount,
+                cardinality, tables, Collections.unmodifiableSet(columns));
+    }
+
+    @Override
+    public <S> Void visit(Table table, S context) {
+        if (table.getName() != null) {
+            visited.putIfAbsent(table.getFullyQualifiedName(),
+                    new TableReference(table.getSchemaName(), table.getName()));
+        }
+        return super.visit(table, context);
+    }
+
+    @Override
+    public <S> Void visit(Column column, S context) {
+        columns.add(TableReference.identifier(column.getColumnName()));
+        return super.visit(column, context);
+    }
+
+    @Override
+    public <S> Void visit(PlainSelect select, S context) {
+        if (select == root) {
+            target = select.getFromItem() instanceof Table table ? table : null;
+            cardinality = limit(estimate(select.getWhere()), select.getLimit());
+        }
+        if (select.getJoins() != null) {
+            joinCount += select.getJoins().size();
+        }
+        enter();
+        super.visit(select, context);
+        depth--;
+        return null;
+    }
+
+    @Override
+    public <S> Void visit(ParenthesedSelect select, S context) {
+        if (select != root) {
+            subqueryCount++;
+        }
+        return super.visit(select, context);
+    }
+
+    @Override
+    public <S> Void visit(Update update, S context) {
+        if (update == root) {
+            target = update.getTable();
+            cardinality = limit(estimate(update.getWhere()), update.getLimit());
+            // A key of another source says nothing about how many target rows are joined to it
+            if (update.getFromItem() != null || size(update.getStartJoins()) + size(update.getJoins()) > 0) {
+                cardinality = cardinality.or(TargetCardinality.FILTERED);
+            }
+        }
+        // UPDATE ... FROM a, b joins the target to every listed source
+        if (update.getFromItem() != null) {
+            joinCount++;
+        }
+        joinCount += size(update.getStartJoins()) + size(update.getJoins());
+        enter();
+        super.visit(update, context);
+        depth--;
+        return null;
+    }
+
+    @Override
+    public <S> Void visit(Delete delete, S context) {
+        if (delete == root) {
+            target = delete.getTable();
+            cardinality = limit(estimate(delete.getWhere()), delete.getLimit());
+            if (size(delete.getUsingList()) + size(delete.getJoins()) > 0) {
+                cardinality = cardinality.or(TargetCardinality.FILTERED);
+            }
+        }
+        joinCount += size(delete.getUsingList()) + size(delete.getJoins());
+        enter();
+        super.visit(delete, context);
+        depth--;
+        return null;
+    }
+
+    @Override
+    public <S> Void visit(Insert insert, S context) {
+        if (insert == root) {
+            cardinality = insertCardinality(insert);
+        }
+        if (insert.getColumns() != null) {
+            insert.getColumns().forEach(column -> columns.add(TableReference.identifier(column.getColumnName())));
+        }
+        enter();
+        super.visit(insert, context);
+        depth--;
+        return null;
+    }
+
+    private void enter() {
+        maxDepth = Math.max(maxDepth, ++depth);
+    }
+
+    private TargetCardinality insertCardinality(Insert insert) {
+        if (insert.getSelect() instanceof Values values) {
+            ExpressionList<?> rows = values.getExpressions();
+            // VALUES (1, 2) is one row of two expressions; VALUES (1, 2), (3, 4) is a list of rows
+            boolean multiRow = rows != null && rows.size() > 1 && rows.get(0) instanceof ParenthesedExpressionList<?>;
+            return multiRow ? TargetCardinality.BOUNDED : TargetCardinality.SINGLE_ROW;
+        }
+        if (insert.getPlainSelect() != null) {
+            PlainSelect source = insert.getPlainSelect();
+            return limit(source.getWhere() == null ? TargetCardinality.UNBOUNDED : TargetCardinality.FILTERED,
+                    source.getLimit());
+        }
+        return TargetCardinality.FILTERED;
+    }
+
+    private TargetCardinality estimate(Expression where) {
+        if (where == null) {
+            return TargetCardinality.UNBOUNDED;
+        }
+        if (where instanceof ParenthesedExpressionList<?> parenthesed && parenthesed.size() == 1) {
+            return estimate(parenthesed.get(0));
+        }
+        if (where instanceof AndExpression and) {
+            return estimate(and.getLeftExpression()).and(estimate(and.getRightExpression()));
+        }
+        if (where instanceof OrExpression or) {
+            // Two single-row lookups are still a bounded set
+            return estimate(or.getLeftExpression()).or(estimate(or.getRightExpression()))
+                    .or(TargetCardinality.BOUNDED);
+        }
+        if (where instanceof BooleanValue bool) {
+            return bool.getValue() ? TargetCardinality.UNBOUNDED : TargetCardinality.SINGLE_ROW;
+        }
+        if (where instanceof EqualsTo equals) {
+            Expression left = equals.getLeftExpression();
+            Expression right = equals.getRightExpression();
+            if ((isKey(left) && isConstant(right)) || (isKey(right) && isConstant(left))) {
+                return TargetCardinality.SINGLE_ROW;
+            }
+            // 1 = 1 and friends
+            if (isConstant(left) && isConstant(right) && left.toString().equals(right.toString())) {
+                return TargetCardinality.UNBOUNDED;
+            }
+            return TargetCardinality.FILTERED;
+        }
+        if (where instanceof InExpression in && !in.isNot() && isKey(in.getLeftExpression())
+                && in.getRightExpression() instanceof ExpressionList<?> list && list.stream().allMatch(this::isConstant)) {
+            return list.size() == 1 ? TargetCardinality.SINGLE_ROW : TargetCardinality.BOUNDED;
+        }
+        return TargetCardinality.FILTERED;
+    }
+
+    private static TargetCardinality limit(TargetCardinality cardinality, Limit limit) {
+        return limit != null && limit.getRowCount() != null ? cardinality.and(TargetCardinality.BOUNDED) : cardinality;
+    }
+
+    private boolean isKey(Expression expression) {
+        if (!(expression instanceof Column column)
+                || !keyColumns.contains(TableReference.identifier(column.getColumnName()))) {
+            return false;
+        }
+        Table qualifier = column.getTable();
+        return qualifier == null || qualifier.getName() == null || isTarget(qualifier);
+    }
+
+    /** Whether a column qualifier names the target: by its alias if it has one, as PostgreSQL resolves it. */
+    private boolean isTarget(Table qualifier) {
+        if (target == null || target.getName() == null) {
+            return false;
+        }
+        TableReference named = new TableReference(qualifier.getSchemaName(), qualifier.getName());
+        if (target.getAlias() != null) {
+            return named.schema() == null && named.name().equals(TableReference.identifier(target.getAlias().getName()));
+        }
+        TableReference table = new TableReference(target.getSchemaName(), target.getName());
+        return named.name().equals(table.name()) && (named.schema() == null || named.schema().equals(table.schema()));
+    }
+
+    private boolean isConstant(Expression expression) {
+        return switch (expression) {
+            case LongValue ignored -> true;
+            case StringValue ignored -> true;
+            case DoubleValue ignored -> true;
+            case JdbcParameter ignored -> true;
+            case JdbcNamedParameter ignored -> true;
+            case SignedExpression signed -> isConstant(signed.getExpression());
+            case CastExpression cast -> isConstant(cast.getLeftExpression());
+            default -> false;
+        };
+    }
+
+    private static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+}
@@ -1,5 +1,6 @@
 package com.proxy.interceptor.proxy.ast;
 
+import com.proxy.interceptor.config.RiskProperties;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
@@ -13,21 +14,34 @@ import net.sf.jsqlparser.statement.truncate.Truncate;
 import net.sf.jsqlparser.statement.update.Update;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Component
 @Slf4j
 public class JSqlParserAnalyzer implements SqlAnalyzer {
 
+    private final Set<String> keyColumns;
+
+    public JSqlParserAnalyzer(RiskProperties riskProperties) {
+        this.keyColumns = riskProperties.getKeyColumns().stream()
+                .map(TableReference::identifier)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
     @Override
     public SqlAnalysisResult analyze(String sql) {
         try {
             Statement statement = CCJSqlParserUtil.parse(sql);
             String operation = extractOperationType(statement);
 
-            // astDepth and joinCount default to 0 for now (to be implemented in Dynamic Risk Scoring phase)
-            return new SqlAnalysisResult(operation, true, null, 0, 0);
+            // References, structure and cardinality all come from this one walk of the tree
+            return new AnalysisVisitor(keyColumns).analyze(operation, statement);
         } catch (Exception e) {
             log.debug("AST Parsing failed for SQL. Falling back to simple parsing. Error: {}", e.getMessage());
-            return new SqlAnalysisResult("UNKNOWN", false, e.getMessage(), 0, 0);
+            return new SqlAnalysisResult("UNKNOWN", false, e.getMessage(), 0, 0, 0,
+                    TargetCardinality.UNBOUNDED, List.of(), Set.of());
         }
     }
 
@@ -45,4 +59,4 @@ public class JSqlParserAnalyzer implements SqlAnalyzer {
         // Fallback for Grant, Revoke, etc. (Strips the class name to uppercase)
         return statement.getClass().getSimpleName().toUpperCase();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,19 @@
 package com.proxy.interceptor.proxy.ast;
 
+import java.util.List;
+import java.util.Set;
+
 public record SqlAnalysisResult(
         String operationType,
         boolean parseSuccess,
         String errorMessage,
-        // Placeholders for future Dynamic Risk Scoring
+        // Structure, for dynamic risk scoring: query nesting (1 for a flat statement), joins and subqueries
         int astDepth,
-        int joinCount
-) {}
\ No newline at end of file
+        int joinCount,
+        int subqueryCount,
+        // Rows the statement itself can reach; UNBOUNDED if unparsed
+        TargetCardinality targetCardinality,
+        // Tables and columns named anywhere in the statement, CTE names excluded; empty if unparsed
+        List<TableReference> tables,
+        Set<String> columns
+) {}
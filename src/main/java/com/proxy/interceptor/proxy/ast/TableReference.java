@@ -0,0 +1,30 @@
+package com.proxy.interceptor.proxy.ast;
+
+import java.util.Locale;
+
+/**
+ * A table named by a statement. Identifiers are folded the way PostgreSQL folds them:
+ * unquoted names are lower-cased, quoted names keep their case and lose the quotes.
+ *
+ * @param schema schema as written, or null when the name was unqualified
+ */
+public record TableReference(String schema, String name) {
+
+    public TableReference {
+        schema = schema == null || schema.isBlank() ? null : identifier(schema);
+        name = identifier(name);
+    }
+
+    public static String identifier(String identifier) {
+        String trimmed = identifier.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1).replace("\"\"", "\"");
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return schema == null ? name : schema + "." + name;
+    }
+}
@@ -0,0 +1,20 @@
+package com.proxy.interceptor.proxy.ast;
+
+/**
+ * How many rows a statement can touch, estimated from its WHERE clause and LIMIT alone
+ * (no table statistics). Ordered from narrowest to widest.
+ */
+public enum TargetCardinality {
+    SINGLE_ROW, // Equality on a key column
+    BOUNDED,    // Key IN (...) list, several key lookups, a LIMIT or a VALUES list
+    FILTERED,   // Some other condition
+    UNBOUNDED;  // No WHERE, or one that is always true
+
+    TargetCardinality or(TargetCardinality other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    TargetCardinality and(TargetCardinality other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+}
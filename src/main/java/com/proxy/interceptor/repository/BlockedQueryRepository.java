@@ -3,10 +3,13 @@ package com.proxy.interceptor.repository;
 import com.proxy.interceptor.model.BlockedQuery;
 import com.proxy.interceptor.model.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +26,23 @@ public interface BlockedQueryRepository extends JpaRepository<BlockedQuery, Long
     List<BlockedQuery> findExpiredPendingQueries(Instant expireTime);
 
     List<BlockedQuery> findTop100ByOrderByCreatedAtDesc();
+
+    // Ids of the rows this call closed; rows resolved meanwhile by a vote or another node are left out
+    @Transactional
+    @Query(value = "UPDATE blocked_queries SET status = :status, resolved_at = :resolvedAt, resolved_by = :resolvedBy " +
+            "WHERE id IN (:ids) AND status = 'PENDING' RETURNING id",
+            nativeQuery = true)
+    List<Long> resolvePending(Collection<Long> ids, String status, Instant resolvedAt, String resolvedBy);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE BlockedQuery bq SET bq.estimatedRows = :rows, bq.estimatedCost = :cost " +
+            "WHERE bq.id = :id AND bq.status = 'PENDING'")
+    int updateEstimate(long id, long rows, double cost);
+
+    // Votes commit out of order; a tally snapshot only lands if it is newer than the stored one
+    @Modifying
+    @Query("UPDATE BlockedQuery bq SET bq.approvalCount = :approvals, bq.rejectionCount = :rejections, " +
+            "bq.voteVersion = :version WHERE bq.id = :id AND bq.voteVersion < :version")
+    int updateVoteCounts(long id, int approvals, int rejections, long version);
 }
@@ -0,0 +1,16 @@
+package com.proxy.interceptor.repository;
+
+import com.proxy.interceptor.model.ProxyPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ProxyPolicyRepository extends JpaRepository<ProxyPolicy, Long> {
+
+    // The version alone, for the periodic check: cheaper than loading the row
+    @Query("SELECT p.version FROM ProxyPolicy p WHERE p.id = :id")
+    Optional<Long> findVersionById(long id);
+}
@@ -0,0 +1,22 @@
+package com.proxy.interceptor.repository;
+
+import com.proxy.interceptor.model.QueryApproval;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface QueryApprovalRepository extends JpaRepository<QueryApproval, Long> {
+
+    // One round trip whether the voter is new or changing their vote
+    @Modifying
+    @Query(value = "INSERT INTO query_approvals (blocked_query_id, username, vote, voted_at) " +
+            "VALUES (:queryId, :username, :vote, :votedAt) " +
+            "ON CONFLICT (blocked_query_id, username) " +
+            "DO UPDATE SET vote = EXCLUDED.vote, voted_at = EXCLUDED.voted_at",
+            nativeQuery = true)
+    int upsertVote(long queryId, String username, String vote, Instant votedAt);
+}
@@ -1,8 +1,6 @@
 package com.proxy.interceptor.security;
 
 import com.proxy.interceptor.dto.TokenClaims;
-import com.proxy.interceptor.model.User;
-import com.proxy.interceptor.repository.UserRepository;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,7 +10,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -26,7 +27,8 @@ import java.util.Optional;
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserRepository userRepository;
+    private final TokenVersionCache tokenVersionCache;
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -39,16 +41,19 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
 
-            if (jwtTokenProvider.validateToken(token)) {
-                TokenClaims claims = jwtTokenProvider.parseToken(token);
+            // Signature and expiry are verified once; repeat calls hit the verified-token cache
+            Optional<TokenClaims> verified = jwtTokenProvider.verify(token);
+
+            if (verified.isPresent()) {
+                TokenClaims claims = verified.get();
                 String username = claims.username();
                 String role = claims.role();
                 Integer tokenVersion = claims.tokenVersion();
 
-                Optional<User> userOpt = userRepository.findByUsername(username);
+                Optional<Integer> currentVersion = tokenVersionCache.getTokenVersion(username);
 
-                if (userOpt.isPresent()) {
-                    Integer dbVersion = userOpt.get().getTokenVersion() != null ? userOpt.get().getTokenVersion() : 0;
+                if (currentVersion.isPresent()) {
+                    Integer dbVersion = currentVersion.get();
                     Integer jwtVersion = tokenVersion != null ? tokenVersion : 0;
 
                     if (dbVersion.equals(jwtVersion)) {
@@ -61,8 +66,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                                 null,
                                 List.of(new SimpleGrantedAuthority("ROLE_" + role))
                         );
-                        SecurityContextHolder.getContext().setAuthentication(auth);
-                        log.info("Authenticated user: {}, role: {}, token version: {}", username, role, tokenVersion);
+                        SecurityContext context = SecurityContextHolder.getContext();
+                        context.setAuthentication(auth);
+                        // Also kept on the request: this filter skips the async dispatch of a controller returning a future
+                        securityContextRepository.saveContext(context, request, response);
+                        log.debug("Authenticated user: {}, role: {}, token version: {}", username, role, tokenVersion);
                     } else {
                         log.warn("Token version mismatch for user {}", username);
                     }
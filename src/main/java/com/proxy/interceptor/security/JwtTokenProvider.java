@@ -1,7 +1,12 @@
 package com.proxy.interceptor.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.proxy.interceptor.dto.TokenClaims;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -11,7 +16,13 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 @Slf4j
@@ -23,11 +34,28 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
     private SecretKey key;
 
+    // Built once: JwtParser is immutable and thread-safe
+    private JwtParser parser;
+
+    // SHA-256 digest of a token -> claims, kept only until the token expires
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    private record VerifiedToken(TokenClaims claims, Instant expiresAt) {}
+
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(Expiry.<String, VerifiedToken>creating(
+                        (digest, verified) -> Duration.between(Instant.now(), verified.expiresAt())))
+                .build();
     }
 
     public String generateToken(String username, String role, Integer tokenVersion) {
@@ -44,54 +72,75 @@ public class JwtTokenProvider {
                 .compact();
     }
 
-    public TokenClaims parseToken(String token) {
-        var payload = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Verifies the token signature and expiry at most once while it stays cached,
+     * returning its claims, or empty if the token is invalid or expired.
+     */
+    public Optional<TokenClaims> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
 
-        return new TokenClaims(
-                payload.getSubject(),
-                payload.get("role", String.class),
-                payload.get("token_version", Integer.class)
-        );
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return Optional.of(cached.claims());
+        }
+
+        try {
+            VerifiedToken verified = parseAndVerify(token);
+            if (verified.expiresAt() != null) {
+                verifiedTokens.put(digest, verified);
+            }
+            return Optional.of(verified.claims());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the claims of a valid token.
+     * @throws JwtException if the token is invalid or expired
+     */
+    public TokenClaims parseToken(String token) {
+        return verify(token).orElseThrow(() -> new JwtException("Invalid JWT token"));
     }
 
     public String getUsernameFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parseToken(token).username();
     }
 
     public String getRoleFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .get("role", String.class);
+        return parseToken(token).role();
     }
 
     public Integer getTokenVersionFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .get("token_version", Integer.class);
+        return parseToken(token).tokenVersion();
     }
 
     public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
+    private VerifiedToken parseAndVerify(String token) {
+        Claims payload = parser.parseSignedClaims(token).getPayload();
+        TokenClaims claims = new TokenClaims(
+                payload.getSubject(),
+                payload.get("role", String.class),
+                payload.get("token_version", Integer.class)
+        );
+        Date expiration = payload.getExpiration();
+        return new VerifiedToken(claims, expiration != null ? expiration.toInstant() : null);
+    }
+
+    private String digest(String token) {
         try {
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
         }
     }
 }
@@ -0,0 +1,97 @@
+package com.proxy.interceptor.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proxy.interceptor.model.User;
+import com.proxy.interceptor.repository.UserRepository;
+import com.proxy.interceptor.service.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded, TTL-limited cache of user token versions, so that authenticating a request
+ * does not need a users table lookup every time.
+ * Entries are invalidated on every node through the {@value #INVALIDATION_CHANNEL} channel
+ * whenever a token version changes or a user is removed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenVersionCache {
+
+    public static final String INVALIDATION_CHANNEL = "interceptor:auth-invalidate";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MetricsService metricsService;
+
+    @Value("${jwt.token-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${jwt.token-cache.ttl:60s}")
+    private Duration ttl;
+
+    private Cache<String, Integer> versions;
+
+    @PostConstruct
+    public void init() {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /*
+    * Returns the current token version of the user, or empty if the user does not exist.
+    * Unknown users are not cached, so a newly created user is visible immediately.
+     */
+    public Optional<Integer> getTokenVersion(String username) {
+        Integer version = versions.getIfPresent(username);
+        if (version != null) {
+            metricsService.trackAuthCacheHit();
+            return Optional.of(version);
+        }
+
+        metricsService.trackAuthCacheMiss();
+        // Loading through the cache serializes with a concurrent invalidate of the same key,
+        // so a version read before a logout commit can never outlive that logout's eviction.
+        return Optional.ofNullable(versions.get(username, this::loadTokenVersion));
+    }
+
+    /*
+    * Evict the user on this node and notify every other node to do the same.
+    * Must be called after the change has been committed to the database.
+     */
+    public void invalidate(String username) {
+        evict(username);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, username);
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL if the notification cannot be delivered
+            log.error("Failed to publish token cache invalidation for {}: {}", username, e.getMessage());
+        }
+    }
+
+    /*
+    * Evict the user on this node only (invoked for cluster-wide invalidation messages).
+     */
+    public void evict(String username) {
+        versions.invalidate(username);
+        metricsService.trackAuthCacheInvalidation();
+        log.debug("Token version cache entry evicted for {}", username);
+    }
+
+    private Integer loadTokenVersion(String username) {
+        return userRepository.findByUsername(username)
+                .map(User::getTokenVersion)
+                .map(version -> version != null ? version : 0)
+                .orElse(null);
+    }
+}
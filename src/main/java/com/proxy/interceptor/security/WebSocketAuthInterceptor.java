@@ -1,7 +1,6 @@
 package com.proxy.interceptor.security;
 
 import com.proxy.interceptor.dto.TokenClaims;
-import com.proxy.interceptor.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
@@ -16,6 +15,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -23,7 +23,7 @@ import java.util.List;
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserRepository userRepository;
+    private final TokenVersionCache tokenVersionCache;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -41,16 +41,16 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) return;
 
         String token = authHeader.substring(7);
-        if (!jwtTokenProvider.validateToken(token)) return;
+        Optional<TokenClaims> verified = jwtTokenProvider.verify(token);
+        if (verified.isEmpty()) return;
 
-        TokenClaims claims = jwtTokenProvider.parseToken(token);
+        TokenClaims claims = verified.get();
 
         String username = claims.username();
         String role = claims.role();
         Integer tokenVersion = claims.tokenVersion();
 
-        userRepository.findByUsername(username).ifPresent(user -> {
-            Integer dbVersion = user.getTokenVersion() != null ? user.getTokenVersion() : 0;
+        tokenVersionCache.getTokenVersion(username).ifPresent(dbVersion -> {
             Integer jwtVersion = tokenVersion != null ? tokenVersion : 0;
 
             if (dbVersion.equals(jwtVersion)) {
@@ -0,0 +1,147 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.config.ClusterProperties;
+import com.proxy.interceptor.messaging.ClusterMessenger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends approve, reject and vote requests to the node whose proxy holds the query's client
+ * connection. Queries held here are handled directly; the rest go to their owner over Redis
+ * and the owner's answer is returned as if it were local.
+ * <p>
+ * Nothing waits for another node: forwarded calls return a future that completes when the
+ * owner answers or the request times out. Requests forwarded to this node, and the work that
+ * follows an answer from another, run on threads of their own rather than the Redis listener.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ApprovalRouter {
+
+    private static final String APPROVE = "approve";
+    private static final String REJECT = "reject";
+    private static final String VOTE = "vote";
+    private static final String VOTE_STATUS = "vote-status";
+
+    private final BlockedQueryService blockedQueryService;
+    private final ClusterMessenger clusterMessenger;
+    private final ClusterProperties clusterProperties;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threads = new AtomicInteger();
+        // Unbounded: requests come from approvers' clicks, so there are never many, and none may be dropped
+        this.executor = Executors.newFixedThreadPool(clusterProperties.getRequestThreads(), r -> {
+            Thread t = new Thread(r, "cluster-request-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        clusterMessenger.setRequestHandler(this::handleForwarded);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<Boolean> approveQuery(long id, String username) {
+        String owner = remoteOwner(id);
+        if (owner == null) {
+            return CompletableFuture.completedFuture(blockedQueryService.approveQuery(id, username));
+        }
+        return forward(owner, APPROVE, Map.of("id", id, "username", username))
+                .thenApply(result -> Boolean.TRUE.equals(result.get("success")));
+    }
+
+    public CompletableFuture<Boolean> rejectQuery(long id, String username) {
+        String owner = remoteOwner(id);
+        if (owner == null) {
+            return CompletableFuture.completedFuture(blockedQueryService.rejectQuery(id, username));
+        }
+        return forward(owner, REJECT, Map.of("id", id, "username", username))
+                .thenApply(result -> Boolean.TRUE.equals(result.get("success")));
+    }
+
+    public CompletableFuture<Map<String, Object>> addVote(long id, String username, String vote) {
+        String owner = remoteOwner(id);
+        if (owner == null) {
+            return CompletableFuture.completedFuture(blockedQueryService.addVote(id, username, vote));
+        }
+        return forward(owner, VOTE, Map.of("id", id, "username", username, "vote", vote));
+    }
+
+    /** Completes with null if no node holds the query. */
+    public CompletableFuture<Map<String, Object>> getVoteStatus(long id) {
+        String owner = remoteOwner(id);
+        if (owner == null) {
+            return CompletableFuture.completedFuture(blockedQueryService.getVoteStatus(id));
+        }
+        return forward(owner, VOTE_STATUS, Map.of("id", id))
+                .thenApply(status -> status.containsKey("error") ? null : status);
+    }
+
+    /** Owner of a query held by another node; null when it is ours, unknown or unowned. */
+    private String remoteOwner(long id) {
+        if (blockedQueryService.isHeldLocally(id)) {
+            return null;
+        }
+        String owner = blockedQueryService.ownerOf(id);
+        return blockedQueryService.isOwnedHere(owner) ? null : owner;
+    }
+
+    /** Never completes exceptionally: a node that does not answer or cannot be reached is a failed result. */
+    private CompletableFuture<Map<String, Object>> forward(String owner, String action, Map<String, Object> arguments) {
+        return clusterMessenger.request(owner, action, arguments).handleAsync((result, error) -> {
+            if (error == null) {
+                return result;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                log.warn("Node {} did not answer {} for query #{}", owner, action, arguments.get("id"));
+                return Map.of("success", false, "duplicate", false, "error", "Owner node " + owner + " did not answer");
+            }
+            log.error("Forwarding {} to node {} failed: {}", action, owner, cause.getMessage());
+            return Map.of("success", false, "duplicate", false, "error", "Could not reach owner node " + owner);
+        }, executor);
+    }
+
+    /** Runs a request forwarded by another node against the queries held here. */
+    private CompletableFuture<Map<String, Object>> handleForwarded(String action, Map<String, Object> arguments) {
+        try {
+            return CompletableFuture.supplyAsync(() -> runForwarded(action, arguments), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(Map.of("success", false, "error", "Node is shutting down"));
+        }
+    }
+
+    private Map<String, Object> runForwarded(String action, Map<String, Object> arguments) {
+        // Numbers may come back from JSON as Integer or Long
+        long id = ((Number) arguments.get("id")).longValue();
+        String username = (String) arguments.get("username");
+        return switch (action) {
+            case APPROVE -> Map.of("success", blockedQueryService.approveQuery(id, username));
+            case REJECT -> Map.of("success", blockedQueryService.rejectQuery(id, username));
+            case VOTE -> blockedQueryService.addVote(id, username, (String) arguments.get("vote"));
+            case VOTE_STATUS -> {
+                Map<String, Object> status = blockedQueryService.getVoteStatus(id);
+                yield status != null ? status : Map.of("error", "Query not found");
+            }
+            default -> throw new IllegalArgumentException("Unknown cluster action " + action);
+        };
+    }
+}
@@ -7,6 +7,7 @@ import com.proxy.interceptor.model.Role;
 import com.proxy.interceptor.model.User;
 import com.proxy.interceptor.repository.UserRepository;
 import com.proxy.interceptor.security.JwtTokenProvider;
+import com.proxy.interceptor.security.TokenVersionCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -23,6 +24,7 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenVersionCache tokenVersionCache;
 
     public LoginResult login(String username, String password) {
         Optional<User> userOpt = userRepository.findByUsername(username);
@@ -50,13 +52,14 @@ public class AuthService {
     }
 
     public LogoutResult logout(String token) {
-        // 1. Validate the token in the service layer
-        if (!jwtTokenProvider.validateToken(token)) {
+        // 1. Validate the token and parse the claims in the service layer
+        Optional<TokenClaims> verified = jwtTokenProvider.verify(token);
+        if (verified.isEmpty()) {
             return new LogoutResult(false, "Invalid or expired token", "UNKNOWN");
         }
 
-        // 2. Parse the claims
-        TokenClaims claims = jwtTokenProvider.parseToken(token);
+        // 2. Read the claims
+        TokenClaims claims = verified.get();
         String username = claims.username();
         Integer jwtVersion = claims.tokenVersion();
         if (jwtVersion == null) jwtVersion = 0;
@@ -80,6 +83,7 @@ public class AuthService {
         Integer newVersion = dbVersion + 1;
         user.setTokenVersion(newVersion);
         userRepository.save(user);
+        tokenVersionCache.invalidate(username);
 
         log.info("User {} logged out, token version incremented to {}", username, newVersion);
         return new LogoutResult(true, "Logout successful", username);
@@ -1,22 +1,37 @@
 package com.proxy.interceptor.service;
 
 import com.proxy.interceptor.config.ApprovalProperties;
+import com.proxy.interceptor.config.ClusterProperties;
+import com.proxy.interceptor.dto.ImpactEstimate;
 import com.proxy.interceptor.dto.PendingQuery;
+import com.proxy.interceptor.dto.PendingQueryChanges;
+import com.proxy.interceptor.dto.PendingQueryItem;
+import com.proxy.interceptor.messaging.QueryEvent;
 import com.proxy.interceptor.messaging.QueryEventPublisher;
 import com.proxy.interceptor.model.*;
+import com.proxy.interceptor.proxy.ConnectionState;
+import com.proxy.interceptor.proxy.HeldMessage;
 import com.proxy.interceptor.repository.BlockedQueryRepository;
+import com.proxy.interceptor.repository.QueryApprovalRepository;
 import io.netty.buffer.ByteBuf;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 @Service
@@ -24,22 +39,70 @@ import java.util.function.Consumer;
 @Slf4j
 public class BlockedQueryService {
 
+    private static final String EXPIRY_ACTOR = "Approval Timeout";
+    private static final String PEER_ACTOR = "Peer Approval System";
+    // Wait before closing expired rows again after the database refused the UPDATE
+    private static final Duration EXPIRY_RETRY = Duration.ofSeconds(5);
+
     private final BlockedQueryRepository blockedQueryRepository;
+    private final QueryApprovalRepository queryApprovalRepository;
     private final QueryEventPublisher queryEventPublisher;
     private final AuditService auditService;
     private final ApprovalProperties approvalProperties;
+    private final ClusterProperties clusterProperties;
+    private final MetricsService metricsService;
+    private final PolicyService policyService;
+    private final ImpactEstimator impactEstimator;
 
     // In-memory store for pending queries with their callbacks
-    private final ConcurrentHashMap<Long, PendingQuery> pendingQueries = new ConcurrentHashMap<>();
+    private final PendingQueryRegistry pendingQueries = new PendingQueryRegistry();
+
+    @Value("${pending-view.change-log-size:4096}")
+    private int changeLogSize;
+
+    // Cluster-wide pending queries served to dashboards, fed by the interceptor:* events
+    private PendingQueryView pendingView;
+    private PendingQueryExpiry expiry;
+
+    @PostConstruct
+    public void init() {
+        this.pendingView = new PendingQueryView(changeLogSize);
+        this.expiry = new PendingQueryExpiry(approvalProperties.getExpiryTick(), this::expirePending);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiry.stop();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedPendingView() {
+        try {
+            List<BlockedQuery> pending = blockedQueryRepository.findByStatusOrderByCreatedAtAsc(Status.PENDING);
+            pending.forEach(query -> {
+                pendingView.seed(PendingQueryItem.from(query));
+                // Left over from a previous run, or held by another node. Another node's queries get a
+                // grace period so their owner expires them first; they only fall to us if it is gone.
+                scheduleExpiry(query, isOwnedHere(query.getOwnerNode())
+                        ? Duration.ZERO
+                        : clusterProperties.getRequestTimeout());
+            });
+            log.info("Pending view seeded with {} queries", pending.size());
+        } catch (DataAccessException e) {
+            log.warn("Could not seed pending view from the database: {}", e.getMessage());
+        }
+    }
 
     @Transactional
-    public void addBlockedQuery(String connId,
+    public void addBlockedQuery(long connectionId,
                                 String queryType,
                                 String sql,
-                                ByteBuf originalMessage,
+                                HeldMessage originalMessage,
                                 Consumer<ByteBuf> forwardCallback,
                                 Consumer<String> rejectCallback) {
 
+        String connId = ConnectionState.label(connectionId);
+
         // Generate nonce for replay protection
         String nonce = UUID.randomUUID().toString();
 
@@ -48,7 +111,8 @@ public class BlockedQueryService {
                 .connId(connId)
                 .queryType(QueryType.valueOf(queryType))
                 .queryPreview(sql.length() > 4000 ? sql.substring(0, 4000) : sql)
-                .requiresPeerApproval(approvalProperties.isPeerEnabled())
+                .requiresPeerApproval(policyService.current().peerApprovalEnabled())
+                .ownerNode(clusterProperties.getNodeId())
                 .nonce(nonce)
                 .build();
 
@@ -57,18 +121,24 @@ public class BlockedQueryService {
         // Store in memory for callbacks
         PendingQuery pending = new PendingQuery(
                 query.getId(),
-                connId,
+                connectionId,
+                query.getCreatedAt(),
                 originalMessage,
                 forwardCallback,
                 rejectCallback,
-                ConcurrentHashMap.newKeySet(),
-                ConcurrentHashMap.newKeySet()
+                query.isRequiresPeerApproval(),
+                new VoteTally()
         );
-        pendingQueries.put(query.getId(), pending);
+        pendingQueries.register(pending);
+        scheduleExpiry(query, Duration.ZERO);
 
         // Publish notification to Redis for real-time updates
         queryEventPublisher.publishBlocked(query);
 
+        // Estimate once the row is committed, so the estimate always has a row to land on
+        long queryId = query.getId();
+        afterCommit(() -> impactEstimator.estimate(sql, estimate -> attachEstimate(queryId, estimate)));
+
         log.info("Blocked query #{} from {}: {}", query.getId(), connId, sql.substring(0, Math.min(50, sql.length())));
     }
 
@@ -86,6 +156,14 @@ public class BlockedQueryService {
             return false;
         }
 
+        // Claim the query; an expiry or another approver may be resolving it concurrently
+        if (!pendingQueries.remove(id, pending)) {
+            log.warn("Approve failed: query #{} was resolved concurrently", id);
+            return false;
+        }
+        expiry.cancel(id);
+        pending.votes().close();
+
         // Update database
         query.setStatus(Status.APPROVED);
         query.setResolvedAt(Instant.now());
@@ -93,8 +171,9 @@ public class BlockedQueryService {
         blockedQueryRepository.save(query);
 
         // Forward the original query to PostgreSQL
-        pending.forwardCallback().accept(pending.originalMessage());
-        pendingQueries.remove(id);
+        pending.forwardCallback().accept(pending.originalMessage().retrieve());
+        metricsService.trackApproved();
+        metricsService.trackPendingAge(Duration.between(pending.createdAt(), query.getResolvedAt()));
 
         // Audit
         auditService.log(approvedBy, "query_approved",
@@ -121,6 +200,14 @@ public class BlockedQueryService {
             return false;
         }
 
+        // Claim the query; an expiry or another approver may be resolving it concurrently
+        if (!pendingQueries.remove(id, pending)) {
+            log.warn("Reject failed: query #{} was resolved concurrently", id);
+            return false;
+        }
+        expiry.cancel(id);
+        pending.votes().close();
+
         // Update database
         query.setStatus(Status.REJECTED);
         query.setResolvedAt(Instant.now());
@@ -130,7 +217,8 @@ public class BlockedQueryService {
         // Send error response to client
         pending.rejectCallback().accept("Query rejected by " + rejectedBy);
         pending.originalMessage().release();
-        pendingQueries.remove(id);
+        metricsService.trackRejected();
+        metricsService.trackPendingAge(Duration.between(pending.createdAt(), query.getResolvedAt()));
 
         // Audit
         auditService.log(rejectedBy, "query_rejected",
@@ -143,6 +231,10 @@ public class BlockedQueryService {
         return true;
     }
 
+    /**
+     * Records a peer vote. The tally decides the threshold crossing atomically, so however
+     * many peers vote at once exactly one of them resolves the query.
+     */
     @Transactional
     public Map<String, Object> addVote(Long id, String username, String vote) {
         PendingQuery pending = pendingQueries.get(id);
@@ -151,8 +243,7 @@ public class BlockedQueryService {
             return Map.of("success", false, "duplicate", false, "error", "Query not found");
         }
 
-        BlockedQuery query = blockedQueryRepository.findById(id).orElse(null);
-        if (query == null || !query.isRequiresPeerApproval()) {
+        if (!pending.requiresPeerApproval()) {
             log.warn("Vote failed: query #{} does not require peer approval", id);
             return Map.of("success", false, "duplicate", false, "error", "Query does not require peer approval");
         }
@@ -164,96 +255,229 @@ public class BlockedQueryService {
             return Map.of("success", false, "duplicate", false, "error", "Invalid vote type");
         }
 
-        // Check if the user has already voted
-        QueryApproval existingApproval = query.getApprovals().stream()
-                .filter(a -> a.getUsername().equals(username))
-                .findFirst()
-                .orElse(null);
-
-        if (existingApproval != null) {
-            // User already voted
-            if (existingApproval.getVote() == voteEnum) {
-                log.info("User {} already voted {} on query #{}. Ignoring duplicate.", username, vote, id);
-                // Return success without DB write to save resources
-                return Map.of(
-                        "success", false,
-                        "duplicate", true,
-                        "error", "You have already voted on this query"
-                );
-            } else {
-                // User changed their vote
-                log.info("User {} changed vote from {} to {} on query #{}",
-                        username, existingApproval.getVote(), voteEnum, id);
-                existingApproval.setVote(voteEnum);
-                existingApproval.setVotedAt(Instant.now());
-            }
-        } else {
-            // New vote
-            QueryApproval approval = QueryApproval.builder()
-                .blockedQuery(query)
-                .username(username)
-                .vote(voteEnum)
-                .build();
-            query.getApprovals().add(approval);
-        }
-
-        // Update In-Memory State (PendingQuery)
-        if (voteEnum == Vote.APPROVE) {
-            pending.approvals().add(username);
-            pending.rejections().remove(username);
-        } else {
-            pending.rejections().add(username);
-            pending.approvals().remove(username);
+        VoteTally.Outcome outcome = pending.votes().cast(username, voteEnum, policyService.current().minVotes());
+        if (outcome.result() == VoteTally.Result.DUPLICATE) {
+            log.info("User {} already voted {} on query #{}. Ignoring duplicate.", username, vote, id);
+            // Return without DB write to save resources
+            return Map.of(
+                    "success", false,
+                    "duplicate", true,
+                    "error", "You have already voted on this query"
+            );
         }
-
-        // Update counts
-        query.setApprovalCount(pending.approvals().size());
-        query.setRejectionCount(pending.rejections().size());
-
-        // Save changes
-        blockedQueryRepository.save(query);
-
-        // Check threshold
-        if (pending.approvals().size() >= approvalProperties.getMinVotes()) {
-            approveQuery(id, "Peer Approval System");
-            return Map.of("success", true, "duplicate", false, "autoResolved", true, "action", "approved");
+        if (outcome.result() == VoteTally.Result.CLOSED) {
+            log.warn("Vote failed: query #{} is already being resolved", id);
+            return Map.of("success", false, "duplicate", false, "error", "Query already resolved");
         }
 
-        if (pending.rejections().size() >= approvalProperties.getMinVotes()) {
-            rejectQuery(id, "Peer Approval System");
-            return Map.of("success", true, "duplicate", false, "autoResolved", true, "action", "rejected");
+        // Upsert covers both a first vote and a changed one
+        queryApprovalRepository.upsertVote(id, username, voteEnum.name(), Instant.now());
+        blockedQueryRepository.updateVoteCounts(id, outcome.approvals(), outcome.rejections(), outcome.version());
+
+        // Only the vote that crossed the threshold gets a resolution
+        if (outcome.resolution() != null) {
+            boolean approve = outcome.resolution() == Vote.APPROVE;
+            boolean resolved;
+            try {
+                resolved = approve ? approveQuery(id, PEER_ACTOR) : rejectQuery(id, PEER_ACTOR);
+            } catch (RuntimeException e) {
+                reopenVotes(id, pending);
+                throw e;
+            }
+            if (!resolved) {
+                String error = reopenVotes(id, pending)
+                        ? "Query could not be " + (approve ? "approved" : "rejected") + ", vote again to retry"
+                        : "Query already resolved";
+                return Map.of("success", false, "duplicate", false, "error", error);
+            }
+            return Map.of("success", true, "duplicate", false, "autoResolved", true,
+                    "action", approve ? "approved" : "rejected");
         }
 
         // Publish vote notification
-        queryEventPublisher.publishVote(id, username, vote);
+        queryEventPublisher.publishVote(id, username, vote, outcome.approvals(), outcome.rejections());
 
         return Map.of(
                 "success", true,
                 "duplicate", false,
                 "autoResolved", false,
-                "approvalCount", pending.approvals().size(),
-                "rejectionCount", pending.rejections().size()
+                "approvalCount", outcome.approvals(),
+                "rejectionCount", outcome.rejections()
         );
     }
 
-    public List<BlockedQuery> getPendingQueries() {
-        return blockedQueryRepository.findByStatusOrderByCreatedAtAsc(Status.PENDING);
+    /**
+     * Reopens the votes of a query whose peer resolution did not go through, if it is still
+     * held here; otherwise an admin, the expiry or the connection closing resolved it meanwhile.
+     */
+    private boolean reopenVotes(long id, PendingQuery pending) {
+        if (pendingQueries.get(id) != pending) {
+            return false;
+        }
+        pending.votes().reopen();
+        log.warn("Peer resolution of query #{} failed, votes reopened", id);
+        return true;
+    }
+
+    /** Whether this node's proxy holds the client connection of the query. */
+    public boolean isHeldLocally(long id) {
+        return pendingQueries.get(id) != null;
+    }
+
+    /**
+     * Node holding the query's client connection, from the pending view or else the database.
+     * Null if the query is unknown or was blocked before ownership was recorded.
+     */
+    public String ownerOf(long id) {
+        PendingQueryItem item = pendingView.get(id);
+        if (item != null && item.ownerNode() != null && !item.ownerNode().isEmpty()) {
+            return item.ownerNode();
+        }
+        return blockedQueryRepository.findById(id).map(BlockedQuery::getOwnerNode).orElse(null);
+    }
+
+    public boolean isOwnedHere(String ownerNode) {
+        return ownerNode == null || ownerNode.isEmpty() || ownerNode.equals(clusterProperties.getNodeId());
+    }
+
+    public List<PendingQueryItem> getPendingQueries() {
+        return pendingView.snapshot().upserted();
+    }
+
+    public PendingQueryChanges getPendingSnapshot() {
+        return pendingView.snapshot();
+    }
+
+    public PendingQueryChanges getPendingChanges(String epoch, long since) {
+        return pendingView.changesSince(epoch, since);
+    }
+
+    /**
+     * Applies a query event to the pending view. Returns the view's sequence afterwards,
+     * which dashboards compare against their own to decide whether to fetch changes.
+     */
+    public long applyEvent(QueryEvent event) {
+        return switch (event) {
+            // A blocked event never changes afterwards, so a repeat must not reset the vote counts
+            case QueryEvent.Blocked blocked -> blocked.status() == Status.PENDING
+                    ? pendingView.seed(new PendingQueryItem(
+                            blocked.id(),
+                            blocked.connId(),
+                            blocked.queryType(),
+                            blocked.queryPreview(),
+                            blocked.status(),
+                            blocked.createdAt(),
+                            blocked.requiresPeerApproval(),
+                            0,
+                            0,
+                            blocked.ownerNode(),
+                            null,
+                            null))
+                    : pendingView.remove(blocked.id());
+            case QueryEvent.Estimated estimated -> pendingView.update(estimated.id(),
+                    item -> item.withEstimate(estimated.estimatedRows(), estimated.estimatedCost()));
+            case QueryEvent.Resolved resolved -> pendingView.remove(resolved.id());
+            case QueryEvent.VoteCast vote -> pendingView.update(vote.queryId(),
+                    item -> item.withVotes(vote.approvalCount(), vote.rejectionCount()));
+        };
+    }
+
+    private void attachEstimate(long queryId, ImpactEstimate estimate) {
+        try {
+            if (blockedQueryRepository.updateEstimate(queryId, estimate.estimatedRows(), estimate.estimatedCost()) > 0) {
+                queryEventPublisher.publishEstimate(queryId, estimate.estimatedRows(), estimate.estimatedCost());
+                log.debug("Query #{} estimated at {} rows, cost {}", queryId, estimate.estimatedRows(), estimate.estimatedCost());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not store the estimate for query #{}: {}", queryId, e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
     }
 
     public List<BlockedQuery> getAllQueries() {
         return blockedQueryRepository.findTop100ByOrderByCreatedAtDesc();
     }
 
-    public void cleanupConnection(String connId) {
-        pendingQueries.entrySet().removeIf(entry -> {
-            if (entry.getValue().connId().equals(connId)) {
-                entry.getValue().originalMessage().release();
-                log.info("Cleaned up pending query #{} for disconnected connection {}",
-                        entry.getKey(), connId);
-                return true;
+    private void scheduleExpiry(BlockedQuery query, Duration grace) {
+        Duration timeout = approvalProperties.getTimeout();
+        if (timeout.isZero() || timeout.isNegative()) {
+            return;
+        }
+        Instant deadline = query.getCreatedAt().plus(timeout).plus(grace);
+        expiry.schedule(query.getId(), Duration.between(Instant.now(), deadline));
+    }
+
+    /**
+     * Resolves a batch of timed-out queries with the configured expiry action.
+     * The rows are closed first, in a single UPDATE; only the ids it closed are answered,
+     * announced and audited, since the others were resolved meanwhile by a vote or another
+     * node. Ids without an in-memory entry belong to connections that are already gone and
+     * only needed their row closed. If the UPDATE fails, the batch is tried again later.
+     */
+    private void expirePending(List<Long> ids) {
+        boolean approve = approvalProperties.getExpiryAction() == ApprovalProperties.ExpiryAction.APPROVE;
+        Status status = approve ? Status.APPROVED : Status.EXPIRED;
+        Instant now = Instant.now();
+
+        List<Long> closed;
+        try {
+            closed = blockedQueryRepository.resolvePending(ids, status.name(), now, EXPIRY_ACTOR);
+        } catch (DataAccessException e) {
+            log.error("Failed to close {} expired queries in the database, retrying in {}: {}",
+                    ids.size(), EXPIRY_RETRY, e.getMessage());
+            ids.forEach(id -> expiry.schedule(id, EXPIRY_RETRY));
+            return;
+        }
+        if (closed.isEmpty()) {
+            // Another node got there first
+            return;
+        }
+
+        int answered = 0;
+        for (Long id : closed) {
+            PendingQuery pending = pendingQueries.remove(id);
+            if (pending == null) {
+                continue;
             }
-            return false;
-        });
+            pending.votes().close();
+            if (approve) {
+                pending.forwardCallback().accept(pending.originalMessage().retrieve());
+            } else {
+                pending.rejectCallback().accept("Query approval timed out after " + approvalProperties.getTimeout());
+                pending.originalMessage().release();
+            }
+            metricsService.trackExpired(approve);
+            metricsService.trackPendingAge(Duration.between(pending.createdAt(), now));
+            answered++;
+        }
+
+        closed.forEach(id -> queryEventPublisher.publishResolved(id, status, EXPIRY_ACTOR));
+        auditService.log(EXPIRY_ACTOR, "query_expired",
+                String.format("%d queries %s after %s: %s", closed.size(),
+                        approve ? "auto-approved" : "expired", approvalProperties.getTimeout(), closed), null);
+
+        log.info("Expired {} pending queries ({} with live connections, action {})",
+                closed.size(), answered, approvalProperties.getExpiryAction());
+    }
+
+    public void cleanupConnection(long connectionId) {
+        for (PendingQuery pending : pendingQueries.removeConnection(connectionId)) {
+            pending.originalMessage().release();
+            log.info("Cleaned up pending query #{} for disconnected connection {}",
+                    pending.id(), ConnectionState.label(connectionId));
+        }
     }
 
     public Map<String, Object> getVoteStatus(Long id) {
@@ -263,10 +487,10 @@ public class BlockedQueryService {
         }
         return Map.of(
                 "id", id,
-                "approvals", new ArrayList<>(pending.approvals()),
-                "rejections", new ArrayList<>(pending.rejections()),
-                "approvalCount", pending.approvals().size(),
-                "rejectionCount", pending.rejections().size()
+                "approvals", pending.votes().voters(Vote.APPROVE),
+                "rejections", pending.votes().voters(Vote.REJECT),
+                "approvalCount", pending.votes().approvals(),
+                "rejectionCount", pending.votes().rejections()
         );
     }
 }
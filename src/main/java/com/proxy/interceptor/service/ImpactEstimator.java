@@ -0,0 +1,209 @@
+package com.proxy.interceptor.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proxy.interceptor.config.ExplainProperties;
+import com.proxy.interceptor.dto.ImpactEstimate;
+import com.proxy.interceptor.util.SqlFingerprint;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Estimates what a blocked statement would touch by running EXPLAIN (never ANALYZE) on a
+ * small connection pool of its own, so approvers see rows and cost instead of just the text.
+ * <p>
+ * Nothing here runs on the proxy's path: estimates are computed on dedicated threads with a
+ * bounded queue, and when the queue is full the estimate is skipped rather than waited for.
+ * Connection waits and statement time are capped. Estimates are cached by
+ * {@link SqlFingerprint}, and concurrent requests for one fingerprint share a single EXPLAIN.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImpactEstimator {
+
+    // Statements EXPLAIN accepts; DDL and utility commands are never estimated
+    private static final Set<String> EXPLAINABLE = Set.of("select", "insert", "update", "delete", "with", "merge", "values", "table");
+
+    private final ExplainProperties explainProperties;
+    private final MetricsService metricsService;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong explained = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private HikariDataSource dataSource;
+    private ThreadPoolExecutor executor;
+    private AsyncCache<String, ImpactEstimate> cache;
+
+    @PostConstruct
+    public void init() {
+        if (!explainProperties.isEnabled()) {
+            return;
+        }
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("explain");
+        config.setJdbcUrl(explainProperties.getUrl());
+        config.setUsername(explainProperties.getUsername());
+        config.setPassword(explainProperties.getPassword());
+        config.setMaximumPoolSize(explainProperties.getPoolSize());
+        config.setMinimumIdle(0);
+        config.setConnectionTimeout(explainProperties.getConnectionTimeout().toMillis());
+        // Read-only and never committed: even if something other than a plan got through, it could not write
+        config.setReadOnly(true);
+        config.setAutoCommit(false);
+        config.setConnectionInitSql("SET statement_timeout = " + explainProperties.getStatementTimeout().toMillis());
+        // The server enforces the statement timeout; these cover a network that stops answering
+        long socketSeconds = explainProperties.getStatementTimeout().toSeconds() + 1;
+        config.addDataSourceProperty("connectTimeout", socketSeconds);
+        config.addDataSourceProperty("socketTimeout", socketSeconds);
+        // Start even if the database is unreachable; estimates fail until it is back
+        config.setInitializationFailTimeout(-1);
+        this.dataSource = new HikariDataSource(config);
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                explainProperties.getPoolSize(), explainProperties.getPoolSize(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(explainProperties.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "explain-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(explainProperties.getCacheSize())
+                .expireAfterWrite(explainProperties.getCacheTtl())
+                .recordStats()
+                .buildAsync();
+
+        metricsService.registerGauges("explain", () -> {
+            Map<String, Object> gauges = new LinkedHashMap<>();
+            gauges.put("requested", requested.get());
+            gauges.put("explained", explained.get());
+            gauges.put("failed", failed.get());
+            gauges.put("skipped", skipped.get());
+            gauges.put("cacheHitRate", cache.synchronous().stats().hitRate());
+            gauges.put("active", executor.getActiveCount());
+            gauges.put("queued", executor.getQueue().size());
+            return gauges;
+        });
+        log.info("EXPLAIN estimates enabled: {} connection(s), statement timeout {}",
+                explainProperties.getPoolSize(), explainProperties.getStatementTimeout());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Estimates {@code sql} in the background and hands the result to {@code onEstimate} on an
+     * estimator thread: the one that ran the EXPLAIN, or for a cached estimate a queued task.
+     * Returns at once; statements that cannot be explained, estimates that fail and requests
+     * beyond the queue never call back, and the last are counted as skipped.
+     */
+    public void estimate(String sql, Consumer<ImpactEstimate> onEstimate) {
+        if (dataSource == null) {
+            return;
+        }
+        SqlFingerprint fingerprint = SqlFingerprint.of(sql);
+        // One statement only: anything after a ';' would run as a statement of its own
+        if (fingerprint.statements() != 1 || !EXPLAINABLE.contains(firstWord(fingerprint.text()))) {
+            return;
+        }
+        requested.incrementAndGet();
+
+        CompletableFuture<ImpactEstimate> future;
+        try {
+            future = cache.get(fingerprint.text(), (key, ignored) ->
+                    CompletableFuture.supplyAsync(() -> explain(sql, fingerprint.hasParameters()), executor));
+        } catch (RejectedExecutionException e) {
+            skipped.incrementAndGet();
+            log.debug("EXPLAIN queue full, skipping estimate");
+            return;
+        }
+        Thread caller = Thread.currentThread();
+        future.whenComplete((estimate, error) -> {
+            if (error != null) {
+                log.debug("EXPLAIN failed: {}", error.getMessage());
+            } else if (Thread.currentThread() != caller) {
+                onEstimate.accept(estimate);
+            } else {
+                // Already cached, so this runs on the caller's thread (an event loop): hand it over
+                try {
+                    executor.execute(() -> onEstimate.accept(estimate));
+                } catch (RejectedExecutionException e) {
+                    skipped.incrementAndGet();
+                    log.debug("EXPLAIN queue full, dropping cached estimate");
+                }
+            }
+        });
+    }
+
+    private ImpactEstimate explain(String sql, boolean generic) {
+        // Bind parameters are unknown here; GENERIC_PLAN (PostgreSQL 16+) plans without them
+        String explain = "EXPLAIN (FORMAT JSON" + (generic ? ", GENERIC_PLAN" : "") + ") " + sql;
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(explain)) {
+                if (!result.next()) {
+                    throw new IllegalStateException("EXPLAIN returned no plan");
+                }
+                ImpactEstimate estimate = parse(result.getString(1));
+                explained.incrementAndGet();
+                return estimate;
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException | RuntimeException e) {
+            failed.incrementAndGet();
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    static ImpactEstimate parse(String json) {
+        JsonNode plan = JsonMapper.shared().readTree(json).path(0).path("Plan");
+        double cost = plan.path("Total Cost").asDouble();
+        // A write's top node is ModifyTable, which returns nothing; the rows it changes come from below
+        JsonNode rows = plan;
+        while ("ModifyTable".equals(rows.path("Node Type").asString()) && rows.path("Plans").size() > 0) {
+            rows = rows.path("Plans").path(0);
+        }
+        return new ImpactEstimate(rows.path("Plan Rows").asLong(), cost);
+    }
+
+    private static String firstWord(String text) {
+        int end = 0;
+        while (end < text.length() && Character.isLetter(text.charAt(end))) end++;
+        return text.substring(0, end);
+    }
+}
@@ -4,14 +4,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class MetricsService {
 
+    // Upper bounds of the pending-age histogram buckets; the last bucket is unbounded
+    private static final Duration[] PENDING_AGE_BOUNDS = {
+            Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(1),
+            Duration.ofMinutes(5), Duration.ofMinutes(15), Duration.ofHours(1)
+    };
+
     private final AtomicLong totalConnections = new AtomicLong(0);
     private final AtomicLong activeConnections = new AtomicLong(0);
     private final AtomicLong totalQueries = new AtomicLong(0);
@@ -19,8 +29,27 @@ public class MetricsService {
     private final AtomicLong approvedQueries = new AtomicLong(0);
     private final AtomicLong rejectedQueries = new AtomicLong(0);
     private final AtomicLong errors = new AtomicLong(0);
+    private final AtomicLong authCacheHits = new AtomicLong(0);
+    private final AtomicLong authCacheMisses = new AtomicLong(0);
+    private final AtomicLong authCacheInvalidations = new AtomicLong(0);
+    private final AtomicLong replayLocalDuplicates = new AtomicLong(0);
+    private final AtomicLong replayRedisDuplicates = new AtomicLong(0);
+    private final AtomicLong replayRedisAccepted = new AtomicLong(0);
+    private final AtomicLong replayRedisBatches = new AtomicLong(0);
+    private final AtomicLong replayRedisCommands = new AtomicLong(0);
+    private final AtomicLong expiredRejected = new AtomicLong(0);
+    private final AtomicLong expiredApproved = new AtomicLong(0);
+    private final AtomicLong ruleEvaluations = new AtomicLong(0);
+    private final AtomicLong ruleDecisions = new AtomicLong(0);
+    private final AtomicLong ruleNanos = new AtomicLong(0);
+    private final AtomicLong ruleMaxNanos = new AtomicLong(0);
+    private final AtomicLongArray pendingAgeBuckets = new AtomicLongArray(PENDING_AGE_BOUNDS.length + 1);
 
     private final ConcurrentHashMap<String, AtomicLong> queryTypeCount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> reapedConnections = new ConcurrentHashMap<>();
+
+    // Point-in-time values owned by other components, read on each snapshot
+    private final Map<String, Supplier<Map<String, Object>>> gauges = new ConcurrentHashMap<>();
 
     public void trackConnection() {
         totalConnections.incrementAndGet();
@@ -36,6 +65,11 @@ public class MetricsService {
         queryTypeCount.computeIfAbsent(type, k -> new AtomicLong(0)).incrementAndGet();
     }
 
+    /** Records a connection the proxy closed for being idle, by reason. */
+    public void trackReaped(String reason) {
+        reapedConnections.computeIfAbsent(reason, k -> new AtomicLong(0)).incrementAndGet();
+    }
+
     public void trackBlocked() {
         blockedQueries.incrementAndGet();
     }
@@ -52,16 +86,128 @@ public class MetricsService {
         errors.incrementAndGet();
     }
 
+    public void trackAuthCacheHit() {
+        authCacheHits.incrementAndGet();
+    }
+
+    public void trackAuthCacheMiss() {
+        authCacheMisses.incrementAndGet();
+    }
+
+    public void trackAuthCacheInvalidation() {
+        authCacheInvalidations.incrementAndGet();
+    }
+
+    public void trackReplayLocalDuplicate() {
+        replayLocalDuplicates.incrementAndGet();
+    }
+
+    public void trackReplayRedisDuplicate() {
+        replayRedisDuplicates.incrementAndGet();
+    }
+
+    public void trackReplayRedisAccepted() {
+        replayRedisAccepted.incrementAndGet();
+    }
+
+    public void trackReplayRedisBatch(int commands) {
+        replayRedisBatches.incrementAndGet();
+        replayRedisCommands.addAndGet(commands);
+    }
+
+    public void trackExpired(boolean autoApproved) {
+        (autoApproved ? expiredApproved : expiredRejected).incrementAndGet();
+    }
+
+    /** Records how long a blocked query waited before it was resolved, however it was resolved. */
+    public void trackPendingAge(Duration age) {
+        int bucket = 0;
+        while (bucket < PENDING_AGE_BOUNDS.length && age.compareTo(PENDING_AGE_BOUNDS[bucket]) > 0) {
+            bucket++;
+        }
+        pendingAgeBuckets.incrementAndGet(bucket);
+    }
+
+    /** Records one table rule evaluation and whether the rules decided the statement. */
+    public void trackRuleEvaluation(long nanos, boolean decided) {
+        ruleEvaluations.incrementAndGet();
+        if (decided) {
+            ruleDecisions.incrementAndGet();
+        }
+        ruleNanos.addAndGet(nanos);
+        ruleMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void registerGauges(String name, Supplier<Map<String, Object>> supplier) {
+        gauges.put(name, supplier);
+    }
+
     public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("totalConnections", totalConnections.get());
+        metrics.put("activeConnections", activeConnections.get());
+        metrics.put("totalQueries", totalQueries.get());
+        metrics.put("blockedQueries", blockedQueries.get());
+        metrics.put("approvedQueries", approvedQueries.get());
+        metrics.put("rejectedQueries", rejectedQueries.get());
+        metrics.put("errors", errors.get());
+        metrics.put("queryTypes", new ConcurrentHashMap<>(queryTypeCount));
+        metrics.put("reapedConnections", new ConcurrentHashMap<>(reapedConnections));
+        metrics.put("authCache", getAuthCacheMetrics());
+        metrics.put("replayProtection", getReplayProtectionMetrics());
+        metrics.put("expiry", getExpiryMetrics());
+        metrics.put("tableRules", getTableRuleMetrics());
+        gauges.forEach((name, supplier) -> metrics.put(name, supplier.get()));
+        return metrics;
+    }
+
+    private Map<String, Object> getAuthCacheMetrics() {
+        long hits = authCacheHits.get();
+        long misses = authCacheMisses.get();
+        long lookups = hits + misses;
+        return Map.of(
+                "hits", hits,
+                "misses", misses,
+                "invalidations", authCacheInvalidations.get(),
+                "hitRate", lookups == 0 ? 0.0 : (double) hits / lookups
+        );
+    }
+
+    private Map<String, Object> getReplayProtectionMetrics() {
+        long batches = replayRedisBatches.get();
+        long commands = replayRedisCommands.get();
+        return Map.of(
+                "localDuplicates", replayLocalDuplicates.get(),
+                "redisDuplicates", replayRedisDuplicates.get(),
+                "redisAccepted", replayRedisAccepted.get(),
+                "redisPipelines", batches,
+                "avgPipelineSize", batches == 0 ? 0.0 : (double) commands / batches
+        );
+    }
+
+    private Map<String, Object> getTableRuleMetrics() {
+        long evaluations = ruleEvaluations.get();
+        return Map.of(
+                "evaluations", evaluations,
+                "decided", ruleDecisions.get(),
+                "avgNanos", evaluations == 0 ? 0.0 : (double) ruleNanos.get() / evaluations,
+                "maxNanos", ruleMaxNanos.get()
+        );
+    }
+
+    private Map<String, Object> getExpiryMetrics() {
+        // Cumulative counts per bucket, keyed by upper bound ("le" as in Prometheus histograms)
+        Map<String, Long> ageHistogram = new LinkedHashMap<>();
+        long cumulative = 0;
+        for (int i = 0; i < pendingAgeBuckets.length(); i++) {
+            cumulative += pendingAgeBuckets.get(i);
+            String bound = i < PENDING_AGE_BOUNDS.length ? PENDING_AGE_BOUNDS[i].toString() : "+Inf";
+            ageHistogram.put("le " + bound, cumulative);
+        }
         return Map.of(
-                "totalConnections", totalConnections.get(),
-                "activeConnections", activeConnections.get(),
-                "totalQueries", totalQueries.get(),
-                "blockedQueries", blockedQueries.get(),
-                "approvedQueries", approvedQueries.get(),
-                "rejectedQueries", rejectedQueries.get(),
-                "errors", errors.get(),
-                "queryTypes", new ConcurrentHashMap<>(queryTypeCount)
+                "expiredRejected", expiredRejected.get(),
+                "expiredApproved", expiredApproved.get(),
+                "pendingAge", ageHistogram
         );
     }
 
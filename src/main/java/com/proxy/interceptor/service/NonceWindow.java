@@ -0,0 +1,84 @@
+package com.proxy.interceptor.service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Local, time-bucketed set of recently seen nonces.
+ * The ring holds enough buckets to cover the whole replay window; a bucket is
+ * recycled (dropped wholesale) once its time slot has aged out, so no per-entry
+ * expiry bookkeeping is needed.
+ */
+class NonceWindow {
+
+    private record Bucket(long epoch, Set<String> nonces) {}
+
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    NonceWindow(Duration window, int bucketCount) {
+        if (bucketCount < 1) {
+            throw new IllegalArgumentException("bucketCount must be positive");
+        }
+        this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+        // One extra bucket so a nonce is remembered for at least the full window
+        this.buckets = new AtomicReferenceArray<>(bucketCount + 1);
+    }
+
+    /*
+    * Records the nonce, returning false if it was already seen inside the window.
+    * Concurrent callers with the same nonce race on a single set insert, so exactly one wins.
+     */
+    boolean addIfAbsent(String nonce, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int size = buckets.length();
+
+        // Every live bucket but the current one, including any ahead of now if the clock went back
+        for (int i = 0; i < size; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch() != epoch && bucket.epoch() > epoch - size
+                    && bucket.nonces().contains(nonce)) {
+                return false;
+            }
+        }
+        return currentBucket(epoch, size).nonces().add(nonce);
+    }
+
+    /*
+    * Forgets a nonce, used when the authoritative check could not be completed.
+     */
+    void remove(String nonce, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int size = buckets.length();
+        for (int i = 0; i < size; i++) {
+            Bucket bucket = buckets.get(index(epoch - i, size));
+            if (bucket != null) {
+                bucket.nonces().remove(nonce);
+            }
+        }
+    }
+
+    private Bucket currentBucket(long epoch, int size) {
+        int index = index(epoch, size);
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch() == epoch) {
+                return bucket;
+            }
+            if (bucket != null && bucket.epoch() > epoch) {
+                // Clock moved backwards past a rotation; keep using the newer bucket
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch, ConcurrentHashMap.newKeySet());
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static int index(long epoch, int size) {
+        return (int) Math.floorMod(epoch, (long) size);
+    }
+}
@@ -0,0 +1,100 @@
+package com.proxy.interceptor.service;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Deadlines for pending queries on a hashed timing wheel.
+ * Scheduling and cancelling are O(1) no matter how many queries are waiting. Queries
+ * that fall due together are handed to the callback as one batch, on a worker thread
+ * so the wheel keeps ticking while the batch is resolved.
+ */
+@Slf4j
+class PendingQueryExpiry {
+
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private final HashedWheelTimer timer;
+    private final ExecutorService worker;
+    private final Consumer<List<Long>> onExpired;
+
+    private final ConcurrentHashMap<Long, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> due = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    PendingQueryExpiry(Duration tick, Consumer<List<Long>> onExpired) {
+        this.onExpired = onExpired;
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("pending-query-timer", true),
+                Math.max(1, tick.toMillis()), TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+        this.worker = Executors.newSingleThreadExecutor(new DefaultThreadFactory("pending-query-expiry", true));
+    }
+
+    void schedule(long id, Duration delay) {
+        Timeout timeout = timer.newTimeout(t -> expire(id, t), Math.max(0, delay.toMillis()), TimeUnit.MILLISECONDS);
+        Timeout previous = timeouts.put(id, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+        // A short delay may already have fired before the put
+        if (timeout.isExpired()) {
+            timeouts.remove(id, timeout);
+        }
+    }
+
+    void cancel(long id) {
+        Timeout timeout = timeouts.remove(id);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    int scheduled() {
+        return timeouts.size();
+    }
+
+    void stop() {
+        timer.stop();
+        worker.shutdown();
+    }
+
+    private void expire(long id, Timeout timeout) {
+        timeouts.remove(id, timeout);
+        due.add(id);
+        if (drainScheduled.compareAndSet(false, true)) {
+            worker.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        // Reset first: ids due from here on schedule their own drain
+        drainScheduled.set(false);
+
+        List<Long> batch = new ArrayList<>();
+        Long id;
+        while ((id = due.poll()) != null) {
+            batch.add(id);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            onExpired.accept(batch);
+        } catch (Exception e) {
+            log.error("Failed to expire {} pending queries: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.dto.PendingQuery;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pending queries by id, with a secondary index from connection to its query ids.
+ * <p>
+ * The id table is open-addressed on primitive long keys (the key is the entry's own id,
+ * so a slot is read in one atomic load). Lookups never lock: writers mutate slots
+ * atomically and publish a rebuilt table through a volatile field when it grows.
+ * Writers (register, remove, connection cleanup) serialize on the registry's monitor;
+ * a disconnect touches only that connection's queries instead of scanning the table.
+ */
+class PendingQueryRegistry {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<Object> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+
+    // Guarded by "this"
+    private final LongObjectHashMap<long[]> byConnection = new LongObjectHashMap<>();
+    private int size;
+    private int used; // live entries + tombstones
+
+    PendingQuery get(long id) {
+        AtomicReferenceArray<Object> t = table;
+        int mask = t.length() - 1;
+        for (int i = index(id, mask); ; i = (i + 1) & mask) {
+            Object slot = t.get(i);
+            if (slot == null) {
+                return null;
+            }
+            if (slot != TOMBSTONE && ((PendingQuery) slot).id() == id) {
+                return (PendingQuery) slot;
+            }
+        }
+    }
+
+    synchronized void register(PendingQuery query) {
+        if ((used + 1) * 2 > table.length()) {
+            rebuild(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size + 1) * 4)));
+        }
+        AtomicReferenceArray<Object> t = table;
+        int mask = t.length() - 1;
+        int free = -1;
+        for (int i = index(query.id(), mask); ; i = (i + 1) & mask) {
+            Object slot = t.get(i);
+            if (slot == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                size++;
+                t.set(free, query);
+                break;
+            }
+            if (slot == TOMBSTONE) {
+                if (free < 0) free = i;
+            } else if (((PendingQuery) slot).id() == query.id()) {
+                unindex((PendingQuery) slot);
+                t.set(i, query);
+                break;
+            }
+        }
+        long[] ids = byConnection.get(connectionKey(query.connectionId()));
+        if (ids == null) {
+            byConnection.put(connectionKey(query.connectionId()), new long[]{query.id()});
+        } else {
+            long[] grown = Arrays.copyOf(ids, ids.length + 1);
+            grown[ids.length] = query.id();
+            byConnection.put(connectionKey(query.connectionId()), grown);
+        }
+    }
+
+    /** Removes the query only if it is still {@code expected}; exactly one concurrent caller wins. */
+    synchronized boolean remove(long id, PendingQuery expected) {
+        int i = slotOf(id);
+        if (i < 0 || table.get(i) != expected) {
+            return false;
+        }
+        clear(i, expected);
+        return true;
+    }
+
+    synchronized PendingQuery remove(long id) {
+        int i = slotOf(id);
+        if (i < 0) {
+            return null;
+        }
+        PendingQuery query = (PendingQuery) table.get(i);
+        clear(i, query);
+        return query;
+    }
+
+    /** Removes and returns every query of the connection. */
+    synchronized List<PendingQuery> removeConnection(long connectionId) {
+        long[] ids = byConnection.remove(connectionKey(connectionId));
+        if (ids == null) {
+            return List.of();
+        }
+        List<PendingQuery> removed = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            int i = slotOf(id);
+            if (i >= 0) {
+                PendingQuery query = (PendingQuery) table.get(i);
+                table.set(i, TOMBSTONE);
+                size--;
+                removed.add(query);
+            }
+        }
+        return removed;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int slotOf(long id) {
+        AtomicReferenceArray<Object> t = table;
+        int mask = t.length() - 1;
+        for (int i = index(id, mask); ; i = (i + 1) & mask) {
+            Object slot = t.get(i);
+            if (slot == null) {
+                return -1;
+            }
+            if (slot != TOMBSTONE && ((PendingQuery) slot).id() == id) {
+                return i;
+            }
+        }
+    }
+
+    private void clear(int slot, PendingQuery query) {
+        table.set(slot, TOMBSTONE);
+        size--;
+        unindex(query);
+    }
+
+    private void unindex(PendingQuery query) {
+        long[] ids = byConnection.get(connectionKey(query.connectionId()));
+        if (ids == null) {
+            return;
+        }
+        int at = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == query.id()) {
+                at = i;
+                break;
+            }
+        }
+        if (at < 0) {
+            return;
+        }
+        if (ids.length == 1) {
+            byConnection.remove(connectionKey(query.connectionId()));
+            return;
+        }
+        long[] shrunk = new long[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, at);
+        System.arraycopy(ids, at + 1, shrunk, at, ids.length - at - 1);
+        byConnection.put(connectionKey(query.connectionId()), shrunk);
+    }
+
+    /** Copies live entries into a fresh table (dropping tombstones) and publishes it. */
+    private void rebuild(int capacity) {
+        AtomicReferenceArray<Object> old = table;
+        AtomicReferenceArray<Object> fresh = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length(); i++) {
+            Object slot = old.get(i);
+            if (slot != null && slot != TOMBSTONE) {
+                int j = index(((PendingQuery) slot).id(), mask);
+                while (fresh.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                fresh.set(j, slot);
+            }
+        }
+        used = size;
+        table = fresh;
+    }
+
+    private static int index(long id, int mask) {
+        long h = mix(id);
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /*
+     * Connection ids are sequential, and LongObjectHashMap probes linearly on the raw key,
+     * so they would pack into one long run that every removal has to shift. Multiplying by
+     * an odd constant is a bijection, so the scrambled key is still unique.
+     */
+    private static long connectionKey(long connectionId) {
+        return mix(connectionId);
+    }
+
+    private static long mix(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+}
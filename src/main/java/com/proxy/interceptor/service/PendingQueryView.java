@@ -0,0 +1,143 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.dto.PendingQueryChanges;
+import com.proxy.interceptor.dto.PendingQueryItem;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory view of the pending queries, versioned by a sequence number that grows
+ * with every change. The most recent changes are kept so clients can catch up from
+ * the sequence they last saw; anything older, or from a different epoch (a restarted
+ * node), gets the full view instead.
+ * <p>
+ * Every operation is idempotent, so the same event may be applied more than once.
+ * Resolved ids are remembered for a while so a late or replayed event cannot bring
+ * a query back.
+ */
+class PendingQueryView {
+
+    private record Change(long sequence, long id, PendingQueryItem item) {}
+
+    private final String epoch = Long.toHexString(System.currentTimeMillis())
+            + Integer.toHexString(new Random().nextInt(0x10000));
+    private final int changeLogSize;
+
+    // All state below is guarded by "this"
+    private final Map<Long, PendingQueryItem> items = new HashMap<>();
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+    private final Set<Long> resolved;
+    private long sequence;
+
+    PendingQueryView(int changeLogSize) {
+        if (changeLogSize < 1) {
+            throw new IllegalArgumentException("changeLogSize must be positive");
+        }
+        this.changeLogSize = changeLogSize;
+        this.resolved = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > changeLogSize;
+            }
+        });
+    }
+
+    String epoch() {
+        return epoch;
+    }
+
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    synchronized PendingQueryItem get(long id) {
+        return items.get(id);
+    }
+
+    /** Adds or replaces a pending query. Returns the view's sequence afterwards. */
+    synchronized long upsert(PendingQueryItem item) {
+        if (!resolved.contains(item.id()) && !item.equals(items.get(item.id()))) {
+            items.put(item.id(), item);
+            record(item.id(), item);
+        }
+        return sequence;
+    }
+
+    /** Like {@link #upsert} but never replaces an entry that is already present. */
+    synchronized long seed(PendingQueryItem item) {
+        if (!items.containsKey(item.id())) {
+            upsert(item);
+        }
+        return sequence;
+    }
+
+    /** Applies {@code update} to a query still in the view; unknown ids are ignored. */
+    synchronized long update(long id, UnaryOperator<PendingQueryItem> update) {
+        PendingQueryItem current = items.get(id);
+        if (current != null) {
+            upsert(update.apply(current));
+        }
+        return sequence;
+    }
+
+    synchronized long remove(long id) {
+        resolved.add(id);
+        if (items.remove(id) != null) {
+            record(id, null);
+        }
+        return sequence;
+    }
+
+    synchronized PendingQueryChanges snapshot() {
+        return new PendingQueryChanges(epoch, sequence, true, sortedItems(), List.of());
+    }
+
+    /**
+     * Changes after {@code since}, collapsed to the latest state per query.
+     * Falls back to a full {@link #snapshot()} when the log no longer reaches back that far.
+     */
+    synchronized PendingQueryChanges changesSince(String clientEpoch, long since) {
+        long oldestKnown = changes.isEmpty() ? sequence : changes.peekFirst().sequence() - 1;
+        if (!epoch.equals(clientEpoch) || since < oldestKnown || since > sequence) {
+            return snapshot();
+        }
+
+        Map<Long, PendingQueryItem> latest = new LinkedHashMap<>();
+        Iterator<Change> it = changes.descendingIterator();
+        while (it.hasNext()) {
+            Change change = it.next();
+            if (change.sequence() <= since) break;
+            // Not putIfAbsent: a removal is stored as null, which it would overwrite
+            if (!latest.containsKey(change.id())) {
+                latest.put(change.id(), change.item());
+            }
+        }
+
+        List<PendingQueryItem> upserted = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        latest.forEach((id, item) -> {
+            if (item != null) upserted.add(item);
+            else removed.add(id);
+        });
+        upserted.sort(ORDER);
+        return new PendingQueryChanges(epoch, sequence, false, upserted, removed);
+    }
+
+    private void record(long id, PendingQueryItem item) {
+        changes.addLast(new Change(++sequence, id, item));
+        if (changes.size() > changeLogSize) {
+            changes.removeFirst();
+        }
+    }
+
+    private List<PendingQueryItem> sortedItems() {
+        List<PendingQueryItem> sorted = new ArrayList<>(items.values());
+        sorted.sort(ORDER);
+        return sorted;
+    }
+
+    private static final Comparator<PendingQueryItem> ORDER = Comparator
+            .comparing(PendingQueryItem::createdAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(PendingQueryItem::id);
+}
@@ -0,0 +1,198 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.config.ApprovalProperties;
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.dto.PolicyUpdate;
+import com.proxy.interceptor.model.ProxyPolicy;
+import com.proxy.interceptor.proxy.CompiledPolicy;
+import com.proxy.interceptor.repository.ProxyPolicyRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Owns the policy the proxy enforces: critical/allowed keywords, table rules, rate limits,
+ * block-by-default and the peer approval settings. The policy is stored in the database and served as a
+ * {@link CompiledPolicy} through a single volatile reference, so readers never lock and an
+ * update takes effect for the next statement without touching open connections.
+ * Other nodes are told to reload through the {@value #POLICY_CHANNEL} channel, and every node
+ * also compares the stored version with its own now and then in case it missed the message.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PolicyService {
+
+    public static final String POLICY_CHANNEL = "interceptor:policy";
+
+    // The configured policy, in force until the stored one has been read
+    private static final long CONFIGURED_VERSION = -1;
+
+    private final ProxyPolicyRepository proxyPolicyRepository;
+    private final ProxyProperties proxyProperties;
+    private final ApprovalProperties approvalProperties;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile CompiledPolicy current;
+
+    @PostConstruct
+    public void init() {
+        current = CompiledPolicy.compile(CONFIGURED_VERSION,
+                proxyProperties.getCriticalKeywords(),
+                proxyProperties.getAllowedKeywords(),
+                proxyProperties.getTableRules(),
+                proxyProperties.getRateLimits(),
+                proxyProperties.isBlockByDefault(),
+                approvalProperties.isPeerEnabled(),
+                Math.max(1, approvalProperties.getMinVotes()));
+        try {
+            install(compile(loadOrCreate()));
+        } catch (DataAccessException | IllegalArgumentException e) {
+            log.warn("Could not load the stored policy, enforcing the configured one: {}", e.getMessage());
+        }
+    }
+
+    public CompiledPolicy current() {
+        return current;
+    }
+
+    /**
+     * Applies the changes, stores them and switches every node over to the new policy.
+     *
+     * @throws IllegalArgumentException if the resulting policy is invalid
+     */
+    public CompiledPolicy update(PolicyUpdate changes, String updatedBy) {
+        ProxyPolicy policy = loadOrCreate();
+        if (changes.criticalKeywords() != null) {
+            policy.setCriticalKeywords(String.join(",", changes.criticalKeywords()));
+        }
+        if (changes.allowedKeywords() != null) {
+            policy.setAllowedKeywords(String.join(",", changes.allowedKeywords()));
+        }
+        if (changes.tableRules() != null) {
+            policy.setTableRules(String.join(",", changes.tableRules()));
+        }
+        if (changes.rateLimits() != null) {
+            policy.setRateLimits(String.join(",", changes.rateLimits()));
+        }
+        if (changes.blockByDefault() != null) {
+            policy.setBlockByDefault(changes.blockByDefault());
+        }
+        if (changes.peerApprovalEnabled() != null) {
+            policy.setPeerApprovalEnabled(changes.peerApprovalEnabled());
+        }
+        if (changes.minVotes() != null) {
+            policy.setMinVotes(changes.minVotes());
+        }
+        // Validate before anything is written
+        compile(policy);
+
+        policy.setUpdatedAt(Instant.now());
+        policy.setUpdatedBy(updatedBy);
+        // Version check: a concurrent update from another node fails instead of being overwritten
+        CompiledPolicy updated = compile(proxyPolicyRepository.saveAndFlush(policy));
+        install(updated);
+
+        try {
+            stringRedisTemplate.convertAndSend(POLICY_CHANNEL, Long.toString(updated.version()));
+        } catch (Exception e) {
+            log.error("Failed to announce policy version {}: {}", updated.version(), e.getMessage());
+        }
+        log.info("Policy updated to version {} by {}", updated.version(), updatedBy);
+        return updated;
+    }
+
+    /** Called when another node announces a new policy version. */
+    public void onPolicyChanged(String announcedVersion) {
+        long version;
+        try {
+            version = Long.parseLong(announcedVersion.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed policy announcement: {}", announcedVersion);
+            return;
+        }
+        if (version > current.version()) {
+            reload(version);
+        }
+    }
+
+    /**
+     * Reloads the policy if the stored version is ahead of the one in force. Announcements go
+     * over pub/sub, which drops them while a node is disconnected from Redis.
+     */
+    @Scheduled(fixedDelayString = "#{@proxyProperties.policyCheckInterval.toMillis()}")
+    public void checkVersion() {
+        Optional<Long> stored;
+        try {
+            stored = proxyPolicyRepository.findVersionById(ProxyPolicy.SINGLETON_ID);
+        } catch (DataAccessException e) {
+            log.warn("Could not check the stored policy version: {}", e.getMessage());
+            return;
+        }
+        if (stored.isPresent() && stored.get() > current.version()) {
+            log.warn("Policy version {} is stored but {} is in force, reloading", stored.get(), current.version());
+            reload(stored.get());
+        }
+    }
+
+    private void reload(long version) {
+        try {
+            install(compile(loadOrCreate()));
+        } catch (DataAccessException | IllegalArgumentException e) {
+            log.error("Failed to reload policy version {}: {}", version, e.getMessage());
+        }
+    }
+
+    private ProxyPolicy loadOrCreate() {
+        return proxyPolicyRepository.findById(ProxyPolicy.SINGLETON_ID).orElseGet(() -> {
+            ProxyPolicy seeded = ProxyPolicy.builder()
+                    .id(ProxyPolicy.SINGLETON_ID)
+                    .criticalKeywords(String.join(",", current.criticalKeywords()))
+                    .allowedKeywords(String.join(",", current.allowedKeywords()))
+                    .tableRules(String.join(",", current.tableRules()))
+                    .rateLimits(String.join(",", current.rateLimits()))
+                    .blockByDefault(current.blockByDefault())
+                    .peerApprovalEnabled(current.peerApprovalEnabled())
+                    .minVotes(current.minVotes())
+                    .updatedAt(Instant.now())
+                    .updatedBy("configuration")
+                    .build();
+            try {
+                return proxyPolicyRepository.saveAndFlush(seeded);
+            } catch (DataIntegrityViolationException e) {
+                // Another node seeded it first
+                return proxyPolicyRepository.findById(ProxyPolicy.SINGLETON_ID).orElseThrow(() -> e);
+            }
+        });
+    }
+
+    /** Swaps in {@code policy} unless a newer one is already in force (announcements can overtake each other). */
+    private synchronized void install(CompiledPolicy policy) {
+        if (policy.version() > current.version()) {
+            current = policy;
+            log.info("Enforcing policy version {}: critical={}, allowed={}, tableRules={}, rateLimits={}, blockByDefault={}",
+                    policy.version(), policy.criticalKeywords(), policy.allowedKeywords(), policy.tableRules(),
+                    policy.rateLimits(), policy.blockByDefault());
+        }
+    }
+
+    private static CompiledPolicy compile(ProxyPolicy policy) {
+        return CompiledPolicy.compile(
+                policy.getVersion() != null ? policy.getVersion() : 0,
+                CompiledPolicy.split(policy.getCriticalKeywords()),
+                CompiledPolicy.split(policy.getAllowedKeywords()),
+                CompiledPolicy.split(policy.getTableRules()),
+                CompiledPolicy.split(policy.getRateLimits()),
+                policy.isBlockByDefault(),
+                policy.isPeerApprovalEnabled(),
+                policy.getMinVotes());
+    }
+}
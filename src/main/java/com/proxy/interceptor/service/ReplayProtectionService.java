@@ -1,16 +1,31 @@
 package com.proxy.interceptor.service;
 
 import com.proxy.interceptor.repository.AuditLogRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
@@ -20,9 +35,33 @@ public class ReplayProtectionService {
     private final RedisTemplate<String, Object> redisTemplate;
     private final AuditService auditService;
     private final AuditLogRepository auditLogRepository;
+    private final MetricsService metricsService;
 
     private static final String NONCE_PREFIX = "nonce:";
-    private static final Duration NONCE_TTL = Duration.ofMinutes(5);
+    private static final byte[] NONCE_VALUE = "1".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${replay.nonce-ttl:5m}")
+    private Duration nonceTtl;
+
+    @Value("${replay.local-buckets:10}")
+    private int localBuckets;
+
+    @Value("${replay.redis-batch-size:128}")
+    private int redisBatchSize;
+
+    // Local filter: duplicates seen by this node are rejected without a Redis round trip
+    private NonceWindow localNonces;
+
+    // Authoritative SETNX checks waiting to be pipelined to Redis
+    private final ConcurrentLinkedQueue<PendingNonce> pendingClaims = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private record PendingNonce(byte[] key, CompletableFuture<Boolean> result) {}
+
+    @PostConstruct
+    public void init() {
+        this.localNonces = new NonceWindow(nonceTtl, localBuckets);
+    }
 
     /*
     * Validate that a request is not a replay attack.
@@ -37,13 +76,13 @@ public class ReplayProtectionService {
             return false;
         }
 
-        // Check timestamp (request should be within 5 minutes)
+        // Check timestamp (request should be within the nonce window)
+        long now = System.currentTimeMillis();
         try {
             long requestTime = Long.parseLong(timestamp);
-            long now = System.currentTimeMillis();
             long diff = Math.abs(now - requestTime);
 
-            if (diff > NONCE_TTL.toMillis()) {
+            if (diff > nonceTtl.toMillis()) {
                 log.warn("Replay protection: Request timestamp too old from user {}", username);
                 return false;
             }
@@ -52,20 +91,119 @@ public class ReplayProtectionService {
             return false;
         }
 
-        // Check if nonce was already user (stored in Redis)
-        String nonceKey = NONCE_PREFIX + nonce;
-        Boolean isNew = redisTemplate.opsForValue().setIfAbsent(nonceKey, "1", NONCE_TTL);
+        // Check if nonce was already used on this node (no network hop)
+        if (!localNonces.addIfAbsent(nonce, now)) {
+            metricsService.trackReplayLocalDuplicate();
+            return rejectDuplicate(nonce, username);
+        }
 
-        if (isNew == null || !isNew) {
-            log.warn("Replay protection: Duplication nonce detected from user {}", username);
-            auditService.log(username, "replay_attack_detected",
-                    "Duplicate nonce: " + nonce, null);
-            return false;
+        // Check if nonce was already used on any node (stored in Redis)
+        boolean isNew;
+        try {
+            isNew = claimNonce(NONCE_PREFIX + nonce);
+        } catch (RuntimeException e) {
+            // Let the client retry the same nonce once Redis is reachable again
+            localNonces.remove(nonce, now);
+            throw e;
+        }
+
+        if (!isNew) {
+            metricsService.trackReplayRedisDuplicate();
+            return rejectDuplicate(nonce, username);
         }
 
+        metricsService.trackReplayRedisAccepted();
         return true;
     }
 
+    private boolean rejectDuplicate(String nonce, String username) {
+        log.warn("Replay protection: Duplication nonce detected from user {}", username);
+        auditService.log(username, "replay_attack_detected",
+                "Duplicate nonce: " + nonce, null);
+        return false;
+    }
+
+    /*
+    * Queue a SETNX for the nonce and wait for its result.
+    * Whichever caller holds the flush lock sends the queued claims in one pipeline,
+    * so concurrent approvals share a single Redis round trip, and lets the lock go once
+    * its own claim is answered.
+     */
+    private boolean claimNonce(String nonceKey) {
+        PendingNonce claim = new PendingNonce(StringRedisSerializer.UTF_8.serialize(nonceKey), new CompletableFuture<>());
+        pendingClaims.add(claim);
+
+        while (true) {
+            if (claim.result().isDone()) {
+                return awaitClaim(claim);
+            }
+            if (flushLock.tryLock()) {
+                try {
+                    // Only until our own claim is answered; claims queued after it go out with their own callers
+                    while (!claim.result().isDone()) {
+                        if (!flushPendingClaims()) break;
+                    }
+                } finally {
+                    flushLock.unlock();
+                }
+                continue;
+            }
+            try {
+                // Another caller is flushing; our claim is either in its batch or picked up next round
+                return claim.result().get(1, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Loop and try to become the flusher
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while checking nonce", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+    }
+
+    /** Sends up to one batch of queued claims; false if there was none queued. */
+    private boolean flushPendingClaims() {
+        List<PendingNonce> batch = new ArrayList<>();
+        PendingNonce next;
+        while (batch.size() < redisBatchSize && (next = pendingClaims.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) return false;
+
+        try {
+            Expiration expiration = Expiration.from(nonceTtl);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PendingNonce claim : batch) {
+                    connection.stringCommands().set(claim.key(), NONCE_VALUE, expiration, SetOption.ifAbsent());
+                }
+                return null;
+            });
+            metricsService.trackReplayRedisBatch(batch.size());
+
+            for (int i = 0; i < batch.size(); i++) {
+                Object result = i < results.size() ? results.get(i) : null;
+                batch.get(i).result().complete(Boolean.TRUE.equals(result));
+            }
+        } catch (RuntimeException e) {
+            log.error("Replay protection: Redis nonce check failed for {} request(s): {}", batch.size(), e.getMessage());
+            batch.forEach(claim -> claim.result().completeExceptionally(e));
+        }
+        return true;
+    }
+
+    private boolean awaitClaim(PendingNonce claim) {
+        try {
+            return claim.result().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+    }
+
     /*
     * Generate a hash of the request for audit logging.
      */
@@ -4,6 +4,7 @@ import com.proxy.interceptor.dto.UserResponse;
 import com.proxy.interceptor.model.Role;
 import com.proxy.interceptor.model.User;
 import com.proxy.interceptor.repository.UserRepository;
+import com.proxy.interceptor.security.TokenVersionCache;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +19,7 @@ import java.util.stream.Collectors;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final TokenVersionCache tokenVersionCache;
 
     public List<UserResponse> getAllUsers() {
         return userRepository.findAll()
@@ -35,6 +37,7 @@ public class UserService {
         }
 
         userRepository.delete(user);
+        tokenVersionCache.invalidate(user.getUsername());
     }
 
     /**
@@ -0,0 +1,130 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.model.Vote;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Peer votes on one pending query, held as an immutable snapshot swapped in by CAS.
+ * The vote that first reaches the threshold closes the tally in the same CAS, so exactly
+ * one caller ever sees a resolution, however many vote at once. Once closed (by a vote,
+ * an admin decision or expiry) further votes are refused, unless the resolution fails and
+ * the tally is reopened.
+ */
+public final class VoteTally {
+
+    public enum Result {
+        RECORDED,
+        DUPLICATE,
+        CLOSED
+    }
+
+    /**
+     * @param version    grows by one with every recorded vote; persisted counts never go back to a lower version
+     * @param resolution set only for the vote that crossed the threshold
+     */
+    public record Outcome(Result result, int approvals, int rejections, long version, Vote resolution) {}
+
+    private record State(Map<String, Vote> votes, int approvals, int rejections, long version, boolean closed) {}
+
+    private final AtomicReference<State> state =
+            new AtomicReference<>(new State(Map.of(), 0, 0, 0, false));
+
+    public Outcome cast(String voter, Vote vote, int threshold) {
+        while (true) {
+            State current = state.get();
+            if (current.closed()) {
+                return outcome(Result.CLOSED, current, null);
+            }
+            Vote previous = current.votes().get(voter);
+            if (previous == vote) {
+                Vote resolution = resolution(current.approvals(), current.rejections(), threshold);
+                if (resolution == null) {
+                    return outcome(Result.DUPLICATE, current, null);
+                }
+                // Reopened at the threshold: the repeat retries the resolution that failed
+                State next = new State(current.votes(), current.approvals(), current.rejections(), current.version(), true);
+                if (state.compareAndSet(current, next)) {
+                    return outcome(Result.RECORDED, next, resolution);
+                }
+                continue;
+            }
+
+            // Copy-on-write; a tally only ever holds a handful of peers
+            Map<String, Vote> votes = new HashMap<>(current.votes());
+            votes.put(voter, vote);
+            int approvals = current.approvals() + count(vote, Vote.APPROVE) - count(previous, Vote.APPROVE);
+            int rejections = current.rejections() + count(vote, Vote.REJECT) - count(previous, Vote.REJECT);
+
+            Vote resolution = resolution(approvals, rejections, threshold);
+            State next = new State(Map.copyOf(votes), approvals, rejections, current.version() + 1, resolution != null);
+            if (state.compareAndSet(current, next)) {
+                return outcome(Result.RECORDED, next, resolution);
+            }
+        }
+    }
+
+    /** Refuses further votes. Returns false if the tally was already closed. */
+    public boolean close() {
+        while (true) {
+            State current = state.get();
+            if (current.closed()) {
+                return false;
+            }
+            State next = new State(current.votes(), current.approvals(), current.rejections(), current.version(), true);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reopens a tally closed by the vote that crossed the threshold, when that resolution could
+     * not be carried out. The votes stay, so the next vote resolves again, even a repeat.
+     */
+    public void reopen() {
+        while (true) {
+            State current = state.get();
+            if (!current.closed()) {
+                return;
+            }
+            State next = new State(current.votes(), current.approvals(), current.rejections(), current.version(), false);
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    public List<String> voters(Vote vote) {
+        return state.get().votes().entrySet().stream()
+                .filter(entry -> entry.getValue() == vote)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    public int approvals() {
+        return state.get().approvals();
+    }
+
+    public int rejections() {
+        return state.get().rejections();
+    }
+
+    private static Outcome outcome(Result result, State state, Vote resolution) {
+        return new Outcome(result, state.approvals(), state.rejections(), state.version(), resolution);
+    }
+
+    private static Vote resolution(int approvals, int rejections, int threshold) {
+        return approvals >= threshold ? Vote.APPROVE
+                : rejections >= threshold ? Vote.REJECT
+                : null;
+    }
+
+    private static int count(Vote vote, Vote counted) {
+        return vote == counted ? 1 : 0;
+    }
+}
@@ -1,34 +1,154 @@
 package com.proxy.interceptor.service;
 
+import com.proxy.interceptor.config.WebSocketProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans events out to dashboards over STOMP.
+ * Events are buffered per topic for {@code websocket.batch-window} and sent as one
+ * frame holding a JSON array. Within a window, a newer event replaces an older one
+ * with the same key, and a resolved query drops its pending vote updates.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketNotificationService {
 
+    private static final String BLOCKED_TOPIC = "/topic/blocked";
+    private static final String APPROVALS_TOPIC = "/topic/approvals";
+    private static final String VOTES_TOPIC = "/topic/votes";
+    private static final String LOGS_TOPIC = "/topic/logs";
+    private static final String METRICS_TOPIC = "/topic/metrics";
+
+    // Flush order mirrors the event lifecycle: blocked -> votes -> resolution
+    private static final List<String> TOPIC_ORDER =
+            List.of(BLOCKED_TOPIC, VOTES_TOPIC, APPROVALS_TOPIC, LOGS_TOPIC, METRICS_TOPIC);
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketProperties webSocketProperties;
+
+    // topic -> (merge key -> latest payload); guarded by "this"
+    private final Map<String, LinkedHashMap<Object, Object>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private ScheduledExecutorService flusher;
+
+    private record VoteKey(Object queryId, Object voter) {}
+
+    // Shares the blocked topic, but must not replace the blocked event it follows
+    private record EstimateKey(Object queryId) {}
 
-    public void broadcastBlockedQuery(String message) {
-        messagingTemplate.convertAndSend("/topic/blocked", message);
+    @PostConstruct
+    public void init() {
+        TOPIC_ORDER.forEach(topic -> pending.put(topic, new LinkedHashMap<>()));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "websocket-fanout");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
-    public void broadcastApproval(String message) {
-        messagingTemplate.convertAndSend("/topic/approvals", message);
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
     }
 
-    public void broadcastVote(String message) {
-        messagingTemplate. convertAndSend("/topic/votes", message);
+    public void broadcastBlockedQuery(Object message) {
+        enqueue(BLOCKED_TOPIC, field(message, "id"), message);
     }
 
-    public void broadcastLog(String message) {
-        messagingTemplate.convertAndSend("/topic/logs", message);
+    public void broadcastEstimate(Object message) {
+        enqueue(BLOCKED_TOPIC, new EstimateKey(field(message, "id")), message);
+    }
+
+    public void broadcastApproval(Object message) {
+        Object queryId = field(message, "id");
+        synchronized (this) {
+            // Vote tallies for a query that has just been resolved are superseded
+            if (queryId != null) {
+                pending.get(VOTES_TOPIC).keySet().removeIf(key ->
+                        key instanceof VoteKey voteKey && queryId.equals(voteKey.queryId()));
+            }
+        }
+        enqueue(APPROVALS_TOPIC, queryId, message);
+    }
+
+    public void broadcastVote(Object message) {
+        Object queryId = field(message, "queryId");
+        Object voter = field(message, "voter");
+        enqueue(VOTES_TOPIC, queryId != null && voter != null ? new VoteKey(queryId, voter) : null, message);
+    }
+
+    public void broadcastLog(Object message) {
+        enqueue(LOGS_TOPIC, null, message);
     }
 
     public void broadcastMetrics(Object metrics) {
-        messagingTemplate.convertAndSend("/topic/metrics", metrics);
+        // Only the latest snapshot matters
+        enqueue(METRICS_TOPIC, METRICS_TOPIC, metrics);
+    }
+
+    private void enqueue(String topic, Object key, Object message) {
+        if (webSocketProperties.getBatchWindow().isZero()) {
+            messagingTemplate.convertAndSend(topic, message);
+            return;
+        }
+
+        synchronized (this) {
+            LinkedHashMap<Object, Object> events = pending.get(topic);
+            // Keyless events never merge; remove first so a replaced event moves to the end
+            Object mergeKey = key != null ? key : new Object();
+            events.remove(mergeKey);
+            events.put(mergeKey, message);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                flusher.schedule(this::flush,
+                        webSocketProperties.getBatchWindow().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        Map<String, List<Object>> batches = new LinkedHashMap<>();
+        synchronized (this) {
+            flushScheduled = false;
+            for (String topic : TOPIC_ORDER) {
+                LinkedHashMap<Object, Object> events = pending.get(topic);
+                if (!events.isEmpty()) {
+                    batches.put(topic, new ArrayList<>(events.values()));
+                    events.clear();
+                }
+            }
+        }
+
+        int maxBatchSize = webSocketProperties.getMaxBatchSize();
+        batches.forEach((topic, events) -> {
+            for (int from = 0; from < events.size(); from += maxBatchSize) {
+                List<Object> frame = events.subList(from, Math.min(events.size(), from + maxBatchSize));
+                try {
+                    messagingTemplate.convertAndSend(topic, frame);
+                } catch (Exception e) {
+                    log.error("Failed to send {} event(s) to {}: {}", frame.size(), topic, e.getMessage());
+                }
+            }
+            log.debug("Sent {} event(s) to {}", events.size(), topic);
+        });
+    }
+
+    private static Object field(Object message, String name) {
+        return message instanceof Map<?, ?> map ? map.get(name) : null;
     }
 }
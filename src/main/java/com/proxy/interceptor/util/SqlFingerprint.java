@@ -0,0 +1,180 @@
+package com.proxy.interceptor.util;
+
+/**
+ * Shape of a SQL text with its literals taken out, so statements that differ only in the
+ * values they use share one fingerprint. Comments are dropped, whitespace collapsed,
+ * keywords and unquoted names lower-cased, and string, number and dollar-quoted literals
+ * replaced by {@code ?}. Quoted identifiers and {@code $n} parameters are kept.
+ *
+ * @param text          the normalised text, statements separated by {@code ;}
+ * @param statements    number of non-empty statements in the text
+ * @param hasParameters whether the text uses {@code $n} parameters
+ */
+public record SqlFingerprint(String text, int statements, boolean hasParameters) {
+
+    public static SqlFingerprint of(String sql) {
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), 1024));
+        int statements = 0;
+        boolean inStatement = false;
+        boolean parameters = false;
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                i = skipBlockComment(sql, i);
+                continue;
+            }
+            if (c == ';') {
+                if (inStatement) {
+                    out.append(';');
+                    inStatement = false;
+                }
+                i++;
+                continue;
+            }
+
+            if (!inStatement) {
+                inStatement = true;
+                statements++;
+            }
+            // A space only where two words meet, never around punctuation, so "a=1" and "a = 1" match
+            if (!out.isEmpty() && isWord(out.charAt(out.length() - 1))
+                    && (isWord(c) || (c == '.' && i + 1 < n && Character.isDigit(sql.charAt(i + 1))))) {
+                out.append(' ');
+            }
+
+            if (c == '\'' || ((c == 'E' || c == 'e') && i + 1 < n && sql.charAt(i + 1) == '\'')) {
+                i = skipString(sql, c == '\'' ? i : i + 1, c != '\'');
+                out.append('?');
+            } else if (c == '"') {
+                int end = skipQuotedIdentifier(sql, i);
+                out.append(sql, i, end);
+                i = end;
+            } else if (c == '$' && i + 1 < n && Character.isDigit(sql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < n && Character.isDigit(sql.charAt(end))) end++;
+                out.append(sql, i, end);
+                parameters = true;
+                i = end;
+            } else if (c == '$') {
+                int end = skipDollarQuoted(sql, i);
+                out.append(end > i + 1 ? "?" : "$");
+                i = Math.max(end, i + 1);
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(sql.charAt(i + 1)))) {
+                i = skipNumber(sql, i);
+                out.append('?');
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+                    out.append(Character.toLowerCase(sql.charAt(i++)));
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ';') {
+            out.setLength(length - 1);
+        }
+        return new SqlFingerprint(out.toString(), statements, parameters);
+    }
+
+    private static boolean isWord(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '"' || c == '\'' || c == '$' || c == '?';
+    }
+
+    private static int skipBlockComment(String sql, int i) {
+        // PostgreSQL block comments nest
+        int depth = 0;
+        int n = sql.length();
+        while (i < n) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            } else if (sql.startsWith("*/", i)) {
+                i += 2;
+                if (--depth == 0) return i;
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static int skipString(String sql, int quote, boolean backslashEscapes) {
+        int n = sql.length();
+        int i = quote + 1;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i += 2;
+            } else if (c == '\'') {
+                if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static int skipQuotedIdentifier(String sql, int quote) {
+        int n = sql.length();
+        int i = quote + 1;
+        while (i < n) {
+            if (sql.charAt(i) == '"') {
+                if (i + 1 < n && sql.charAt(i + 1) == '"') {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /** End of a $tag$...$tag$ literal starting at {@code i}, or {@code i} if there is none. */
+    private static int skipDollarQuoted(String sql, int i) {
+        int tagEnd = sql.indexOf('$', i + 1);
+        if (tagEnd < 0) {
+            return i;
+        }
+        for (int t = i + 1; t < tagEnd; t++) {
+            char c = sql.charAt(t);
+            if (!Character.isLetterOrDigit(c) && c != '_') return i;
+        }
+        String tag = sql.substring(i, tagEnd + 1);
+        int close = sql.indexOf(tag, tagEnd + 1);
+        return close < 0 ? sql.length() : close + tag.length();
+    }
+
+    private static int skipNumber(String sql, int i) {
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isDigit(c) || c == '.') {
+                i++;
+            } else if ((c == 'e' || c == 'E') && i + 1 < n
+                    && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '-' || sql.charAt(i + 1) == '+')) {
+                i += 2;
+            } else {
+                return i;
+            }
+        }
+        return n;
+    }
+}
@@ -154,6 +154,19 @@ const API = (() => {
     }
   }
 
+  // Pending-query changes since `since` of view `epoch`; null when already up to date (304).
+  async function getBlockedChanges(epoch, since) {
+    const params = epoch
+      ? `?epoch=${encodeURIComponent(epoch)}&since=${since}`
+      : "";
+    try {
+      return await request("GET", `/api/blocked/changes${params}`);
+    } catch (err) {
+      if (err && err.status === 304) return null;
+      throw err;
+    }
+  }
+
   async function getAllQueries() {
     try {
       return await request("GET", "/api/blocked/all");
@@ -288,8 +301,12 @@ const API = (() => {
         stompClient.subscribe(topic, function (message) {
           try {
             const raw = JSON.parse(message.body);
-            const payload = raw && typeof raw === "object" && "data" in raw ? raw.data : raw;
-            emit(event, transform(payload || {}));
+            // The server batches events per topic: one frame may carry an array of events
+            const items = Array.isArray(raw) ? raw : [raw];
+            items.forEach((item) => {
+              const payload = item && typeof item === "object" && "data" in item ? item.data : item;
+              emit(event, transform(payload || {}));
+            });
           } catch (e) {
             console.error("Parse error:", e);
           }
@@ -360,6 +377,7 @@ const API = (() => {
 
     // Queries
     getBlockedQueries,
+    getBlockedChanges,
     getAllQueries,
     approveQuery,
     rejectQuery,
@@ -100,6 +100,11 @@ const Dashboard = (() => {
     });
 
     API.on("query:blocked", (data) => {
+      // EXPLAIN estimates for an already blocked query share the topic
+      if (data.kind === "estimate") {
+        syncPendingFor(data);
+        return;
+      }
       const queryId = data.queryId || data.id;
       addTimelineEvent(
         "blocked",
@@ -107,27 +112,26 @@ const Dashboard = (() => {
         data.preview || data.queryPreview || `Query #${queryId || "?"}`,
         data.timestamp || data.createdAt,
       );
-      showToast("New query intercepted and blocked", "info");
-      // Refresh pending queries
-      loadPendingQueries();
-      loadMetrics();
+      notifyBlocked();
+      syncPendingFor(data);
+      scheduleRefresh(loadMetrics);
     });
 
     API.on("query:approval", (data) => {
       const status = (data.status || data.type || "").toLowerCase();
       const isApproved =
         status.includes("approved") || status.includes("approve");
+      const isExpired = status === "expired";
       const queryId = data.queryId || data.id;
       const actor = data.resolvedBy || data.approvedBy || data.username || "system";
       addTimelineEvent(
         isApproved ? "approved" : "rejected",
-        isApproved ? "Query Approved" : "Query Rejected",
+        isApproved ? "Query Approved" : isExpired ? "Query Expired" : "Query Rejected",
         `Query #${queryId || "?"} by ${actor}`,
         data.timestamp || data.resolvedAt,
       );
-      loadPendingQueries();
-      loadAllQueries();
-      loadMetrics();
+      syncPendingFor(data);
+      scheduleRefresh(loadAllQueries, loadMetrics);
     });
 
     API.on("query:vote", (data) => {
@@ -140,7 +144,7 @@ const Dashboard = (() => {
         `${username} voted ${vote} on #${queryId || "?"}`,
         data.timestamp,
       );
-      loadPendingQueries();
+      syncPendingFor(data);
     });
 
     API.on("audit:log", (data) => {
@@ -165,6 +169,43 @@ const Dashboard = (() => {
     });
   }
 
+  // ─── Realtime burst handling ───
+  // A batched frame emits many events at once; run each reload and toast once per burst.
+  const queuedRefreshes = new Set();
+  let blockedSinceToast = 0;
+
+  function scheduleRefresh(...loaders) {
+    const idle = queuedRefreshes.size === 0;
+    loaders.forEach((loader) => queuedRefreshes.add(loader));
+    if (!idle) return;
+    setTimeout(() => {
+      const queued = [...queuedRefreshes];
+      queuedRefreshes.clear();
+      queued.forEach((loader) => loader());
+    }, 0);
+  }
+
+  // Events carry the pending-view sequence they produced; fetch changes only when it is not ours.
+  function syncPendingFor(data) {
+    const seq = Number(data && data.seq);
+    if (!Number.isFinite(seq) || seq !== pendingFeed.sequence) {
+      scheduleRefresh(loadPendingQueries);
+    }
+  }
+
+  function notifyBlocked() {
+    blockedSinceToast++;
+    if (blockedSinceToast > 1) return;
+    setTimeout(() => {
+      const count = blockedSinceToast;
+      blockedSinceToast = 0;
+      showToast(
+        count === 1 ? "New query intercepted and blocked" : `${count} new queries intercepted and blocked`,
+        "info",
+      );
+    }, 0);
+  }
+
   // ═══════════════════════════════════════
   //  AUTH
   // ═══════════════════════════════════════
@@ -206,6 +247,7 @@ const Dashboard = (() => {
   async function handleLogout() {
     API.disconnectWebSocket();
     clearInterval(state.refreshInterval);
+    resetPendingFeed();
     await API.logout();
     showLogin();
   }
@@ -253,7 +295,7 @@ const Dashboard = (() => {
     // Load initial data
     navigateTo("dashboard");
 
-    // Start periodic refresh
+    // Periodic refresh; pending queries only fetch changes (usually a 304)
     state.refreshInterval = setInterval(() => {
       if (state.currentPage === "dashboard") {
         loadMetrics();
@@ -394,16 +436,36 @@ const Dashboard = (() => {
   }
 
   // ─── Pending Queries ───
+  // Local copy of the server's pending view, kept current with /api/blocked/changes.
+  const pendingFeed = { epoch: null, sequence: 0, items: new Map() };
+
+  function resetPendingFeed() {
+    pendingFeed.epoch = null;
+    pendingFeed.sequence = 0;
+    pendingFeed.items.clear();
+  }
+
   async function loadPendingQueries() {
     try {
-      const raw = await API.getBlockedQueries();
-      const queries = normalizeQueryList(raw).filter((q) => q.status === "PENDING");
+      const changes = await API.getBlockedChanges(pendingFeed.epoch, pendingFeed.sequence);
+      if (changes) applyPendingChanges(changes);
+      const queries = [...pendingFeed.items.values()].sort(
+        (a, b) => new Date(a.createdAt) - new Date(b.createdAt) || a.id - b.id,
+      );
       renderPendingList(queries);
     } catch (err) {
       console.warn("Failed to load pending queries:", err);
     }
   }
 
+  function applyPendingChanges(changes) {
+    if (changes.resync) pendingFeed.items.clear();
+    normalizeQueryList(changes.upserted).forEach((q) => pendingFeed.items.set(q.id, q));
+    (changes.removed || []).forEach((id) => pendingFeed.items.delete(id));
+    pendingFeed.epoch = changes.epoch;
+    pendingFeed.sequence = changes.sequence;
+  }
+
   function renderPendingList(queries) {
     const container = $("#pending-list");
     const countBadge = $("#pending-count");
@@ -437,6 +499,8 @@ const Dashboard = (() => {
                         <span class="badge badge-neutral">${q.queryType || "SQL"}</span>
                         <span>${timeAgo(q.createdAt)}</span>
                         ${q.connId ? `<span class="badge badge-neutral">${escapeHtml(q.connId)}</span>` : ""}
+                        ${q.ownerNode ? `<span class="badge badge-neutral" title="Node holding the connection">${escapeHtml(q.ownerNode)}</span>` : ""}
+                        ${q.estimatedRows != null ? `<span class="badge badge-neutral" title="Planner estimate (EXPLAIN), cost ${Number(q.estimatedCost).toFixed(1)}">≈ ${formatNumber(q.estimatedRows)} rows</span>` : ""}
                         ${q.requiresPeerApproval ? `<span class="badge badge-purple">Peer Review</span>` : ""}
                         ${q.approvalCount > 0 ? `<span>👍 ${q.approvalCount}</span>` : ""}
                         ${q.rejectionCount > 0 ? `<span>👎 ${q.rejectionCount}</span>` : ""}
@@ -460,6 +524,8 @@ const Dashboard = (() => {
     const btn = $("#refresh-dashboard");
     btn.classList.add("spinning");
     try {
+      // A manual refresh starts over from a full snapshot
+      resetPendingFeed();
       await Promise.all([loadMetrics(), loadPendingQueries()]);
       showToast("Dashboard refreshed", "success");
     } catch {
@@ -1022,6 +1088,9 @@ const Dashboard = (() => {
       requiresPeerApproval: Boolean(src.requiresPeerApproval ?? src.requires_peer_approval),
       approvalCount: Number(src.approvalCount ?? src.approvals ?? src.approval_count ?? 0),
       rejectionCount: Number(src.rejectionCount ?? src.rejections ?? src.rejection_count ?? 0),
+      ownerNode: src.ownerNode ?? src.owner_node ?? "",
+      estimatedRows: src.estimatedRows ?? src.estimated_rows ?? null,
+      estimatedCost: src.estimatedCost ?? src.estimated_cost ?? null,
     };
   }
 
@@ -0,0 +1,210 @@
+package com.proxy.interceptor.config;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS 1.3 handshakes between contexts built as {@link SslContextFactory} builds them, per
+ * provider, full against resumed. Client and server engines run in memory on one thread,
+ * so the time per handshake is the CPU both legs spend on it, with no network in between.
+ * A full handshake connects to a port the client has no session for; a resumed one
+ * reconnects to the same host and port, as the proxy does to the database. Each handshake
+ * ends with the server's first message, which is when BoringSSL hands out the session ticket.
+ * OPENSSL fails its run when netty-tcnative cannot load, rather than measuring JDK twice.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main TlsHandshakeBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TlsHandshakeBenchmark {
+
+    private static final String HOST = "localhost";
+    private static final int DATABASE_PORT = 5432;
+    private static final String PASSWORD = "benchmark";
+    private static final int MAX_ROUNDS = 16;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    // AuthenticationOk
+    private static final ByteBuffer FIRST_MESSAGE = ByteBuffer.wrap(new byte[]{'R', 0, 0, 0, 8, 0, 0, 0, 0}).asReadOnlyBuffer();
+
+    @Param({"JDK", "OPENSSL"})
+    private ProxyProperties.Ssl.Provider provider;
+
+    @Param({"false", "true"})
+    private boolean resumed;
+
+    private SslContext clientContext;
+    private SslContext serverContext;
+    private int nextPort = 1024;
+    private int received;
+
+    private final ByteBuffer clientToServer = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer serverToClient = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer application = ByteBuffer.allocate(64 * 1024);
+
+    @Setup
+    public void setup() throws Exception {
+        SslProvider sslProvider = SslContextFactory.resolveProvider(provider);
+        if (!sslProvider.name().equals(provider.name())) {
+            throw new IllegalStateException(provider + " TLS provider is not available on this host");
+        }
+        KeyStore keyStore = selfSignedKeyStore();
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD.toCharArray());
+
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("proxy", keyStore.getCertificate("proxy"));
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+
+        ProxyProperties.Ssl settings = new ProxyProperties.Ssl();
+        clientContext = SslContextFactory.buildBackendContext(sslProvider, tmf, settings);
+        serverContext = SslContextFactory.buildFrontendContext(sslProvider, kmf, settings);
+        if (resumed) {
+            // Leaves a session behind for every later handshake to resume
+            handshake(DATABASE_PORT);
+        }
+    }
+
+    @Benchmark
+    public boolean handshake() throws SSLException {
+        if (resumed) {
+            return handshake(DATABASE_PORT);
+        }
+        nextPort = nextPort == 65535 ? 1024 : nextPort + 1;
+        return handshake(nextPort);
+    }
+
+    private boolean handshake(int port) throws SSLException {
+        SSLEngine client = clientContext.newEngine(ByteBufAllocator.DEFAULT, HOST, port);
+        SSLEngine server = serverContext.newEngine(ByteBufAllocator.DEFAULT);
+        clientToServer.clear();
+        serverToClient.clear();
+        try {
+            client.beginHandshake();
+            server.beginHandshake();
+            settle(client, server);
+            if (client.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                    || server.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+                throw new IllegalStateException("Handshake stalled");
+            }
+            // The server speaks first after the handshake, as PostgreSQL and the proxy do with the
+            // authentication messages; BoringSSL only sends its session ticket along with that write
+            received = 0;
+            server.wrap(FIRST_MESSAGE.duplicate(), serverToClient);
+            settle(client, server);
+            if (received != FIRST_MESSAGE.capacity()) {
+                throw new IllegalStateException("Client received " + received + " bytes of the first message");
+            }
+            return true;
+        } finally {
+            // OpenSSL engines hold native memory until released; a no-op for the JDK's
+            ReferenceCountUtil.release(client);
+            ReferenceCountUtil.release(server);
+        }
+    }
+
+    /** Pumps records both ways until neither side has anything left to send. */
+    private void settle(SSLEngine client, SSLEngine server) throws SSLException {
+        for (int rounds = 0; transfer(client, server, clientToServer) | transfer(server, client, serverToClient); rounds++) {
+            if (rounds == MAX_ROUNDS) {
+                throw new IllegalStateException("Handshake did not settle in " + MAX_ROUNDS + " rounds");
+            }
+        }
+    }
+
+    /**
+     * Moves what {@code from} has to send into {@code net}, then feeds {@code to} as much of
+     * {@code net} as it takes now; the rest waits in {@code net} for the next round, since an
+     * engine that still has to wrap consumes nothing. False if neither side made progress.
+     */
+    private boolean transfer(SSLEngine from, SSLEngine to, ByteBuffer net) throws SSLException {
+        boolean moved = false;
+        SSLEngineResult result;
+        do {
+            result = from.wrap(EMPTY, net);
+            runTasks(from);
+            moved |= result.bytesProduced() > 0;
+        } while (result.bytesProduced() > 0 && from.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP);
+        net.flip();
+        try {
+            while (net.hasRemaining()) {
+                application.clear();
+                result = to.unwrap(net, application);
+                runTasks(to);
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || result.bytesConsumed() == 0) {
+                    break;
+                }
+                if (result.getStatus() != SSLEngineResult.Status.OK) {
+                    throw new IllegalStateException("Unwrap " + result.getStatus());
+                }
+                received += result.bytesProduced();
+                moved = true;
+            }
+        } finally {
+            net.compact();
+        }
+        return moved;
+    }
+
+    private static void runTasks(SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /** An ECDSA P-256 key and certificate for localhost, as the dev setup uses, made with keytool. */
+    private static KeyStore selfSignedKeyStore() throws Exception {
+        Path file = Files.createTempFile("tls-benchmark", ".p12");
+        Files.delete(file);
+        try {
+            Process keytool = new ProcessBuilder(
+                    Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                    "-genkeypair", "-alias", "proxy", "-keyalg", "EC", "-groupname", "secp256r1",
+                    "-sigalg", "SHA256withECDSA", "-dname", "CN=" + HOST, "-ext", "SAN=dns:" + HOST,
+                    "-validity", "2", "-storetype", "PKCS12", "-keystore", file.toString(),
+                    "-storepass", PASSWORD, "-keypass", PASSWORD)
+                    .inheritIO()
+                    .start();
+            if (keytool.waitFor() != 0) {
+                throw new IllegalStateException("keytool failed");
+            }
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(file)) {
+                keyStore.load(in, PASSWORD.toCharArray());
+            }
+            return keyStore;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TlsHandshakeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
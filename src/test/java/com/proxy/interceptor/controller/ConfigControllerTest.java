@@ -0,0 +1,64 @@
+package com.proxy.interceptor.controller;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.dto.PolicyUpdate;
+import com.proxy.interceptor.model.ProxyPolicy;
+import com.proxy.interceptor.proxy.CompiledPolicy;
+import com.proxy.interceptor.service.AuditService;
+import com.proxy.interceptor.service.PolicyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConfigControllerTest {
+
+    private final PolicyService policyService = mock(PolicyService.class);
+    private final MockMvc mvc = MockMvcBuilders
+            .standaloneSetup(new ConfigController(mock(AuditService.class), new ProxyProperties(), policyService))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    @Test
+    void updateIsPassedOnAndAnswersWithTheNewVersion() throws Exception {
+        when(policyService.update(any(), any())).thenReturn(
+                CompiledPolicy.compile(8, List.of("DROP"), List.of(), List.of(), List.of(), true, true, 3));
+
+        mvc.perform(put("/api/config").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"critical_keywords": "DROP, TRUNCATE", "peer_approval_enabled": "true",
+                         "peer_approval_min_votes": 3.0}"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.policy_version").value(8));
+        verify(policyService).update(eq(new PolicyUpdate(List.of("DROP", "TRUNCATE"), null, null, null, null, true, 3)), any());
+    }
+
+    @Test
+    void fractionalMinVotesIsRefused() throws Exception {
+        for (String minVotes : List.of("2.7", "\"2.7\"", "1e10", "\"three\"")) {
+            mvc.perform(put("/api/config").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"peer_approval_min_votes\": " + minVotes + "}"))
+                    .andExpect(status().isBadRequest());
+        }
+        verify(policyService, never()).update(any(), any());
+    }
+
+    @Test
+    void concurrentUpdateIsAConflict() throws Exception {
+        when(policyService.update(any(), any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ProxyPolicy.class, ProxyPolicy.SINGLETON_ID));
+
+        mvc.perform(put("/api/config").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"block_by_default\": false}"))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,117 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.model.Vote;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJacksonJsonRedisSerializer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events/sec of the binary event codec against the previous default-typed Jackson payloads.
+ * {@link #main} also prints bytes/event for both formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryEventCodecBenchmark {
+
+    private static final int BATCH = 64;
+
+    private final GenericJacksonJsonRedisSerializer jsonSerializer =
+            GenericJacksonJsonRedisSerializer.builder().enableUnsafeDefaultTyping().build();
+
+    private List<QueryEvent> events;
+    private byte[] binaryBatch;
+    private List<byte[]> jsonPayloads;
+
+    @Setup
+    public void setup() {
+        events = sampleEvents(BATCH);
+        binaryBatch = QueryEventCodec.encode(events);
+        jsonPayloads = new ArrayList<>();
+        for (QueryEvent event : events) {
+            jsonPayloads.add(jsonSerializer.serialize(new HashMap<>(event.toPayload())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public byte[] encodeBinaryBatch() {
+        return QueryEventCodec.encode(events);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<QueryEvent> decodeBinaryBatch() {
+        return QueryEventCodec.decode(binaryBatch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int encodeJsonPerEvent() {
+        int bytes = 0;
+        for (QueryEvent event : events) {
+            bytes += jsonSerializer.serialize(new HashMap<>(event.toPayload())).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int decodeJsonPerEvent() {
+        int fields = 0;
+        for (byte[] payload : jsonPayloads) {
+            Object decoded = jsonSerializer.deserialize(payload);
+            fields += decoded != null ? 1 : 0;
+        }
+        return fields;
+    }
+
+    static List<QueryEvent> sampleEvents(int count) {
+        List<QueryEvent> sample = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = 100_000 + i;
+            sample.add(switch (i % 3) {
+                case 0 -> new QueryEvent.Blocked(id, "conn-" + (i % 50), QueryType.SIMPLE,
+                        "DELETE FROM orders WHERE customer_id = " + i, Status.PENDING,
+                        Instant.ofEpochMilli(1_760_000_000_000L + i), true, "node-" + (i % 3));
+                case 1 -> new QueryEvent.VoteCast(id, "peer" + (i % 5), Vote.APPROVE, 1, 0);
+                default -> new QueryEvent.Resolved(id, Status.APPROVED, "admin");
+            });
+        }
+        return sample;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        GenericJacksonJsonRedisSerializer json =
+                GenericJacksonJsonRedisSerializer.builder().enableUnsafeDefaultTyping().build();
+        List<QueryEvent> sample = sampleEvents(BATCH);
+
+        long jsonBytes = 0;
+        long binarySingleBytes = 0;
+        for (QueryEvent event : sample) {
+            jsonBytes += json.serialize(new HashMap<>(event.toPayload())).length;
+            binarySingleBytes += QueryEventCodec.encode(List.of(event)).length;
+        }
+        long binaryBatchBytes = QueryEventCodec.encode(sample).length;
+
+        System.out.printf("bytes/event  json(default typing)=%.1f  binary(single)=%.1f  binary(batch of %d)=%.1f%n",
+                (double) jsonBytes / BATCH, (double) binarySingleBytes / BATCH, BATCH, (double) binaryBatchBytes / BATCH);
+
+        new Runner(new OptionsBuilder()
+                .include(QueryEventCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
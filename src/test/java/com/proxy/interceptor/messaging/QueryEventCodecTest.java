@@ -0,0 +1,148 @@
+package com.proxy.interceptor.messaging;
+
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.model.Vote;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips at the current version, and batches written by older nodes built byte by byte
+ * from the layout in {@link QueryEventCodec}.
+ */
+class QueryEventCodecTest {
+
+    private static final byte TYPE_BLOCKED = 1;
+    private static final byte TYPE_RESOLVED = 2;
+    private static final byte TYPE_VOTE = 3;
+
+    @Test
+    void everyEventTypeRoundTrips() {
+        List<QueryEvent> events = List.of(
+                new QueryEvent.Blocked(Long.MAX_VALUE, "conn-7", QueryType.EXTENDED, "DELETE FROM \"tablé\" -- ✓",
+                        Status.PENDING, Instant.ofEpochMilli(1_700_000_000_123L), true, "node-a"),
+                new QueryEvent.Estimated(42, 1_000_000, 12.5),
+                new QueryEvent.Resolved(42, Status.EXPIRED, "Approval Timeout"),
+                new QueryEvent.VoteCast(42, "alice", Vote.REJECT, 3, 300));
+
+        byte[] payload = QueryEventCodec.encode(events);
+        assertEquals(QueryEventCodec.VERSION, payload[0]);
+        assertEquals(events, QueryEventCodec.decode(payload));
+    }
+
+    @Test
+    void emptyBatchAndNullStringsRoundTrip() {
+        assertEquals(List.of(), QueryEventCodec.decode(QueryEventCodec.encode(List.of())));
+        QueryEvent.Resolved resolved = new QueryEvent.Resolved(1, Status.APPROVED, null);
+        assertEquals(List.of(new QueryEvent.Resolved(1, Status.APPROVED, "")),
+                QueryEventCodec.decode(QueryEventCodec.encode(List.of(resolved))));
+    }
+
+    @Test
+    void version1BatchDecodesWithDefaults() {
+        byte[] payload = new Payload(1).varint(3)
+                .type(TYPE_BLOCKED).varint(300).str("conn-1").code(0).str("DROP TABLE t").code(0)
+                .type(TYPE_RESOLVED).varint(300).code(2).str("admin")
+                .type(TYPE_VOTE).varint(300).str("bob").code(0)
+                .bytes();
+
+        assertEquals(List.of(
+                new QueryEvent.Blocked(300, "conn-1", QueryType.SIMPLE, "DROP TABLE t", Status.PENDING,
+                        Instant.EPOCH, false, ""),
+                new QueryEvent.Resolved(300, Status.REJECTED, "admin"),
+                new QueryEvent.VoteCast(300, "bob", Vote.APPROVE, 0, 0)), QueryEventCodec.decode(payload));
+    }
+
+    @Test
+    void version2BatchHasNoOwnerNode() {
+        byte[] payload = new Payload(2).varint(2)
+                .type(TYPE_BLOCKED).varint(5).str("conn-2").code(1).str("UPDATE t SET x = 1").code(0)
+                .varint(1_700_000_000_000L).code(1)
+                .type(TYPE_VOTE).varint(5).str("carol").code(1).varint(1).varint(2)
+                .bytes();
+
+        assertEquals(List.of(
+                new QueryEvent.Blocked(5, "conn-2", QueryType.EXTENDED, "UPDATE t SET x = 1", Status.PENDING,
+                        Instant.ofEpochMilli(1_700_000_000_000L), true, ""),
+                new QueryEvent.VoteCast(5, "carol", Vote.REJECT, 1, 2)), QueryEventCodec.decode(payload));
+    }
+
+    @Test
+    void version3BatchCarriesTheOwnerNode() {
+        byte[] payload = new Payload(3).varint(1)
+                .type(TYPE_BLOCKED).varint(9).str("conn-3").code(0).str("TRUNCATE t").code(0)
+                .varint(0).code(0).str("node-b")
+                .bytes();
+
+        QueryEvent.Blocked blocked = (QueryEvent.Blocked) QueryEventCodec.decode(payload).getFirst();
+        assertEquals("node-b", blocked.ownerNode());
+    }
+
+    @Test
+    void malformedPayloadsAreRejected() {
+        byte[] valid = QueryEventCodec.encode(List.of(new QueryEvent.Resolved(1, Status.APPROVED, "admin")));
+        for (int length = 1; length < valid.length; length++) {
+            byte[] truncated = Arrays.copyOf(valid, length);
+            assertThrows(IllegalArgumentException.class, () -> QueryEventCodec.decode(truncated), "length " + length);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> QueryEventCodec.decode(new Payload(0).varint(0).bytes()));
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryEventCodec.decode(new Payload(QueryEventCodec.VERSION + 1).varint(0).bytes()));
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryEventCodec.decode(new Payload(4).varint(1).type((byte) 9).bytes()), "unknown event type");
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryEventCodec.decode(new Payload(4).varint(1).type(TYPE_RESOLVED).varint(1).code(9).str("x").bytes()),
+                "unknown status code");
+        assertThrows(IllegalArgumentException.class,
+                () -> QueryEventCodec.decode(new Payload(4).varint(1).type(TYPE_RESOLVED).varint(1).code(0).varint(1000).bytes()),
+                "string longer than the payload");
+    }
+
+    /** Writes a batch field by field, as an older node would have. */
+    private static final class Payload {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Payload(int version) {
+            out.write(version);
+        }
+
+        Payload type(byte type) {
+            out.write(type);
+            return this;
+        }
+
+        Payload code(int code) {
+            out.write(code);
+            return this;
+        }
+
+        Payload varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Payload str(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.BlockedQueryService;
+import com.proxy.interceptor.service.MetricsService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Prepared statements run again with Bind/Execute/Sync, and held queries once approved, through a
+ * real proxy pipeline to a fake backend: they take a rate-limit permit and an admission slot like
+ * any query sent straight away.
+ * The backend answers every Sync with ReadyForQuery, but never answers a pg_sleep query, which
+ * so keeps the single execution slot taken.
+ */
+class ClientHandlerAdmissionTest {
+
+    private final AtomicLong connectionIds = new AtomicLong();
+    private final Queue<Character> backendReceived = new ConcurrentLinkedQueue<>();
+    private final RateLimiter rateLimiter = mock(RateLimiter.class);
+    private final SqlClassifier sqlClassifier = mock(SqlClassifier.class);
+    private final BlockedQueryService blockedQueryService = mock(BlockedQueryService.class);
+
+    private EventLoopGroup group;
+    private Channel backend;
+    private Channel proxy;
+
+    @BeforeEach
+    void start() throws InterruptedException {
+        EventLoopGroupFactory factory = new EventLoopGroupFactory(ProxyProperties.Transport.NIO);
+        group = factory.createWorkerGroup(2);
+
+        backend = new ServerBootstrap()
+                .group(group)
+                .channel(factory.getServerChannelClass())
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ByteBuf buf = (ByteBuf) msg;
+                                try {
+                                    backendReceived.add((char) buf.getByte(buf.readerIndex()));
+                                    if (buf.getByte(buf.writerIndex() - 5) == 'S') {
+                                        ctx.writeAndFlush(ctx.alloc().buffer(6).writeByte('Z').writeInt(5).writeByte('I'));
+                                    }
+                                } finally {
+                                    buf.release();
+                                }
+                            }
+                        });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+
+        ProxyProperties properties = new ProxyProperties();
+        properties.getAdmission().setMaxExecuting(1);
+        // Over the cap a query is refused at once rather than queued, so the test needs no timing
+        properties.getAdmission().setMaxQueued(0);
+        when(rateLimiter.admit(any(), any(), any())).thenReturn(new RateLimiter.Admission(RateLimiter.Permit.NONE, null, 0));
+
+        ProxyContext ctx = new ProxyContext(
+                "127.0.0.1",
+                ((InetSocketAddress) backend.localAddress()).getPort(),
+                sqlClassifier,
+                rateLimiter,
+                new AdmissionController(properties, mock(MetricsService.class)),
+                new WireProtocolHandler(),
+                blockedQueryService,
+                mock(MetricsService.class),
+                new HeldMessageStore(properties, mock(MetricsService.class)),
+                factory,
+                null,
+                properties.getConnectionLimits(),
+                new ConcurrentHashMap<>(),
+                new AtomicBoolean());
+
+        proxy = new ServerBootstrap()
+                .group(group)
+                .channel(factory.getServerChannelClass())
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        long connId = connectionIds.incrementAndGet();
+                        ch.pipeline().addLast(new ClientHandler(connId, new ConnectionState(connId), ctx, ch));
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    @AfterEach
+    void stop() {
+        proxy.close();
+        backend.close();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    void reExecutionOverTheCapIsRefused() throws Exception {
+        int port = ((InetSocketAddress) proxy.localAddress()).getPort();
+        try (Socket preparer = connect(port); Socket sleeper = connect(port)) {
+            DataInputStream preparerIn = new DataInputStream(preparer.getInputStream());
+
+            // Prepared and run once while the slot is free
+            send(preparer, parse("s1", "SELECT 1"), sync());
+            assertEquals('Z', readMessage(preparerIn).type());
+
+            // Takes the only slot and never gets an answer
+            send(sleeper, query("SELECT pg_sleep(60)"));
+            awaitBackend('Q');
+
+            send(preparer, bind("s1"), execute(), sync());
+            Message error = readMessage(preparerIn);
+            assertEquals('E', error.type());
+            assertTrue(error.body().contains("C53000"), error.body());
+            assertEquals('Z', readMessage(preparerIn).type());
+            assertFalse(backendReceived.contains('B'), "the re-execution reached the backend");
+            // Rate limited under the prepared SQL, once for the Parse and once for the re-execution
+            verify(rateLimiter, times(2)).admit(any(), any(), eq("SELECT 1"));
+        }
+    }
+
+    @Test
+    void reExecutionWithASlotFreeRuns() throws Exception {
+        int port = ((InetSocketAddress) proxy.localAddress()).getPort();
+        try (Socket client = connect(port)) {
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            send(client, parse("s1", "SELECT 1"), sync());
+            assertEquals('Z', readMessage(in).type());
+            // Each run gives its slot back at the ReadyForQuery, so the next one is admitted
+            for (int i = 0; i < 3; i++) {
+                send(client, bind("s1"), execute(), sync());
+                assertEquals('Z', readMessage(in).type());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void approvedQueryOverTheCapIsRefused() throws Exception {
+        when(sqlClassifier.shouldBlock("DELETE FROM audit_log")).thenReturn(true);
+        int port = ((InetSocketAddress) proxy.localAddress()).getPort();
+        try (Socket holder = connect(port); Socket sleeper = connect(port)) {
+            DataInputStream holderIn = new DataInputStream(holder.getInputStream());
+            send(holder, query("DELETE FROM audit_log"));
+            assertEquals('N', readMessage(holderIn).type(), "notice that the query is held");
+            ArgumentCaptor<HeldMessage> held = ArgumentCaptor.forClass(HeldMessage.class);
+            ArgumentCaptor<Consumer<ByteBuf>> approve = ArgumentCaptor.forClass(Consumer.class);
+            verify(blockedQueryService, timeout(5_000)).addBlockedQuery(anyLong(), eq("SIMPLE"),
+                    eq("DELETE FROM audit_log"), held.capture(), approve.capture(), any());
+
+            send(sleeper, query("SELECT pg_sleep(60)"));
+            awaitBackend('Q');
+
+            // Approved from another thread, as a vote or the expiry sweep does
+            approve.getValue().accept(held.getValue().retrieve());
+            Message error = readMessage(holderIn);
+            assertEquals('E', error.type());
+            assertTrue(error.body().contains("C53000"), error.body());
+            assertEquals('Z', readMessage(holderIn).type());
+            assertEquals(1, backendReceived.stream().filter(type -> type == 'Q').count(),
+                    "the approved query reached the backend");
+            verify(rateLimiter, times(2)).admit(any(), any(), eq("DELETE FROM audit_log"));
+        }
+    }
+
+    private void awaitBackend(char type) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!backendReceived.contains(type)) {
+            assertTrue(System.nanoTime() < deadline, "backend never received " + type);
+            Thread.sleep(5);
+        }
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        socket.setSoTimeout(5_000);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static void send(Socket socket, byte[]... messages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] message : messages) {
+            out.write(message);
+        }
+        socket.getOutputStream().write(out.toByteArray());
+        socket.getOutputStream().flush();
+    }
+
+    private record Message(char type, String body) {}
+
+    private static Message readMessage(DataInputStream in) throws IOException {
+        char type = (char) in.readByte();
+        byte[] body = new byte[in.readInt() - 4];
+        in.readFully(body);
+        return new Message(type, new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] query(String sql) {
+        return message('Q', cString(sql));
+    }
+
+    private static byte[] parse(String name, String sql) {
+        // No parameter types
+        return message('P', cString(name), cString(sql), new byte[]{0, 0});
+    }
+
+    private static byte[] bind(String statement) {
+        // Unnamed portal, no parameters, no result format codes
+        return message('B', cString(""), cString(statement), new byte[]{0, 0, 0, 0, 0, 0});
+    }
+
+    private static byte[] execute() {
+        return message('E', cString(""), new byte[]{0, 0, 0, 0});
+    }
+
+    private static byte[] sync() {
+        return message('S');
+    }
+
+    private static byte[] message(char type, byte[]... parts) {
+        int length = 4;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(1 + length).put((byte) type).putInt(length);
+        for (byte[] part : parts) {
+            buf.put(part);
+        }
+        return buf.array();
+    }
+
+    private static byte[] cString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) 0).array();
+    }
+}
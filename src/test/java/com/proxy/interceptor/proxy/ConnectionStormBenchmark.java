@@ -0,0 +1,128 @@
+package com.proxy.interceptor.proxy;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accept rate under a connection storm, as after a failover sends every pool to the proxy at
+ * once: one server channel on a single boss loop against several bound with SO_REUSEPORT, one
+ * per loop, as {@link ProxyServer} does with {@code proxy.acceptors}. Each invocation opens
+ * {@link #STORM} connections at once and waits until the server has accepted all of them.
+ * Multiple acceptors need the epoll transport; elsewhere only the single-acceptor case runs.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main ConnectionStormBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionStormBenchmark {
+
+    private static final int STORM = 1_000;
+
+    @Param({"1", "4"})
+    private int acceptors;
+
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private EventLoopGroup clientGroup;
+    private List<Channel> serverChannels;
+    private Bootstrap client;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        EventLoopGroupFactory factory = new EventLoopGroupFactory();
+        if (acceptors > 1 && !factory.supportsReusePort()) {
+            throw new IllegalStateException("Several acceptors need the epoll transport");
+        }
+        bossGroup = factory.createBossGroup(acceptors);
+        workerGroup = factory.createWorkerGroup();
+        clientGroup = factory.createWorkerGroup();
+
+        ServerBootstrap server = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(factory.getServerChannelClass())
+                .option(ChannelOption.SO_BACKLOG, STORM * 4)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        accepted.incrementAndGet();
+                    }
+                });
+        if (acceptors > 1) {
+            factory.enableReusePort(server);
+        }
+        serverChannels = new ArrayList<>();
+        serverChannels.add(server.bind("127.0.0.1", 0).sync().channel());
+        int port = ((InetSocketAddress) serverChannels.getFirst().localAddress()).getPort();
+        for (int i = 1; i < acceptors; i++) {
+            serverChannels.add(server.bind("127.0.0.1", port).sync().channel());
+        }
+
+        client = new Bootstrap()
+                .group(clientGroup)
+                .channel(factory.getSocketChannelClass())
+                // Close with a reset so thousands of connections a second leave no TIME_WAIT behind
+                .option(ChannelOption.SO_LINGER, 0)
+                .remoteAddress("127.0.0.1", port)
+                .handler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                    }
+                });
+    }
+
+    @TearDown
+    public void tearDown() {
+        serverChannels.forEach(Channel::close);
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public int connectStorm() throws InterruptedException {
+        int target = accepted.get() + STORM;
+        List<ChannelFuture> connects = new ArrayList<>(STORM);
+        for (int i = 0; i < STORM; i++) {
+            connects.add(client.connect());
+        }
+        for (ChannelFuture connect : connects) {
+            connect.sync();
+        }
+        // A completed connect only means the kernel queued it; wait for the server to accept
+        while (accepted.get() < target) {
+            Thread.onSpinWait();
+        }
+        for (ChannelFuture connect : connects) {
+            connect.channel().close();
+        }
+        return accepted.get();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConnectionStormBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,203 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.MetricsService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Memory budgets, spilling to disk and reading spilled bytes back, checked through the
+ * {@code heldBuffers} gauges and the spill directory.
+ */
+class HeldMessageStoreTest {
+
+    private static final ByteBufAllocator ALLOC = ByteBufAllocator.DEFAULT;
+
+    @TempDir
+    Path spillDirectory;
+
+    private final ProxyProperties properties = new ProxyProperties();
+    private final MetricsService metricsService = mock(MetricsService.class);
+    private HeldMessageStore store;
+    private Supplier<Map<String, Object>> gauges;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        ProxyProperties.HeldBuffers limits = properties.getHeldBuffers();
+        limits.setSpillDirectory(spillDirectory.toString());
+        limits.setMaxMemory(DataSize.ofBytes(2048));
+        limits.setMaxConnectionMemory(DataSize.ofBytes(1024));
+        limits.setSpillThreshold(DataSize.ofBytes(1024));
+        limits.setMaxSpill(DataSize.ofBytes(4096));
+        store = new HeldMessageStore(properties, metricsService);
+        store.init();
+        ArgumentCaptor<Supplier<Map<String, Object>>> captor = ArgumentCaptor.forClass(Supplier.class);
+        verify(metricsService).registerGauges(eq("heldBuffers"), captor.capture());
+        gauges = captor.getValue();
+    }
+
+    @Test
+    void smallMessageStaysInMemory() {
+        ByteBuf bytes = bytes(100, 'a');
+        HeldMessage held = store.hold(1, bytes.retainedDuplicate(), ALLOC);
+        assertFalse(held.spilled());
+        assertEquals(100, held.size());
+        assertEquals(100L, gauge("memoryBytes"));
+
+        ByteBuf retrieved = held.retrieve();
+        assertEquals(0L, gauge("memoryBytes"));
+        assertTrue(ByteBufUtil.equals(bytes, retrieved));
+        retrieved.release();
+        bytes.release();
+
+        assertThrows(IllegalStateException.class, held::retrieve);
+        held.release();
+        assertEquals(0L, gauge("memoryBytes"));
+    }
+
+    @Test
+    void batchOverTheSpillThresholdIsMappedBackFromDisk() throws IOException {
+        HeldMessageStore.Batch batch = store.open(1);
+        ByteBuf expected = Unpooled.buffer();
+        for (char c : new char[]{'a', 'b', 'c'}) {
+            ByteBuf part = bytes(600, c);
+            expected.writeBytes(part, part.readerIndex(), part.readableBytes());
+            assertTrue(batch.add(part));
+        }
+        HeldMessage held = batch.finish(ALLOC);
+        assertTrue(held.spilled());
+        assertEquals(1800, held.size());
+        // What was in memory before the spill moved to the file with the rest
+        assertEquals(0L, gauge("memoryBytes"));
+        assertEquals(1800L, gauge("spilledBytes"));
+        assertEquals(1L, gauge("spillFiles"));
+        assertEquals(1, spillFiles());
+
+        ByteBuf mapped = held.retrieve();
+        assertTrue(mapped.isReadOnly());
+        assertTrue(ByteBufUtil.equals(expected, mapped));
+        mapped.release();
+        expected.release();
+        assertEquals(0L, gauge("spilledBytes"));
+        assertEquals(0L, gauge("spillFiles"));
+        assertEquals(0, spillFiles());
+        assertThrows(IllegalStateException.class, held::retrieve);
+    }
+
+    @Test
+    void releasedSpillIsDeleted() throws IOException {
+        HeldMessage held = store.hold(1, bytes(2000, 'a'), ALLOC);
+        assertTrue(held.spilled());
+        assertEquals(1, spillFiles());
+        held.release();
+        held.release();
+        assertEquals(0, spillFiles());
+        assertEquals(0L, gauge("spilledBytes"));
+        assertEquals(0L, gauge("spillFiles"));
+    }
+
+    @Test
+    void connectionOverItsBudgetSpillsWhileOthersStayInMemory() {
+        HeldMessage first = store.hold(1, bytes(800, 'a'), ALLOC);
+        HeldMessage second = store.hold(1, bytes(800, 'b'), ALLOC);
+        HeldMessage other = store.hold(2, bytes(800, 'c'), ALLOC);
+        assertFalse(first.spilled());
+        assertTrue(second.spilled(), "connection 1 is over its 1024 bytes");
+        assertFalse(other.spilled());
+        assertEquals(1600L, gauge("memoryBytes"));
+
+        // Handing the first message back frees the connection's budget
+        first.retrieve().release();
+        HeldMessage third = store.hold(1, bytes(800, 'd'), ALLOC);
+        assertFalse(third.spilled());
+        Stream.of(second, other, third).forEach(HeldMessage::release);
+        assertEquals(0L, gauge("memoryBytes"));
+        assertEquals(0L, gauge("spilledBytes"));
+    }
+
+    @Test
+    void processOverTheGlobalBudgetSpills() {
+        HeldMessage first = store.hold(1, bytes(1000, 'a'), ALLOC);
+        HeldMessage second = store.hold(2, bytes(1000, 'b'), ALLOC);
+        HeldMessage third = store.hold(3, bytes(100, 'c'), ALLOC);
+        assertFalse(first.spilled());
+        assertFalse(second.spilled());
+        assertTrue(third.spilled(), "2000 of 2048 bytes already held");
+        Stream.of(first, second, third).forEach(HeldMessage::release);
+        assertEquals(0L, gauge("memoryBytes"));
+    }
+
+    @Test
+    void batchOverTheSpillBudgetIsRefused() throws IOException {
+        HeldMessageStore.Batch batch = store.open(1);
+        assertTrue(batch.add(bytes(2000, 'a')));
+        assertTrue(batch.add(bytes(2000, 'b')));
+        ByteBuf over = bytes(200, 'c');
+        assertFalse(batch.add(over));
+        assertTrue(batch.isRefused());
+        assertEquals(0, over.refCnt());
+
+        ByteBuf late = bytes(10, 'd');
+        assertFalse(batch.add(late));
+        assertEquals(0, late.refCnt());
+        assertEquals(1L, gauge("refusedTotal"));
+        assertEquals(0L, gauge("spilledBytes"));
+        assertEquals(0L, gauge("spillFiles"));
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void singleMessageOverEveryBudgetIsReleased() {
+        ByteBuf huge = bytes(5000, 'a');
+        assertNull(store.hold(1, huge, ALLOC));
+        assertEquals(0, huge.refCnt());
+        assertEquals(0L, gauge("memoryBytes"));
+        assertEquals(0L, gauge("spilledBytes"));
+    }
+
+    @Test
+    void staleSpillFilesAreDeletedAtStartup() throws IOException {
+        Files.createFile(spillDirectory.resolve("held-1.spill"));
+        Files.createFile(spillDirectory.resolve("keep.txt"));
+        new HeldMessageStore(properties, mock(MetricsService.class)).init();
+        assertEquals(0, spillFiles());
+        assertTrue(Files.exists(spillDirectory.resolve("keep.txt")));
+    }
+
+    private long gauge(String name) {
+        return (Long) gauges.get().get(name);
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.filter(file -> file.toString().endsWith(".spill")).count();
+        }
+    }
+
+    private static ByteBuf bytes(int length, char fill) {
+        ByteBuf buf = Unpooled.buffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.writeByte(fill);
+        }
+        return buf;
+    }
+}
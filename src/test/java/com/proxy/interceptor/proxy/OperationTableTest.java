@@ -0,0 +1,45 @@
+package com.proxy.interceptor.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statement-type lookups, including keys no multiplier can separate: "AO" and "B0" have the
+ * same {@link String#hashCode()}, and building a table for them used to search forever.
+ */
+class OperationTableTest {
+
+    @Test
+    void keysWithEqualHashCodesAreBothFound() {
+        assertEquals("AO".hashCode(), "B0".hashCode());
+        OperationTable table = assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                OperationTable.build(Map.of("AO", Classification.CRITICAL, "B0", Classification.ALLOWED)));
+        assertEquals(Classification.CRITICAL, table.get("AO"));
+        assertEquals(Classification.ALLOWED, table.get("B0"));
+        assertNull(table.get("SELECT"));
+    }
+
+    @Test
+    void everyKeywordIsFound() {
+        Map<String, Classification> entries = new HashMap<>();
+        for (String keyword : new String[]{"SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "TRUNCATE",
+                "ALTER", "CREATE", "GRANT", "REVOKE", "COPY", "VACUUM", "BEGIN", "COMMIT", "ROLLBACK"}) {
+            entries.put(keyword, keyword.startsWith("D") || keyword.equals("TRUNCATE")
+                    ? Classification.CRITICAL : Classification.ALLOWED);
+        }
+        OperationTable table = OperationTable.build(entries);
+        entries.forEach((keyword, classification) -> assertEquals(classification, table.get(keyword), keyword));
+        assertNull(table.get("MERGE"));
+        assertNull(table.get(""));
+    }
+
+    @Test
+    void emptyPolicy() {
+        assertNull(OperationTable.build(Map.of()).get("SELECT"));
+    }
+}
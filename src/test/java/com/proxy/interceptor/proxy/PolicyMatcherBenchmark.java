@@ -0,0 +1,133 @@
+package com.proxy.interceptor.proxy;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword policy matching in {@link SqlClassifier}: the compiled policy (perfect-hash operation
+ * table, Aho-Corasick fallback) against the previous per-keyword loops, across policy sizes.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main PolicyMatcherBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyMatcherBenchmark {
+
+    private static final List<String> BASE_CRITICAL =
+            List.of("DROP", "ALTER", "TRUNCATE", "DELETE", "GRANT", "REVOKE", "UPDATE", "INSERT");
+    private static final List<String> BASE_ALLOWED = List.of("SELECT", "CREATE");
+    private static final String[] OPERATIONS =
+            {"SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "CREATE", "VACUUM", "COPY"};
+
+    /** Keywords in the policy, split evenly between critical and allowed beyond the defaults. */
+    @Param({"10", "40", "160"})
+    public int policySize;
+
+    private List<String> critical;
+    private List<String> allowed;
+    private CompiledPolicy policy;
+    private String[] statements;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        critical = new ArrayList<>(BASE_CRITICAL);
+        allowed = new ArrayList<>(BASE_ALLOWED);
+        while (critical.size() + allowed.size() < policySize) {
+            (critical.size() <= allowed.size() ? critical : allowed).add(randomWord(random, 4, 10));
+        }
+        policy = CompiledPolicy.compile(1, critical, allowed, List.of(), List.of(), true, false, 1);
+
+        // Statements the parser rejects: PL/pgSQL blocks and vendor syntax, ~300 chars, mixed case
+        statements = new String[64];
+        for (int i = 0; i < statements.length; i++) {
+            StringBuilder sql = new StringBuilder("do $$ begin perform pg_sleep(0); ");
+            while (sql.length() < 280) {
+                sql.append(randomWord(random, 3, 9).toLowerCase()).append(i % 3 == 0 ? '_' : ' ');
+            }
+            // A third end in a critical keyword, a third in an allowed one, the rest match nothing
+            sql.append(switch (i % 3) {
+                case 0 -> " delete from t";
+                case 1 -> " select 1";
+                default -> " end $$";
+            });
+            statements[i] = sql.toString();
+        }
+
+        for (String sql : statements) {
+            if (legacyMatch(sql) != compiledMatch(sql)) {
+                throw new IllegalStateException("Compiled policy disagrees with the legacy matcher on: " + sql);
+            }
+        }
+    }
+
+    @Benchmark
+    public Classification legacyFallback() {
+        return legacyMatch(statements[next++ & 63]);
+    }
+
+    @Benchmark
+    public Classification compiledFallback() {
+        return compiledMatch(statements[next++ & 63]);
+    }
+
+    @Benchmark
+    public Classification legacyOperation() {
+        String operation = OPERATIONS[next++ & 7];
+        for (String keyword : critical) {
+            if (operation.equalsIgnoreCase(keyword.trim())) return Classification.CRITICAL;
+        }
+        for (String keyword : allowed) {
+            if (operation.equalsIgnoreCase(keyword.trim())) return Classification.ALLOWED;
+        }
+        return Classification.DEFAULT;
+    }
+
+    @Benchmark
+    public Classification compiledOperation() {
+        Classification classification = policy.classifyOperation(OPERATIONS[next++ & 7]);
+        return classification != null ? classification : Classification.DEFAULT;
+    }
+
+    private Classification legacyMatch(String sql) {
+        String upperSql = sql.toUpperCase();
+        for (String keyword : critical) {
+            if (upperSql.contains(keyword.toUpperCase().trim())) return Classification.CRITICAL;
+        }
+        for (String keyword : allowed) {
+            if (upperSql.contains(keyword.toUpperCase().trim())) return Classification.ALLOWED;
+        }
+        return Classification.DEFAULT;
+    }
+
+    private Classification compiledMatch(String sql) {
+        String keyword = policy.matchKeyword(sql);
+        return keyword != null ? policy.classifyOperation(keyword) : Classification.DEFAULT;
+    }
+
+    private static String randomWord(Random random, int min, int max) {
+        char[] word = new char[min + random.nextInt(max - min + 1)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PolicyMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
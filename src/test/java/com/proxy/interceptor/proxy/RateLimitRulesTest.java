@@ -0,0 +1,68 @@
+package com.proxy.interceptor.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitRulesTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void parsesRateBurstAndInFlight() {
+        RateLimitRules rules = RateLimitRules.build(List.of(
+                "ip * 100/s burst=200", " user etl 20/s inflight=4 ", "statement delete 0.5/s", "user app inflight=2"));
+        assertEquals(new RateLimitRules.Limit(SECOND / 100, 200, 0), rules.limit(RateLimitRules.Scope.IP, "10.0.0.1"));
+        assertEquals(new RateLimitRules.Limit(SECOND / 20, 20, 4), rules.limit(RateLimitRules.Scope.USER, "etl"));
+        // A fractional rate still lets one query through at once
+        assertEquals(new RateLimitRules.Limit(2 * SECOND, 1, 0), rules.limit(RateLimitRules.Scope.STATEMENT, "DELETE"));
+        RateLimitRules.Limit inFlightOnly = rules.limit(RateLimitRules.Scope.USER, "app");
+        assertFalse(inFlightOnly.limitsRate());
+        assertTrue(inFlightOnly.limitsInFlight());
+        assertEquals(List.of("ip * 100/s burst=200", "user etl 20/s inflight=4", "statement delete 0.5/s", "user app inflight=2"),
+                rules.definitions());
+    }
+
+    @Test
+    void exactKeyReplacesWildcard() {
+        RateLimitRules rules = RateLimitRules.build(List.of("user * 10/s", "user etl 1/s"));
+        assertEquals(SECOND, rules.limit(RateLimitRules.Scope.USER, "etl").intervalNanos());
+        assertEquals(SECOND / 10, rules.limit(RateLimitRules.Scope.USER, "app").intervalNanos());
+        assertNull(rules.limit(RateLimitRules.Scope.IP, "10.0.0.1"));
+        assertNull(RateLimitRules.build(List.of("user etl 1/s")).limit(RateLimitRules.Scope.USER, "app"));
+    }
+
+    @Test
+    void blankRulesAreSkipped() {
+        assertTrue(RateLimitRules.build(null).isEmpty());
+        assertTrue(RateLimitRules.build(Arrays.asList("", "  ", null)).isEmpty());
+    }
+
+    @Test
+    void malformedRulesAreRejected() {
+        for (String definition : List.of(
+                "ip *",
+                "host * 10/s",
+                "ip * 0/s",
+                "ip * -1/s",
+                "ip * Infinity/s",
+                "ip * ten/s",
+                "ip * burst=5",
+                "ip * 10/s burst=0",
+                "ip * inflight=-1",
+                "ip * 10/s window=5")) {
+            assertThrows(IllegalArgumentException.class, () -> RateLimitRules.build(List.of(definition)), definition);
+        }
+    }
+
+    @Test
+    void duplicateKeysAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RateLimitRules.build(List.of("statement delete 1/s", "statement DELETE inflight=1")));
+        // The same key in different scopes is fine
+        assertFalse(RateLimitRules.build(List.of("user * 1/s", "ip * 1/s")).isEmpty());
+    }
+}
@@ -0,0 +1,140 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.service.MetricsService;
+import com.proxy.interceptor.service.PolicyService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Token buckets and in-flight slots against the real clock. Rates are chosen so the queries of
+ * a burst are sent well inside one interval, and refills are waited for with room to spare.
+ */
+class RateLimiterTest {
+
+    private final PolicyService policyService = mock(PolicyService.class);
+    private final RateLimiter limiter = new RateLimiter(policyService, new ProxyProperties(), mock(MetricsService.class));
+
+    private void rules(String... definitions) {
+        when(policyService.current()).thenReturn(
+                CompiledPolicy.compile(1, List.of(), List.of(), List.of(), List.of(definitions), false, false, 1));
+    }
+
+    @Test
+    void burstIsAdmittedThenTheNextQueryWaitsAtMostOneInterval() {
+        rules("ip * 10/s burst=3");
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted(), "query " + i);
+        }
+        RateLimiter.Admission refused = limiter.admit("10.0.0.1", "app", "SELECT 1");
+        assertFalse(refused.admitted());
+        assertEquals("ip:10.0.0.1", refused.limitedBy());
+        assertTrue(refused.retryAfterNanos() > 0 && refused.retryAfterNanos() <= TimeUnit.MILLISECONDS.toNanos(100),
+                "retry after " + refused.retryAfterNanos());
+        // Every client IP has a bucket of its own
+        assertTrue(limiter.admit("10.0.0.2", "app", "SELECT 1").admitted());
+    }
+
+    @Test
+    void bucketRefillsOneTokenPerInterval() throws InterruptedException {
+        rules("ip * 20/s burst=1");
+        assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+        RateLimiter.Admission refused = limiter.admit("10.0.0.1", "app", "SELECT 1");
+        assertFalse(refused.admitted());
+
+        TimeUnit.NANOSECONDS.sleep(refused.retryAfterNanos() + TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+        // One interval refilled one token, not a burst's worth
+        assertFalse(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+    }
+
+    @Test
+    void refusedQueryRefundsTheTokensItTookFromOtherKeys() {
+        rules("ip * 1/s burst=2", "user etl 1/s burst=1");
+        assertTrue(limiter.admit("10.0.0.1", "etl", "SELECT 1").admitted());
+        RateLimiter.Admission refused = limiter.admit("10.0.0.1", "etl", "SELECT 1");
+        assertEquals("user:etl", refused.limitedBy());
+        // The IP token the refused query took was given back, so another user still gets in
+        assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+        assertFalse(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+    }
+
+    @Test
+    void inFlightSlotIsHeldUntilReleased() {
+        rules("statement DELETE inflight=1");
+        RateLimiter.Admission first = limiter.admit("10.0.0.1", "app", "delete from t");
+        assertTrue(first.permit().holdsSlots());
+
+        RateLimiter.Admission refused = limiter.admit("10.0.0.2", "app", "DELETE FROM t");
+        assertEquals("statement:DELETE", refused.limitedBy());
+        assertEquals(-1, refused.retryAfterNanos());
+        assertTrue(limiter.admit("10.0.0.2", "app", "SELECT 1").admitted(), "other statement classes are unlimited");
+
+        first.permit().release();
+        first.permit().release();
+        RateLimiter.Admission second = limiter.admit("10.0.0.2", "app", "DELETE FROM t");
+        assertTrue(second.admitted());
+        // Released twice, but only one slot was handed back
+        assertFalse(limiter.admit("10.0.0.3", "app", "DELETE FROM t").admitted());
+    }
+
+    @Test
+    void rateRefusalHandsBackTheInFlightSlot() {
+        rules("user app 1/s burst=1 inflight=5");
+        limiter.admit("10.0.0.1", "app", "SELECT 1").permit().release();
+        assertFalse(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+        rules("user app inflight=1");
+        assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted(), "the refused query kept a slot");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sweepKeepsKeysInUseAndDropsIdleOnes() throws InterruptedException {
+        MetricsService metricsService = mock(MetricsService.class);
+        RateLimiter limiter = new RateLimiter(policyService, new ProxyProperties(), metricsService);
+        limiter.init();
+        ArgumentCaptor<Supplier<Map<String, Object>>> gauges = ArgumentCaptor.forClass(Supplier.class);
+        verify(metricsService).registerGauges(eq("rateLimits"), gauges.capture());
+        Supplier<Map<?, ?>> keys = () -> (Map<?, ?>) gauges.getValue().get().get("keys");
+
+        rules("ip * 1000/s burst=1 inflight=1");
+        RateLimiter.Admission held = limiter.admit("10.0.0.1", "app", "SELECT 1");
+        limiter.admit("10.0.0.2", "app", "SELECT 1").permit().release();
+        TimeUnit.MILLISECONDS.sleep(20);
+        limiter.sweep();
+        assertEquals(Set.of("ip:10.0.0.1"), keys.get().keySet(), "only the key with a query in flight is kept");
+
+        held.permit().release();
+        limiter.sweep();
+        assertTrue(keys.get().isEmpty());
+        // A returning key starts over with a full bucket
+        assertTrue(limiter.admit("10.0.0.1", "app", "SELECT 1").admitted());
+        assertEquals(Set.of("ip:10.0.0.1"), keys.get().keySet());
+    }
+
+    @Test
+    void noRulesAdmitsEverything() {
+        rules();
+        RateLimiter.Admission admission = limiter.admit("10.0.0.1", null, "SELECT 1");
+        assertTrue(admission.admitted());
+        assertFalse(admission.permit().holdsSlots());
+    }
+
+    @Test
+    void statementClassSkipsCommentsAndParentheses() {
+        assertEquals("SELECT", RateLimiter.statementClass("  /* hint */ -- note\n ((select 1))"));
+        assertEquals("WITH", RateLimiter.statementClass("with x as (delete from t) select 1"));
+        assertNull(RateLimiter.statementClass("  -- only a comment"));
+        assertNull(RateLimiter.statementClass(""));
+    }
+}
@@ -0,0 +1,120 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.proxy.ast.TableReference;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating table rules for one parsed statement: the {@link TableRuleIndex} against
+ * a linear scan over the same rules, across rule counts.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main TableRuleBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableRuleBenchmark {
+
+    private static final String[] OPERATIONS = {"SELECT", "INSERT", "UPDATE", "DELETE"};
+
+    @Param({"16", "256", "4096"})
+    public int ruleCount;
+
+    private CompiledPolicy policy;
+    private List<String[]> scanRules;
+    private String[] operations;
+    private List<List<TableReference>> statements;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<String> rules = new ArrayList<>();
+        scanRules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            String operation = random.nextInt(8) == 0 ? "*" : OPERATIONS[random.nextInt(OPERATIONS.length)];
+            String schema = random.nextInt(4) == 0 ? "*" : "schema" + random.nextInt(16);
+            String table = random.nextInt(16) == 0 ? "*" : "table" + random.nextInt(ruleCount);
+            String classification = random.nextBoolean() ? "CRITICAL" : "ALLOWED";
+            rules.add(operation + " " + schema + "." + table + " " + classification);
+            scanRules.add(new String[]{operation, schema, table, classification});
+        }
+        policy = CompiledPolicy.compile(1, List.of(), List.of(), rules, List.of(), true, false, 1);
+
+        // One to three tables per statement, as in typical OLTP traffic
+        operations = new String[64];
+        statements = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            operations[i] = OPERATIONS[random.nextInt(OPERATIONS.length)];
+            List<TableReference> tables = new ArrayList<>();
+            for (int t = 1 + random.nextInt(3); t > 0; t--) {
+                tables.add(new TableReference("schema" + random.nextInt(16), "table" + random.nextInt(ruleCount)));
+            }
+            statements.add(tables);
+        }
+
+        for (int i = 0; i < 64; i++) {
+            if (policy.classifyTables(operations[i], statements.get(i)) != scan(operations[i], statements.get(i))) {
+                throw new IllegalStateException("Index disagrees with the linear scan on " + statements.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public Classification indexed() {
+        int i = next++ & 63;
+        return policy.classifyTables(operations[i], statements.get(i));
+    }
+
+    @Benchmark
+    public Classification linearScan() {
+        int i = next++ & 63;
+        return scan(operations[i], statements.get(i));
+    }
+
+    // Same semantics as the index: most specific rule per table (table, then schema, then operation)
+    private Classification scan(String operation, List<TableReference> tables) {
+        boolean allAllowed = true;
+        for (TableReference table : tables) {
+            int best = -1;
+            Classification chosen = null;
+            for (String[] rule : scanRules) {
+                boolean tableMatches = rule[2].equals("*") || rule[2].equals(table.name());
+                boolean schemaMatches = rule[1].equals("*") || rule[1].equals(table.schema());
+                boolean operationMatches = rule[0].equals("*") || rule[0].equals(operation);
+                if (!tableMatches || !schemaMatches || !operationMatches) {
+                    continue;
+                }
+                int specificity = (rule[2].equals("*") ? 0 : 4) + (rule[1].equals("*") ? 0 : 2) + (rule[0].equals("*") ? 0 : 1);
+                Classification classification = Classification.valueOf(rule[3]);
+                if (specificity > best || (specificity == best && classification == Classification.CRITICAL)) {
+                    best = specificity;
+                    chosen = classification;
+                }
+            }
+            if (chosen == Classification.CRITICAL) {
+                return chosen;
+            }
+            if (chosen == null) {
+                allAllowed = false;
+            }
+        }
+        return allAllowed ? Classification.ALLOWED : null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TableRuleBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
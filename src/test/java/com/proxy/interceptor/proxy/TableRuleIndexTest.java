@@ -0,0 +1,100 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.proxy.ast.TableReference;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rule precedence and wildcards, and tables named without a schema, which may be in any schema
+ * on the session's search_path and so are checked against the rules of every schema.
+ */
+class TableRuleIndexTest {
+
+    @Test
+    void mostSpecificRuleWins() {
+        TableRuleIndex index = TableRuleIndex.build(List.of(
+                "* *.* CRITICAL",
+                "DELETE *.orders ALLOWED",
+                "* sales.* ALLOWED",
+                "DELETE sales.* CRITICAL",
+                "UPDATE sales.orders CRITICAL",
+                "* sales.orders ALLOWED"));
+
+        // An exact table beats a wildcard table, whatever the schema or operation
+        assertEquals(Classification.ALLOWED, index.classify("DELETE", tables("sales.orders")));
+        assertEquals(Classification.CRITICAL, index.classify("UPDATE", tables("sales.orders")));
+        assertEquals(Classification.ALLOWED, index.classify("DELETE", tables("billing.orders")));
+        // Then an exact schema beats a wildcard schema, then an exact operation beats '*'
+        assertEquals(Classification.CRITICAL, index.classify("DELETE", tables("sales.items")));
+        assertEquals(Classification.ALLOWED, index.classify("UPDATE", tables("sales.items")));
+        assertEquals(Classification.CRITICAL, index.classify("UPDATE", tables("billing.items")));
+    }
+
+    @Test
+    void wildcardsAndCase() {
+        TableRuleIndex index = TableRuleIndex.build(List.of("delete AUDIT.* critical", "* \"Sessions\" ALLOWED"));
+        assertEquals(Classification.CRITICAL, index.classify("DELETE", tables("audit.log")));
+        assertNull(index.classify("UPDATE", tables("audit.log")));
+        assertEquals(Classification.ALLOWED, index.classify("UPDATE", tables("public.\"Sessions\"")));
+        assertNull(index.classify("UPDATE", tables("public.sessions")), "quoted rule keeps its case");
+    }
+
+    @Test
+    void unqualifiedTableMatchesPublic() {
+        TableRuleIndex index = TableRuleIndex.build(List.of("DELETE public.users CRITICAL", "UPDATE sessions ALLOWED"));
+        assertEquals(Classification.CRITICAL, index.classify("DELETE", tables("users")));
+        assertEquals(Classification.ALLOWED, index.classify("UPDATE", tables("sessions")));
+        assertNull(index.classify("UPDATE", tables("users")));
+    }
+
+    @Test
+    void unqualifiedTableIsCriticalIfAnySchemaMakesItSo() {
+        // With audit first on the search_path, "DELETE FROM log" deletes from audit.log
+        TableRuleIndex index = TableRuleIndex.build(List.of("DELETE audit.* CRITICAL", "DELETE public.log ALLOWED"));
+        assertEquals(Classification.CRITICAL, index.classify("DELETE", tables("log")));
+        assertEquals(Classification.ALLOWED, index.classify("DELETE", tables("public.log")));
+        // A rule without a schema names the table in every schema, audit included
+        TableRuleIndex everywhere = TableRuleIndex.build(List.of("DELETE audit.* CRITICAL", "DELETE log ALLOWED"));
+        assertEquals(Classification.ALLOWED, everywhere.classify("DELETE", tables("log")));
+    }
+
+    @Test
+    void unqualifiedTableIsAllowedOnlyIfEverySchemaAllowsIt() {
+        TableRuleIndex index = TableRuleIndex.build(List.of("UPDATE public.orders ALLOWED", "UPDATE audit.log CRITICAL"));
+        assertEquals(Classification.ALLOWED, index.classify("UPDATE", tables("public.orders")));
+        // Could be audit.orders, which no rule allows
+        assertNull(index.classify("UPDATE", tables("orders")));
+
+        TableRuleIndex everywhere = TableRuleIndex.build(List.of("UPDATE orders ALLOWED", "UPDATE audit.log CRITICAL"));
+        assertEquals(Classification.ALLOWED, everywhere.classify("UPDATE", tables("orders")));
+    }
+
+    @Test
+    void statementIsCriticalIfAnyTableIsAndAllowedOnlyIfAllAre() {
+        TableRuleIndex index = TableRuleIndex.build(List.of("* sessions ALLOWED", "* cache ALLOWED", "DELETE users CRITICAL"));
+        assertEquals(Classification.ALLOWED, index.classify("DELETE", tables("sessions", "cache")));
+        assertNull(index.classify("DELETE", tables("sessions", "orders")));
+        assertEquals(Classification.CRITICAL, index.classify("DELETE", tables("sessions", "users")));
+        assertNull(index.classify("DELETE", List.of()));
+        assertNull(TableRuleIndex.build(List.of()).classify("DELETE", tables("users")));
+    }
+
+    @Test
+    void malformedRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TableRuleIndex.build(List.of("DELETE audit.*")));
+        assertThrows(IllegalArgumentException.class, () -> TableRuleIndex.build(List.of("DELETE audit.* BLOCKED")));
+        assertThrows(IllegalArgumentException.class, () -> TableRuleIndex.build(List.of("DELETE audit. CRITICAL")));
+    }
+
+    private static List<TableReference> tables(String... names) {
+        return Arrays.stream(names).map(name -> {
+            int dot = name.indexOf('.');
+            return dot < 0 ? new TableReference(null, name)
+                    : new TableReference(name.substring(0, dot), name.substring(dot + 1));
+        }).toList();
+    }
+}
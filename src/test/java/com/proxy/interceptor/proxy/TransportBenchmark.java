@@ -0,0 +1,187 @@
+package com.proxy.interceptor.proxy;
+
+import com.proxy.interceptor.config.ProxyProperties;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through the proxy's relay path on each Netty transport: clients send a Query
+ * message to a relay that forwards it, on the client connection's event loop as
+ * {@link ClientHandler} does, to an echo backend and relays the answer back. Classification is
+ * left out, so the difference between runs is the transport's. Throughput and SampleTime modes
+ * give queries per millisecond and the latency percentiles (p99 among them).
+ * A transport the host does not support fails its run instead of silently falling back.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main TransportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class TransportBenchmark {
+
+    private static final byte[] QUERY = query("SELECT id, name, email FROM users WHERE id = 42");
+
+    @Param({"NIO", "EPOLL", "IO_URING"})
+    private ProxyProperties.Transport transport;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel backendChannel;
+    private Channel relayChannel;
+    private int relayPort;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        EventLoopGroupFactory factory = new EventLoopGroupFactory(transport);
+        if (factory.getTransport() != transport) {
+            throw new IllegalStateException(transport + " transport is not available on this host");
+        }
+        bossGroup = factory.createBossGroup();
+        workerGroup = factory.createWorkerGroup();
+
+        backendChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(factory.getServerChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ctx.writeAndFlush(msg);
+                            }
+                        });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        InetSocketAddress backend = (InetSocketAddress) backendChannel.localAddress();
+
+        relayChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(factory.getServerChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.AUTO_READ, false)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel client) {
+                        // Backend connection on the client's own event loop, as ClientHandler opens it
+                        new Bootstrap()
+                                .group(client.eventLoop())
+                                .channel(factory.getSocketChannelClass())
+                                .option(ChannelOption.TCP_NODELAY, true)
+                                .handler(new Relay(client))
+                                .connect(backend)
+                                .addListener((ChannelFutureListener) connected -> {
+                                    if (!connected.isSuccess()) {
+                                        client.close();
+                                        return;
+                                    }
+                                    client.pipeline().addLast(new Relay(connected.channel()));
+                                    client.config().setAutoRead(true);
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        relayPort = ((InetSocketAddress) relayChannel.localAddress()).getPort();
+    }
+
+    @TearDown
+    public void tearDown() {
+        relayChannel.close();
+        backendChannel.close();
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    /** One client connection per benchmark thread, blocking so the client side costs the same on every run. */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Socket socket;
+        private OutputStream out;
+        private DataInputStream in;
+        private final byte[] answer = new byte[QUERY.length];
+
+        @Setup
+        public void connect(TransportBenchmark benchmark) throws IOException {
+            socket = new Socket("127.0.0.1", benchmark.relayPort);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public byte roundTrip(Client client) throws IOException {
+        client.out.write(QUERY);
+        client.out.flush();
+        client.in.readFully(client.answer);
+        return client.answer[0];
+    }
+
+    /** Forwards everything read to {@code peer}, and closes it when this side closes. */
+    private static final class Relay extends ChannelInboundHandlerAdapter {
+
+        private final Channel peer;
+
+        Relay(Channel peer) {
+            this.peer = peer;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            peer.writeAndFlush(msg);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            peer.close();
+        }
+    }
+
+    private static byte[] query(String sql) {
+        byte[] text = sql.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 4 + text.length + 1)
+                .put((byte) 'Q')
+                .putInt(4 + text.length + 1)
+                .put(text)
+                .put((byte) 0)
+                .array();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
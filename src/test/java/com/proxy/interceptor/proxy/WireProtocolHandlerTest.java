@@ -0,0 +1,160 @@
+package com.proxy.interceptor.proxy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Messages the proxy writes to clients, with Netty leak detection at PARANOID. The allocator
+ * has no thread caches, so a buffer that is never released stays an active allocation of its
+ * arena and fails the test deterministically instead of only being logged after a GC.
+ */
+class WireProtocolHandlerTest {
+
+    private static ResourceLeakDetector.Level previousLevel;
+
+    private final WireProtocolHandler protocolHandler = new WireProtocolHandler();
+    private final PooledByteBufAllocator alloc = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 0, false);
+
+    @BeforeAll
+    static void paranoid() {
+        previousLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterAll
+    static void restore() {
+        ResourceLeakDetector.setLevel(previousLevel);
+    }
+
+    @AfterEach
+    void nothingLeaked() {
+        long active = alloc.metric().directArenas().stream().mapToLong(PoolArenaMetric::numActiveAllocations).sum();
+        assertEquals(0, active, "buffers left unreleased");
+    }
+
+    @Test
+    void errorResponseCarriesEveryField() {
+        ByteBuf buf = protocolHandler.createErrorResponse(alloc, WireProtocolHandler.Severity.ERROR,
+                "53400", "Rate limit exceeded for user:etl", "Limit: 20/s", "Retry in 50 ms.");
+        try {
+            assertTrue(buf.isDirect());
+            assertEquals('E', buf.readByte());
+            Map<Character, String> fields = fields(buf);
+            assertEquals("ERROR", fields.get('S'));
+            assertEquals("ERROR", fields.get('V'));
+            assertEquals("53400", fields.get('C'));
+            assertEquals("Rate limit exceeded for user:etl", fields.get('M'));
+            assertEquals("Limit: 20/s", fields.get('D'));
+            assertEquals("Retry in 50 ms.", fields.get('H'));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void optionalFieldsAreLeftOutAndTextIsUtf8() {
+        ByteBuf buf = protocolHandler.createFatalResponse(alloc, "57P01", "arrêt du proxy ✓");
+        try {
+            assertEquals('E', buf.readByte());
+            Map<Character, String> fields = fields(buf);
+            assertEquals("FATAL", fields.get('S'));
+            assertEquals("arrêt du proxy ✓", fields.get('M'));
+            assertFalse(fields.containsKey('D'));
+            assertFalse(fields.containsKey('H'));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void noticeResponse() {
+        ByteBuf buf = protocolHandler.createNoticeResponse(alloc, WireProtocolHandler.Severity.NOTICE,
+                "00000", "statement is waiting for approval", null, "hint");
+        try {
+            assertEquals('N', buf.readByte());
+            Map<Character, String> fields = fields(buf);
+            assertEquals("NOTICE", fields.get('S'));
+            assertEquals("hint", fields.get('H'));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void severityAndSqlStateAreCheckedBeforeAllocating() {
+        assertThrows(IllegalArgumentException.class, () -> protocolHandler.createNoticeResponse(
+                alloc, WireProtocolHandler.Severity.ERROR, "00000", "m", null, null));
+        assertThrows(IllegalArgumentException.class, () -> protocolHandler.createErrorResponse(
+                alloc, WireProtocolHandler.Severity.WARNING, "01000", "m", null, null));
+        assertThrows(IllegalArgumentException.class, () -> protocolHandler.createErrorResponse(alloc, "5340", "m"));
+    }
+
+    @Test
+    void readyForQueryIsSharedAndSurvivesReleases() {
+        for (int i = 0; i < 1_000; i++) {
+            ByteBuf ready = protocolHandler.createReadyForQuery();
+            assertTrue(ready.isReadOnly());
+            assertEquals('Z', ready.readByte());
+            assertEquals(5, ready.readInt());
+            assertEquals('I', ready.readByte());
+            assertFalse(ready.release());
+        }
+        assertEquals(6, protocolHandler.createReadyForQuery().readableBytes());
+        assertEquals('N', protocolHandler.sslDeclined().getByte(0));
+        assertEquals('S', protocolHandler.sslAccepted().getByte(0));
+    }
+
+    @Test
+    void refusalWrittenThroughAChannelIsReleased() {
+        // Writes what ClientHandler sends for a refused query: ErrorResponse, then ReadyForQuery
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ((ByteBuf) msg).release();
+                ctx.write(protocolHandler.createErrorResponse(ctx.alloc(), "53000", "Backend busy"));
+                ctx.writeAndFlush(protocolHandler.createReadyForQuery());
+            }
+        });
+        channel.config().setAllocator(alloc);
+        for (int i = 0; i < 100; i++) {
+            channel.writeInbound(alloc.buffer(1).writeByte('Q'));
+            ByteBuf error = channel.readOutbound();
+            ByteBuf ready = channel.readOutbound();
+            assertEquals('E', error.getByte(0));
+            assertEquals('Z', ready.getByte(0));
+            error.release();
+            ready.release();
+        }
+        assertFalse(channel.finishAndReleaseAll());
+    }
+
+    /** Reads the length and the fields of an ErrorResponse or NoticeResponse after its type byte. */
+    private static Map<Character, String> fields(ByteBuf buf) {
+        int length = buf.readInt();
+        assertEquals(length - 4, buf.readableBytes(), "length field");
+        Map<Character, String> fields = new LinkedHashMap<>();
+        byte code;
+        while ((code = buf.readByte()) != 0) {
+            int end = buf.indexOf(buf.readerIndex(), buf.writerIndex(), (byte) 0);
+            fields.put((char) code, buf.readCharSequence(end - buf.readerIndex(), StandardCharsets.UTF_8).toString());
+            buf.readByte();
+        }
+        assertFalse(buf.isReadable());
+        return fields;
+    }
+}
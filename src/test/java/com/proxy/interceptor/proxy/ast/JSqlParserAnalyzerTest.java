@@ -0,0 +1,89 @@
+package com.proxy.interceptor.proxy.ast;
+
+import com.proxy.interceptor.config.RiskProperties;
+import com.proxy.interceptor.proxy.Classification;
+import com.proxy.interceptor.proxy.RiskScorer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Target cardinality estimates. A key equality only pins a write to one row when the key is
+ * the target table's; one on a joined source must not let a full-table write score as safe.
+ */
+class JSqlParserAnalyzerTest {
+
+    private final RiskProperties riskProperties = riskProperties();
+    private final JSqlParserAnalyzer analyzer = new JSqlParserAnalyzer(riskProperties);
+    private final RiskScorer scorer = new RiskScorer(riskProperties);
+
+    private static RiskProperties riskProperties() {
+        RiskProperties properties = new RiskProperties();
+        properties.setEnabled(true);
+        return properties;
+    }
+
+    @Test
+    void keyOfTheTargetIsASingleRow() {
+        assertEquals(TargetCardinality.SINGLE_ROW, cardinality("UPDATE accounts SET balance = 0 WHERE id = 1"));
+        assertEquals(TargetCardinality.SINGLE_ROW, cardinality("UPDATE accounts SET balance = 0 WHERE accounts.id = $1"));
+        assertEquals(TargetCardinality.SINGLE_ROW, cardinality("UPDATE accounts a SET balance = 0 WHERE a.id = 1"));
+        assertEquals(TargetCardinality.SINGLE_ROW, cardinality("DELETE FROM orders o WHERE o.id = 1"));
+        assertEquals(TargetCardinality.BOUNDED, cardinality("DELETE FROM orders WHERE orders.id IN (1, 2)"));
+    }
+
+    @Test
+    void keyOfAnotherTableIsNot() {
+        // With an alias the table name no longer refers to the target
+        assertEquals(TargetCardinality.FILTERED, cardinality("UPDATE accounts a SET balance = 0 WHERE accounts.id = 1"));
+        assertEquals(TargetCardinality.FILTERED, cardinality("DELETE FROM orders WHERE users.id = 1"));
+    }
+
+    @Test
+    void updateFromWithAKeyOfTheSourceNeedsTheKeywordPolicy() {
+        SqlAnalysisResult result = analyzer.analyze("UPDATE accounts SET balance = 0 FROM users WHERE users.id = 1");
+        assertEquals(TargetCardinality.FILTERED, result.targetCardinality());
+        assertNull(scorer.classify(result, scorer.score(result)));
+    }
+
+    @Test
+    void deleteUsingWithAKeyOfTheSourceNeedsTheKeywordPolicy() {
+        SqlAnalysisResult result = analyzer.analyze("DELETE FROM orders USING users WHERE users.id = 1");
+        assertEquals(TargetCardinality.FILTERED, result.targetCardinality());
+        assertNull(scorer.classify(result, scorer.score(result)));
+    }
+
+    @Test
+    void joinedWritesAreAtLeastFiltered() {
+        assertEquals(TargetCardinality.FILTERED,
+                cardinality("UPDATE accounts SET balance = 0 FROM users WHERE accounts.id = 1 AND users.id = 2"));
+        assertEquals(TargetCardinality.UNBOUNDED, cardinality("DELETE FROM orders USING users"));
+    }
+
+    @Test
+    void flatReadsAreLeftToTheKeywordPolicy() {
+        for (String sql : new String[]{
+                "SELECT dblink_exec('dbname=x', 'DROP TABLE users')",
+                "SELECT pg_terminate_backend(42)",
+                "SELECT lo_import('/etc/passwd')",
+                "SELECT * FROM users WHERE id = 1"}) {
+            SqlAnalysisResult result = analyzer.analyze(sql);
+            assertEquals(0, scorer.score(result), sql);
+            assertNull(scorer.classify(result, scorer.score(result)), sql);
+        }
+    }
+
+    @Test
+    void keyedWriteIsAllowedAndUnboundedOneIsCritical() {
+        SqlAnalysisResult keyed = analyzer.analyze("UPDATE users SET role = 'admin' WHERE id = 1");
+        assertEquals(Classification.ALLOWED, scorer.classify(keyed, scorer.score(keyed)));
+        SqlAnalysisResult unbounded = analyzer.analyze("DELETE FROM users");
+        assertEquals(Classification.CRITICAL, scorer.classify(unbounded, scorer.score(unbounded)));
+    }
+
+    private TargetCardinality cardinality(String sql) {
+        SqlAnalysisResult result = analyzer.analyze(sql);
+        assertTrue(result.parseSuccess(), result.errorMessage());
+        return result.targetCardinality();
+    }
+}
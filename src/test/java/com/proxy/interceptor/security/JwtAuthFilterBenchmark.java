@@ -0,0 +1,103 @@
+package com.proxy.interceptor.security;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.proxy.interceptor.model.Role;
+import com.proxy.interceptor.model.User;
+import com.proxy.interceptor.repository.UserRepository;
+import com.proxy.interceptor.service.MetricsService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one API call through {@link JwtAuthFilter}.
+ * Run with: java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt)
+ *      org.openjdk.jmh.Main JwtAuthFilterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    /** 0 disables the verified-token cache, so every call verifies the signature. */
+    @Param({"10000", "0"})
+    public long verifiedCacheSize;
+
+    private JwtTokenProvider jwtTokenProvider;
+    private JwtAuthFilter jwtAuthFilter;
+    private SecretKey key;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxSize", verifiedCacheSize);
+        jwtTokenProvider.init();
+
+        User user = User.builder().username("alice").role(Role.PEER).tokenVersion(0).build();
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+
+        TokenVersionCache tokenVersionCache = new TokenVersionCache(userRepository, null, new MetricsService());
+        ReflectionTestUtils.setField(tokenVersionCache, "maxSize", 10_000L);
+        ReflectionTestUtils.setField(tokenVersionCache, "ttl", Duration.ofMinutes(1));
+        tokenVersionCache.init();
+
+        jwtAuthFilter = new JwtAuthFilter(jwtTokenProvider, tokenVersionCache);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = jwtTokenProvider.generateToken("alice", "PEER", 0);
+    }
+
+    @Benchmark
+    public Object filterRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/blocked");
+        request.addHeader("Authorization", "Bearer " + token);
+        jwtAuthFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+        SecurityContextHolder.clearContext();
+        return request.getAttribute("username");
+    }
+
+    @Benchmark
+    public Object verifyToken() {
+        return jwtTokenProvider.verify(token);
+    }
+
+    /** The previous filter path: validateToken and parseToken each built a parser and verified the HMAC. */
+    @Benchmark
+    public Object legacyValidateThenParse() {
+        Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,143 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.config.ClusterProperties;
+import com.proxy.interceptor.messaging.ClusterMessenger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Local, forwarded and timed-out approvals. Nothing here blocks on another node: forwarded
+ * calls hand back a future that the owner's answer, or the request timeout, completes.
+ */
+class ApprovalRouterTest {
+
+    private final BlockedQueryService blockedQueryService = mock(BlockedQueryService.class);
+    private final ClusterProperties clusterProperties = new ClusterProperties();
+    private ApprovalRouter router;
+
+    private ApprovalRouter router(ClusterMessenger messenger) {
+        router = new ApprovalRouter(blockedQueryService, messenger, clusterProperties);
+        router.init();
+        return router;
+    }
+
+    @AfterEach
+    void stop() {
+        router.shutdown();
+    }
+
+    private void ownedBy(long id, String node) {
+        when(blockedQueryService.isHeldLocally(id)).thenReturn(false);
+        when(blockedQueryService.ownerOf(id)).thenReturn(node);
+        when(blockedQueryService.isOwnedHere(node)).thenReturn(false);
+    }
+
+    @Test
+    void queryHeldHereIsResolvedLocally() throws Exception {
+        ClusterMessenger messenger = mock(ClusterMessenger.class);
+        router(messenger);
+        when(blockedQueryService.isHeldLocally(7L)).thenReturn(true);
+        when(blockedQueryService.approveQuery(7L, "alice")).thenReturn(true);
+
+        CompletableFuture<Boolean> approved = router.approveQuery(7, "alice");
+        assertTrue(approved.isDone());
+        assertTrue(approved.get());
+        verify(messenger, never()).request(anyString(), anyString(), any());
+    }
+
+    @Test
+    void forwardedApprovalCompletesWhenTheOwnerAnswers() throws Exception {
+        ClusterMessenger messenger = mock(ClusterMessenger.class);
+        router(messenger);
+        ownedBy(7, "node-b");
+        CompletableFuture<Map<String, Object>> reply = new CompletableFuture<>();
+        when(messenger.request("node-b", "approve", Map.of("id", 7L, "username", "alice"))).thenReturn(reply);
+
+        CompletableFuture<Boolean> approved = router.approveQuery(7, "alice");
+        assertFalse(approved.isDone(), "the caller is not held up waiting for the owner");
+        reply.complete(Map.of("success", true));
+        assertTrue(approved.get(5, TimeUnit.SECONDS));
+        verify(blockedQueryService, never()).approveQuery(anyLong(), anyString());
+    }
+
+    @Test
+    void forwardedVoteCarriesTheOwnersAnswer() throws Exception {
+        ClusterMessenger messenger = mock(ClusterMessenger.class);
+        router(messenger);
+        ownedBy(7, "node-b");
+        Map<String, Object> answer = Map.of("success", false, "duplicate", true, "error", "Already voted");
+        when(messenger.request(eq("node-b"), eq("vote"), any())).thenReturn(CompletableFuture.completedFuture(answer));
+
+        assertEquals(answer, router.addVote(7, "alice", "approve").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ownerThatNeverAnswersTimesOut() throws Exception {
+        clusterProperties.setRequestTimeout(Duration.ofMillis(50));
+        // Publishing goes nowhere, so no reply ever comes
+        ClusterMessenger messenger = new ClusterMessenger(mock(RedisTemplate.class), clusterProperties);
+        router(messenger);
+        ownedBy(7, "node-b");
+
+        assertFalse(router.approveQuery(7, "alice").get(5, TimeUnit.SECONDS));
+        Map<String, Object> vote = router.addVote(7, "alice", "approve").get(5, TimeUnit.SECONDS);
+        assertEquals(false, vote.get("success"));
+        assertEquals("Owner node node-b did not answer", vote.get("error"));
+        assertNull(router.getVoteStatus(7).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void unreachableOwnerIsAFailedResult() throws Exception {
+        ClusterMessenger messenger = mock(ClusterMessenger.class);
+        router(messenger);
+        ownedBy(7, "node-b");
+        when(messenger.request(eq("node-b"), eq("reject"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Redis is down")));
+
+        assertFalse(router.rejectQuery(7, "alice").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void requestsFromOtherNodesRunOffTheListenerThread() throws Exception {
+        ClusterMessenger messenger = mock(ClusterMessenger.class);
+        router(messenger);
+        ArgumentCaptor<BiFunction<String, Map<String, Object>, CompletableFuture<Map<String, Object>>>> handler =
+                ArgumentCaptor.forClass(BiFunction.class);
+        verify(messenger).setRequestHandler(handler.capture());
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(blockedQueryService.approveQuery(7L, "alice")).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return true;
+        });
+
+        // JSON hands the id back as an Integer
+        Map<String, Object> result = handler.getValue()
+                .apply("approve", Map.of("id", 7, "username", "alice"))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of("success", true), result);
+        assertTrue(thread.get().startsWith("cluster-request-"), thread.get());
+
+        ExecutionException unknown = assertThrows(ExecutionException.class, () -> handler.getValue()
+                .apply("drop", Map.of("id", 7)).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, unknown.getCause());
+    }
+}
@@ -0,0 +1,116 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.config.ApprovalProperties;
+import com.proxy.interceptor.config.ClusterProperties;
+import com.proxy.interceptor.messaging.QueryEventPublisher;
+import com.proxy.interceptor.model.BlockedQuery;
+import com.proxy.interceptor.model.Status;
+import com.proxy.interceptor.proxy.CompiledPolicy;
+import com.proxy.interceptor.proxy.HeldMessage;
+import com.proxy.interceptor.repository.BlockedQueryRepository;
+import com.proxy.interceptor.repository.QueryApprovalRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * The vote that crosses the peer threshold resolves the query; if that resolution does not go
+ * through, the votes reopen so the query is not left held with a tally nobody can vote on.
+ */
+class BlockedQueryServiceVoteTest {
+
+    private static final long ID = 1;
+
+    private final BlockedQueryRepository blockedQueryRepository = mock(BlockedQueryRepository.class);
+    private final PolicyService policyService = mock(PolicyService.class);
+    private final HeldMessage held = mock(HeldMessage.class);
+    @SuppressWarnings("unchecked")
+    private final Consumer<ByteBuf> forward = mock(Consumer.class);
+    private BlockedQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        ApprovalProperties approvalProperties = new ApprovalProperties();
+        // No expiry: nothing else resolves the query
+        approvalProperties.setTimeout(Duration.ZERO);
+        when(policyService.current()).thenReturn(
+                CompiledPolicy.compile(1, List.of("DELETE"), List.of(), List.of(), List.of(), true, true, 2));
+        when(blockedQueryRepository.save(any())).thenAnswer(invocation -> {
+            BlockedQuery query = invocation.getArgument(0);
+            query.setId(ID);
+            query.setCreatedAt(Instant.now());
+            return query;
+        });
+        when(held.retrieve()).thenReturn(Unpooled.EMPTY_BUFFER);
+
+        service = new BlockedQueryService(blockedQueryRepository, mock(QueryApprovalRepository.class),
+                mock(QueryEventPublisher.class), mock(AuditService.class), approvalProperties,
+                new ClusterProperties(), mock(MetricsService.class), policyService, mock(ImpactEstimator.class));
+        ReflectionTestUtils.setField(service, "changeLogSize", 64);
+        service.init();
+        service.addBlockedQuery(7, "SIMPLE", "DELETE FROM audit_log", held, forward, reason -> {});
+        assertEquals(true, service.addVote(ID, "alice", "approve").get("success"));
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    private void stored(Status status) {
+        BlockedQuery query = BlockedQuery.builder().id(ID).queryPreview("DELETE FROM audit_log").status(status).build();
+        doReturn(Optional.of(query)).when(blockedQueryRepository).findById(ID);
+    }
+
+    @Test
+    void thresholdVoteApproves() {
+        stored(Status.PENDING);
+        Map<String, Object> result = service.addVote(ID, "bob", "approve");
+        assertEquals(true, result.get("autoResolved"));
+        assertEquals("approved", result.get("action"));
+        verify(forward).accept(Unpooled.EMPTY_BUFFER);
+        assertFalse(service.isHeldLocally(ID));
+    }
+
+    @Test
+    void failedResolutionReopensTheVotes() {
+        // The row is not pending, so approveQuery refuses
+        stored(Status.APPROVED);
+        Map<String, Object> failed = service.addVote(ID, "bob", "approve");
+        assertEquals(false, failed.get("success"));
+        assertEquals("Query could not be approved, vote again to retry", failed.get("error"));
+        assertTrue(service.isHeldLocally(ID));
+        verify(forward, never()).accept(any());
+
+        stored(Status.PENDING);
+        Map<String, Object> retried = service.addVote(ID, "bob", "approve");
+        assertEquals("approved", retried.get("action"));
+        verify(forward).accept(Unpooled.EMPTY_BUFFER);
+    }
+
+    @Test
+    void resolutionThatThrowsReopensTheVotes() {
+        doThrow(new DataAccessResourceFailureException("connection refused")).when(blockedQueryRepository).findById(ID);
+        assertThrows(DataAccessResourceFailureException.class, () -> service.addVote(ID, "bob", "approve"));
+        assertTrue(service.isHeldLocally(ID));
+
+        stored(Status.PENDING);
+        assertEquals("approved", service.addVote(ID, "carol", "approve").get("action"));
+        verify(forward).accept(Unpooled.EMPTY_BUFFER);
+    }
+}
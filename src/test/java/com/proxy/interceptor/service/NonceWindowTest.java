@@ -0,0 +1,90 @@
+package com.proxy.interceptor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A 10s window in ten 1s buckets, driven by explicit timestamps. */
+class NonceWindowTest {
+
+    private final NonceWindow window = new NonceWindow(Duration.ofSeconds(10), 10);
+
+    @Test
+    void duplicateInsideTheWindowIsRefused() {
+        assertTrue(window.addIfAbsent("a", 0));
+        assertFalse(window.addIfAbsent("a", 0));
+        assertFalse(window.addIfAbsent("a", 5_000));
+        assertTrue(window.addIfAbsent("b", 5_000));
+    }
+
+    @Test
+    void nonceIsRememberedForTheFullWindowThenRotatedOut() {
+        assertTrue(window.addIfAbsent("a", 999));
+        // Seen in bucket 0, so remembered until bucket 10 ends
+        assertFalse(window.addIfAbsent("a", 10_999));
+        assertTrue(window.addIfAbsent("a", 11_000));
+    }
+
+    @Test
+    void recycledBucketDropsWhatItHeld() {
+        window.addIfAbsent("a", 0);
+        // Bucket 11 reuses bucket 0's slot in the ring of 11
+        assertTrue(window.addIfAbsent("b", 11_000));
+        assertTrue(window.addIfAbsent("a", 11_500));
+    }
+
+    @Test
+    void removedNonceCanBeUsedAgain() {
+        window.addIfAbsent("a", 2_000);
+        window.remove("a", 3_000);
+        assertTrue(window.addIfAbsent("a", 3_000));
+    }
+
+    @Test
+    void clockGoingBackKeepsTheNewerBucket() {
+        window.addIfAbsent("a", 5_000);
+        assertFalse(window.addIfAbsent("a", 4_000));
+        assertTrue(window.addIfAbsent("b", 4_000));
+        assertFalse(window.addIfAbsent("b", 5_000));
+    }
+
+    @Test
+    void concurrentCallersWithOneNonceHaveOneWinner() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 500; round++) {
+                String nonce = "n-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        return window.addIfAbsent(nonce, 1_000);
+                    }));
+                }
+                start.countDown();
+                int winners = 0;
+                for (Future<Boolean> future : futures) {
+                    winners += future.get(10, TimeUnit.SECONDS) ? 1 : 0;
+                }
+                assertEquals(1, winners, nonce);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void bucketCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new NonceWindow(Duration.ofSeconds(10), 0));
+    }
+}
@@ -0,0 +1,115 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.dto.PendingQuery;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disconnect storms against a pending backlog: {@link PendingQueryRegistry} versus the
+ * previous ConcurrentHashMap scanned with removeIf on every disconnect.
+ * Each disconnected connection re-registers its query so the backlog stays the same size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PendingQueryRegistryBenchmark {
+
+    private static final int STORM = 1_000;
+
+    @Param({"1000", "10000", "100000"})
+    private int backlog;
+
+    private PendingQueryRegistry registry;
+    private ConcurrentHashMap<Long, PendingQuery> legacy;
+    private List<PendingQuery> storm;
+    private long[] lookups;
+
+    @Setup
+    public void setup() {
+        registry = new PendingQueryRegistry();
+        legacy = new ConcurrentHashMap<>();
+        storm = new ArrayList<>(STORM);
+
+        // One pending query per connection, as a client waits on its blocked statement
+        for (long id = 1; id <= backlog; id++) {
+            PendingQuery query = pending(id, id);
+            registry.register(query);
+            legacy.put(id, query);
+            if (id <= STORM) {
+                storm.add(query);
+            }
+        }
+
+        lookups = new long[STORM];
+        for (int i = 0; i < STORM; i++) {
+            lookups[i] = ThreadLocalRandom.current().nextLong(1, backlog + 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public int registryDisconnectStorm() {
+        int removed = 0;
+        for (PendingQuery query : storm) {
+            removed += registry.removeConnection(query.connectionId()).size();
+            registry.register(query);
+        }
+        return removed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public int legacyDisconnectStorm() {
+        int removed = 0;
+        for (PendingQuery query : storm) {
+            long connectionId = query.connectionId();
+            if (legacy.entrySet().removeIf(entry -> entry.getValue().connectionId() == connectionId)) {
+                removed++;
+            }
+            legacy.put(query.id(), query);
+        }
+        return removed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public int registryLookup() {
+        int found = 0;
+        for (long id : lookups) {
+            if (registry.get(id) != null) found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public int legacyLookup() {
+        int found = 0;
+        for (long id : lookups) {
+            if (legacy.get(id) != null) found++;
+        }
+        return found;
+    }
+
+    private static PendingQuery pending(long id, long connectionId) {
+        return new PendingQuery(id, connectionId, Instant.EPOCH, null, null, null, false, new VoteTally());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PendingQueryRegistryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
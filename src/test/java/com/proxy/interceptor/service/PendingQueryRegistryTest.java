@@ -0,0 +1,94 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.dto.PendingQuery;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dropping a connection's queries through the connection index, alongside removals by id and
+ * re-registrations that must keep the index in step with the table.
+ */
+class PendingQueryRegistryTest {
+
+    private final PendingQueryRegistry registry = new PendingQueryRegistry();
+
+    @Test
+    void removeConnectionReturnsOnlyThatConnectionsQueries() {
+        PendingQuery a1 = pending(1, 10);
+        PendingQuery a2 = pending(2, 10);
+        PendingQuery b = pending(3, 20);
+        registry.register(a1);
+        registry.register(b);
+        registry.register(a2);
+
+        assertEquals(Set.of(a1, a2), new HashSet<>(registry.removeConnection(10)));
+        assertNull(registry.get(1));
+        assertNull(registry.get(2));
+        assertSame(b, registry.get(3));
+        assertEquals(1, registry.size());
+        assertEquals(List.of(), registry.removeConnection(10), "the connection is no longer indexed");
+    }
+
+    @Test
+    void unknownConnectionRemovesNothing() {
+        registry.register(pending(1, 10));
+        assertEquals(List.of(), registry.removeConnection(99));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void queryRemovedByIdIsNotReturnedAgain() {
+        PendingQuery first = pending(1, 10);
+        PendingQuery second = pending(2, 10);
+        registry.register(first);
+        registry.register(second);
+        assertTrue(registry.remove(1, first));
+
+        assertEquals(List.of(second), registry.removeConnection(10));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void reRegisteredQueryMovesToItsNewConnection() {
+        registry.register(pending(1, 10));
+        PendingQuery moved = pending(1, 20);
+        registry.register(moved);
+
+        assertEquals(List.of(), registry.removeConnection(10));
+        assertSame(moved, registry.get(1));
+        assertEquals(List.of(moved), registry.removeConnection(20));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void removeConnectionSurvivesTableGrowth() {
+        int count = 1_000;
+        for (long id = 1; id <= count; id++) {
+            registry.register(pending(id, id % 3));
+        }
+        List<PendingQuery> removed = registry.removeConnection(0);
+        assertEquals(count / 3, removed.size());
+        removed.forEach(query -> assertEquals(0, query.connectionId()));
+        for (long id = 1; id <= count; id++) {
+            assertEquals(id % 3 != 0, registry.get(id) != null, "query " + id);
+        }
+
+        // Freed slots are reused without losing the remaining entries
+        for (long id = count + 1; id <= 2 * count; id++) {
+            registry.register(pending(id, 5));
+        }
+        assertEquals(count - count / 3 + count, registry.size());
+        assertEquals(count, registry.removeConnection(5).size());
+        assertNotNull(registry.get(1));
+    }
+
+    private static PendingQuery pending(long id, long connectionId) {
+        return new PendingQuery(id, connectionId, Instant.EPOCH, null, null, null, false, new VoteTally());
+    }
+}
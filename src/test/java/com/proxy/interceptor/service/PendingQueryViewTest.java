@@ -0,0 +1,83 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.dto.PendingQueryChanges;
+import com.proxy.interceptor.dto.PendingQueryItem;
+import com.proxy.interceptor.model.QueryType;
+import com.proxy.interceptor.model.Status;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Catching up from a client's last sequence: a delta while the change log still reaches back
+ * that far, the full view once it does not, or when the client saw another epoch.
+ */
+class PendingQueryViewTest {
+
+    private final PendingQueryView view = new PendingQueryView(3);
+
+    @Test
+    void changesWithinTheLogAreADeltaCollapsedPerQuery() {
+        view.upsert(item(1));
+        long since = view.upsert(item(2));
+        view.update(1, item -> item.withVotes(1, 0));
+        view.update(1, item -> item.withVotes(2, 0));
+        view.remove(2);
+
+        PendingQueryChanges changes = view.changesSince(view.epoch(), since);
+        assertFalse(changes.resync());
+        assertEquals(5, changes.sequence());
+        assertEquals(List.of(item(1).withVotes(2, 0)), changes.upserted());
+        assertEquals(List.of(2L), changes.removed());
+    }
+
+    @Test
+    void gapPastTheLogResyncsWithTheFullView() {
+        for (long id = 1; id <= 4; id++) {
+            view.upsert(item(id));
+        }
+        view.remove(3);
+
+        // The log holds sequences 3 to 5, so a client at 2 is caught up by a delta and one at 1 is not
+        PendingQueryChanges delta = view.changesSince(view.epoch(), 2);
+        assertFalse(delta.resync());
+        assertEquals(List.of(item(4)), delta.upserted());
+        assertEquals(List.of(3L), delta.removed());
+
+        PendingQueryChanges resync = view.changesSince(view.epoch(), 1);
+        assertTrue(resync.resync());
+        assertEquals(5, resync.sequence());
+        assertEquals(List.of(item(1), item(2), item(4)), resync.upserted());
+        assertEquals(List.of(), resync.removed());
+    }
+
+    @Test
+    void otherEpochOrFutureSequenceResyncs() {
+        view.upsert(item(1));
+        assertTrue(view.changesSince("another-node", 1).resync());
+        assertTrue(view.changesSince(view.epoch(), 2).resync());
+
+        PendingQueryChanges current = view.changesSince(view.epoch(), 1);
+        assertFalse(current.resync());
+        assertEquals(List.of(), current.upserted());
+        assertEquals(List.of(), current.removed());
+    }
+
+    @Test
+    void resolvedQueryIsNotBroughtBackByALateEvent() {
+        view.upsert(item(1));
+        long sequence = view.remove(1);
+        assertEquals(sequence, view.upsert(item(1)));
+        assertEquals(sequence, view.seed(item(1)));
+        assertNull(view.get(1));
+        assertEquals(List.of(), view.snapshot().upserted());
+    }
+
+    private static PendingQueryItem item(long id) {
+        return new PendingQueryItem(id, "conn-" + id, QueryType.SIMPLE, "DELETE FROM t" + id, Status.PENDING,
+                Instant.ofEpochSecond(1_000 + id), false, 0, 0, "node-a", null, null);
+    }
+}
@@ -0,0 +1,153 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.config.ApprovalProperties;
+import com.proxy.interceptor.config.ProxyProperties;
+import com.proxy.interceptor.dto.PolicyUpdate;
+import com.proxy.interceptor.model.ProxyPolicy;
+import com.proxy.interceptor.repository.ProxyPolicyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Updates, version conflicts and reloads against a mocked {@code proxy_policy} row. The mock
+ * repository bumps the version on save, as the {@code @Version} column does.
+ */
+class PolicyServiceTest {
+
+    private final ProxyPolicyRepository repository = mock(ProxyPolicyRepository.class);
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private PolicyService policyService;
+    private ProxyPolicy stored;
+
+    @BeforeEach
+    void setUp() {
+        ProxyProperties proxyProperties = new ProxyProperties();
+        proxyProperties.setCriticalKeywords(List.of("DROP"));
+        proxyProperties.setAllowedKeywords(List.of("SELECT"));
+        ApprovalProperties approvalProperties = new ApprovalProperties();
+        approvalProperties.setMinVotes(1);
+
+        stored = policy(3, "DROP,DELETE");
+        when(repository.findById(ProxyPolicy.SINGLETON_ID)).thenAnswer(invocation -> Optional.of(copy(stored)));
+        when(repository.findVersionById(ProxyPolicy.SINGLETON_ID)).thenAnswer(invocation -> Optional.of(stored.getVersion()));
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            ProxyPolicy saved = copy(invocation.getArgument(0));
+            saved.setVersion(saved.getVersion() + 1);
+            stored = saved;
+            return copy(saved);
+        });
+
+        policyService = new PolicyService(repository, proxyProperties, approvalProperties, redis);
+        policyService.init();
+    }
+
+    @Test
+    void storedPolicyIsEnforcedAtStartup() {
+        assertEquals(3, policyService.current().version());
+        assertEquals(List.of("DROP", "DELETE"), policyService.current().criticalKeywords());
+    }
+
+    @Test
+    void updateStoresInstallsAndAnnounces() {
+        PolicyUpdate changes = new PolicyUpdate(List.of("drop", "truncate"), null, null, null, null, true, 2);
+        assertEquals(4, policyService.update(changes, "admin").version());
+
+        assertEquals(4, policyService.current().version());
+        assertEquals(List.of("DROP", "TRUNCATE"), policyService.current().criticalKeywords());
+        assertEquals(List.of("SELECT"), policyService.current().allowedKeywords(), "fields left null are kept");
+        assertTrue(policyService.current().peerApprovalEnabled());
+        assertEquals(2, policyService.current().minVotes());
+        assertEquals("admin", stored.getUpdatedBy());
+        verify(redis).convertAndSend(PolicyService.POLICY_CHANNEL, "4");
+    }
+
+    @Test
+    void invalidUpdateIsRejectedBeforeAnythingIsWritten() {
+        PolicyUpdate changes = new PolicyUpdate(null, null, List.of("DELETE audit"), null, null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> policyService.update(changes, "admin"));
+        assertThrows(IllegalArgumentException.class,
+                () -> policyService.update(new PolicyUpdate(null, null, null, null, null, null, 0), "admin"));
+        verify(repository, never()).saveAndFlush(any());
+        assertEquals(3, policyService.current().version());
+    }
+
+    @Test
+    void versionConflictLeavesThePolicyInForce() {
+        doThrow(new ObjectOptimisticLockingFailureException(ProxyPolicy.class, ProxyPolicy.SINGLETON_ID))
+                .when(repository).saveAndFlush(any());
+        PolicyUpdate changes = new PolicyUpdate(List.of("TRUNCATE"), null, null, null, null, null, null);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> policyService.update(changes, "admin"));
+        assertEquals(3, policyService.current().version());
+        assertEquals(List.of("DROP", "DELETE"), policyService.current().criticalKeywords());
+        verify(redis, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void announcementOfANewerVersionReloads() {
+        stored = policy(5, "TRUNCATE");
+        policyService.onPolicyChanged("5");
+        assertEquals(5, policyService.current().version());
+        assertEquals(List.of("TRUNCATE"), policyService.current().criticalKeywords());
+    }
+
+    @Test
+    void staleOrMalformedAnnouncementIsIgnored() {
+        policyService.onPolicyChanged("3");
+        policyService.onPolicyChanged("2");
+        policyService.onPolicyChanged("not a version");
+        // Only the startup load read the row
+        verify(repository, times(1)).findById(ProxyPolicy.SINGLETON_ID);
+        assertEquals(3, policyService.current().version());
+    }
+
+    @Test
+    void periodicCheckCatchesAMissedAnnouncement() {
+        policyService.checkVersion();
+        verify(repository, times(1)).findById(ProxyPolicy.SINGLETON_ID);
+
+        stored = policy(6, "DROP,TRUNCATE");
+        policyService.checkVersion();
+        assertEquals(6, policyService.current().version());
+        assertEquals(List.of("DROP", "TRUNCATE"), policyService.current().criticalKeywords());
+    }
+
+    @Test
+    void periodicCheckSurvivesAnUnreachableDatabase() {
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .when(repository).findVersionById(ProxyPolicy.SINGLETON_ID);
+        policyService.checkVersion();
+        assertEquals(3, policyService.current().version());
+    }
+
+    private static ProxyPolicy policy(long version, String criticalKeywords) {
+        return ProxyPolicy.builder()
+                .id(ProxyPolicy.SINGLETON_ID)
+                .criticalKeywords(criticalKeywords)
+                .allowedKeywords("SELECT")
+                .minVotes(1)
+                .version(version)
+                .updatedAt(Instant.now())
+                .updatedBy("configuration")
+                .build();
+    }
+
+    private static ProxyPolicy copy(ProxyPolicy policy) {
+        return new ProxyPolicy(policy.getId(), policy.getCriticalKeywords(), policy.getAllowedKeywords(),
+                policy.getTableRules(), policy.getRateLimits(), policy.isBlockByDefault(),
+                policy.isPeerApprovalEnabled(), policy.getMinVotes(), policy.getVersion(),
+                policy.getUpdatedAt(), policy.getUpdatedBy());
+    }
+}
@@ -0,0 +1,130 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Nonce checks against a mocked Redis pipeline: each SET NX in a batch answers with what the
+ * test's {@code redis} function says for that batch.
+ */
+class ReplayProtectionServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final AuditService auditService = mock(AuditService.class);
+    private final ReplayProtectionService service = new ReplayProtectionService(
+            redisTemplate, auditService, mock(AuditLogRepository.class), mock(MetricsService.class));
+    // Per batch: how many claims it held, and the thread that sent it
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> batchThreads = Collections.synchronizedList(new ArrayList<>());
+    private volatile Function<Integer, List<Object>> redis = size -> Collections.nCopies(size, true);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(service, "nonceTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "localBuckets", 10);
+        ReflectionTestUtils.setField(service, "redisBatchSize", 128);
+        service.init();
+
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisConnection connection = mock(RedisConnection.class);
+            RedisStringCommands commands = mock(RedisStringCommands.class);
+            when(connection.stringCommands()).thenReturn(commands);
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            int size = mockingDetails(commands).getInvocations().size();
+            batchSizes.add(size);
+            batchThreads.add(Thread.currentThread().getName());
+            return redis.apply(size);
+        });
+    }
+
+    private boolean validate(String nonce) {
+        return service.validateRequest(nonce, Long.toString(System.currentTimeMillis()), "approve:1", "alice");
+    }
+
+    @Test
+    void newNonceIsAcceptedAndItsRepeatRefusedLocally() {
+        assertTrue(validate("n1"));
+        assertFalse(validate("n1"));
+        assertEquals(List.of(1), batchSizes, "the repeat never reached Redis");
+        verify(auditService).log(eq("alice"), eq("replay_attack_detected"), anyString(), any());
+    }
+
+    @Test
+    void nonceSeenByAnotherNodeIsRefused() {
+        redis = size -> Collections.nCopies(size, false);
+        assertFalse(validate("n1"));
+    }
+
+    @Test
+    void staleOrMissingNonceAndTimestampAreRefused() {
+        assertFalse(service.validateRequest(" ", Long.toString(System.currentTimeMillis()), "x", "alice"));
+        assertFalse(service.validateRequest("n1", Long.toString(System.currentTimeMillis() - 600_000), "x", "alice"));
+        assertFalse(service.validateRequest("n1", "yesterday", "x", "alice"));
+        assertTrue(batchSizes.isEmpty());
+    }
+
+    @Test
+    void failedBatchFailsItsClaimsAndTheNonceCanBeRetried() {
+        redis = size -> {
+            throw new RedisConnectionFailureException("connection refused");
+        };
+        assertThrows(RedisConnectionFailureException.class, () -> validate("n1"));
+
+        redis = size -> Collections.nCopies(size, true);
+        assertTrue(validate("n1"), "the nonce was not forgotten locally after the failure");
+    }
+
+    @Test
+    void shortReplyCountsMissingResultsAsDuplicates() {
+        redis = size -> List.of();
+        assertFalse(validate("n1"));
+    }
+
+    @Test
+    void flusherLetsTheLockGoOnceItsOwnClaimIsAnswered() throws Exception {
+        Queue<?> pendingClaims = (Queue<?>) ReflectionTestUtils.getField(service, "pendingClaims");
+        CompletableFuture<Boolean> second = new CompletableFuture<>();
+        redis = size -> {
+            if (batchSizes.size() == 1) {
+                // While the first batch is out, another caller queues a claim behind it
+                Thread other = new Thread(() -> second.complete(validate("n2")), "second-caller");
+                other.start();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (pendingClaims.isEmpty()) {
+                    assertTrue(System.nanoTime() < deadline, "second claim never queued");
+                    Thread.onSpinWait();
+                }
+            }
+            return Collections.nCopies(size, true);
+        };
+
+        assertTrue(validate("n1"));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 1), batchSizes);
+        assertEquals("second-caller", batchThreads.get(1), "the first flusher went on to send the second claim");
+    }
+}
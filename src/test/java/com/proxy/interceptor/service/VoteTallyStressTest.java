@@ -0,0 +1,147 @@
+package com.proxy.interceptor.service;
+
+import com.proxy.interceptor.model.Vote;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Races many peers against one tally, released together by a latch, and checks the
+ * invariants the service relies on: one resolution per tally, no lost votes, and a
+ * distinct version for every recorded vote.
+ */
+class VoteTallyStressTest {
+
+    private static final int ROUNDS = 2_000;
+    private static final int VOTERS = 8;
+    private static final int THRESHOLD = 3;
+
+    @Test
+    void exactlyOneVoteResolvesTheTally() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(VOTERS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                VoteTally tally = new VoteTally();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<VoteTally.Outcome>> futures = new ArrayList<>();
+                for (int v = 0; v < VOTERS; v++) {
+                    String voter = "peer-" + v;
+                    Vote vote = v % 2 == 0 ? Vote.APPROVE : Vote.REJECT;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        return tally.cast(voter, vote, THRESHOLD);
+                    }));
+                }
+                start.countDown();
+
+                int resolutions = 0;
+                int recorded = 0;
+                Set<Long> versions = new HashSet<>();
+                for (Future<VoteTally.Outcome> future : futures) {
+                    VoteTally.Outcome outcome = future.get(10, TimeUnit.SECONDS);
+                    assertNotEquals(VoteTally.Result.DUPLICATE, outcome.result());
+                    if (outcome.result() == VoteTally.Result.RECORDED) {
+                        recorded++;
+                        assertTrue(versions.add(outcome.version()), "version handed out twice");
+                    }
+                    if (outcome.resolution() != null) {
+                        resolutions++;
+                    }
+                }
+
+                assertEquals(1, resolutions, "round " + round);
+                assertEquals(recorded, tally.approvals() + tally.rejections(), "round " + round);
+                assertTrue(tally.approvals() == THRESHOLD || tally.rejections() == THRESHOLD, "round " + round);
+                assertFalse(tally.close());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void closedTallyRefusesVotes() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(VOTERS + 1);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                VoteTally tally = new VoteTally();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<VoteTally.Outcome>> futures = new ArrayList<>();
+                for (int v = 0; v < VOTERS; v++) {
+                    String voter = "peer-" + v;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        return tally.cast(voter, Vote.APPROVE, VOTERS + 1);
+                    }));
+                }
+                // An admin decision racing the peers
+                Future<Boolean> closed = pool.submit(() -> {
+                    start.await();
+                    return tally.close();
+                });
+                start.countDown();
+
+                assertTrue(closed.get(10, TimeUnit.SECONDS));
+                int recorded = 0;
+                for (Future<VoteTally.Outcome> future : futures) {
+                    VoteTally.Outcome outcome = future.get(10, TimeUnit.SECONDS);
+                    assertNull(outcome.resolution());
+                    if (outcome.result() == VoteTally.Result.RECORDED) {
+                        recorded++;
+                    }
+                }
+                assertEquals(recorded, tally.approvals(), "round " + round);
+                assertEquals(VoteTally.Result.CLOSED, tally.cast("late", Vote.APPROVE, 1).result());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void changedVoteMovesBetweenCounts() {
+        VoteTally tally = new VoteTally();
+        assertEquals(VoteTally.Result.RECORDED, tally.cast("alice", Vote.APPROVE, 2).result());
+        assertEquals(VoteTally.Result.DUPLICATE, tally.cast("alice", Vote.APPROVE, 2).result());
+
+        VoteTally.Outcome changed = tally.cast("alice", Vote.REJECT, 2);
+        assertEquals(VoteTally.Result.RECORDED, changed.result());
+        assertEquals(0, changed.approvals());
+        assertEquals(1, changed.rejections());
+        assertEquals(2, changed.version());
+        assertEquals(List.of("alice"), tally.voters(Vote.REJECT));
+    }
+
+    @Test
+    void reopenedTallyResolvesAgainOnTheNextVote() {
+        VoteTally tally = new VoteTally();
+        tally.cast("alice", Vote.APPROVE, 2);
+        assertEquals(Vote.APPROVE, tally.cast("bob", Vote.APPROVE, 2).resolution());
+        assertEquals(VoteTally.Result.CLOSED, tally.cast("carol", Vote.APPROVE, 2).result());
+
+        // The resolution failed: the voter who crossed the threshold can retry with the same vote
+        tally.reopen();
+        VoteTally.Outcome retry = tally.cast("bob", Vote.APPROVE, 2);
+        assertEquals(VoteTally.Result.RECORDED, retry.result());
+        assertEquals(Vote.APPROVE, retry.resolution());
+        assertEquals(2, retry.approvals());
+        assertEquals(2, retry.version(), "a retry records no new vote");
+        assertFalse(tally.close(), "the retry closed the tally again");
+
+        // Below the threshold a repeat is still a duplicate
+        VoteTally below = new VoteTally();
+        below.cast("alice", Vote.APPROVE, 2);
+        below.reopen();
+        assertEquals(VoteTally.Result.DUPLICATE, below.cast("alice", Vote.APPROVE, 2).result());
+    }
+}